@@ -0,0 +1,27 @@
+#type vertex
+#version 330 core
+#instanced aTransformX aTransformY aInstanceColor
+layout (location=0) in vec3 aPosition;
+layout (location=1) in vec4 aColor;
+layout (location=2) in vec3 aTransformX;
+layout (location=3) in vec3 aTransformY;
+layout (location=4) in vec4 aInstanceColor;
+
+out vec4 fColor;
+
+void main() {
+    vec3 position = vec3(aPosition.xy, 1.0);
+    fColor = aColor * aInstanceColor;
+    gl_Position = vec4(dot(aTransformX, position), dot(aTransformY, position), aPosition.z, 1.0);
+}
+
+#type fragment
+#version 330 core
+
+in vec4 fColor;
+
+out vec4 color;
+
+void main() {
+    color = fColor;
+}
\ No newline at end of file
@@ -0,0 +1,36 @@
+#type vertex
+#version 330 core
+layout (location=0) in vec3 aPosition;
+layout (location=1) in vec4 aColor;
+layout (location=2) in vec2 aTexCoords;
+layout (location=3) in float aTexSlot;
+
+out vec4 fColor;
+out vec2 fTexCoords;
+out float fTexSlot;
+
+void main() {
+    fColor = aColor;
+    fTexCoords = aTexCoords;
+    fTexSlot = aTexSlot;
+    gl_Position = vec4(aPosition, 1.0);
+}
+
+#type fragment
+#version 330 core
+
+uniform sampler2D uTexture;
+
+in vec4 fColor;
+in vec2 fTexCoords;
+in float fTexSlot;
+
+out vec4 color;
+
+void main() {
+    if (fTexSlot < 0.0) {
+        color = fColor;
+    } else {
+        color = fColor * texture(uTexture, fTexCoords);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,139 @@
+/**
+ * Spatial index benchmark. It measures rebuilding, moving, querying and pair
+ * enumeration of both {@link SpatialIndex} implementations with 10k to 1M
+ * objects, spread evenly (uniform) or clustered around a few points (skewed).
+ * Run with: gradlew jmh
+ * */
+
+package spatial;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialIndexBenchmark {
+    private static final float AREA = 10000f;
+    private static final float OBJECT_SIZE = 4f;
+    private static final int QUERIES = 1000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int objects;
+
+    @Param({"grid", "quadtree"})
+    public String index;
+
+    @Param({"uniform", "skewed"})
+    public String distribution;
+
+    private SpatialIndex spatialIndex;
+    private float[] x;
+    private float[] y;
+    private float[] queryX;
+    private float[] queryY;
+    private final int[] results = new int[4096];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        x = new float[objects];
+        y = new float[objects];
+        for (int i = 0; i < objects; i++) {
+            if (distribution.equals("uniform")) {
+                x[i] = random.nextFloat() * AREA;
+                y[i] = random.nextFloat() * AREA;
+            } else { // 16 clusters
+                int cluster = random.nextInt(16);
+                x[i] = clamp(AREA * (cluster % 4 + 0.5f) / 4f + (float)random.nextGaussian() * 100f);
+                y[i] = clamp(AREA * (cluster / 4 + 0.5f) / 4f + (float)random.nextGaussian() * 100f);
+            }
+        }
+        queryX = new float[QUERIES];
+        queryY = new float[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            int object = random.nextInt(objects);
+            queryX[i] = x[object];
+            queryY[i] = y[object];
+        }
+        spatialIndex = create();
+        for (int i = 0; i < objects; i++) {
+            spatialIndex.insert(i, x[i], y[i], x[i] + OBJECT_SIZE, y[i] + OBJECT_SIZE);
+        }
+    }
+
+    private SpatialIndex create() {
+        if (index.equals("grid")) return new UniformGrid(OBJECT_SIZE * 2f, objects);
+        return new LooseQuadtree(0f, 0f, AREA, 10);
+    }
+
+    private static float clamp(float value) {
+        return Math.max(0f, Math.min(AREA - OBJECT_SIZE, value));
+    }
+
+    @Benchmark
+    public SpatialIndex build() {
+        SpatialIndex built = create();
+        for (int i = 0; i < objects; i++) {
+            built.insert(i, x[i], y[i], x[i] + OBJECT_SIZE, y[i] + OBJECT_SIZE);
+        }
+        return built;
+    }
+
+    @Benchmark
+    public void moveAll() {
+        for (int i = 0; i < objects; i++) {
+            x[i] = clamp(x[i] + ((i & 1) == 0 ? 0.5f : -0.5f));
+            spatialIndex.move(i, x[i], y[i], x[i] + OBJECT_SIZE, y[i] + OBJECT_SIZE);
+        }
+    }
+
+    @Benchmark
+    public int queryRadius() {
+        int found = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            found += spatialIndex.queryRadius(queryX[i], queryY[i], 50f, results);
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int queryAabb() {
+        int found = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            found += spatialIndex.queryAabb(queryX[i] - 50f, queryY[i] - 50f, queryX[i] + 50f, queryY[i] + 50f, results);
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int queryRay() {
+        int found = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            found += spatialIndex.queryRay(queryX[i], queryY[i], 1f, 0.5f, 500f, results);
+        }
+        return found;
+    }
+
+    @Benchmark
+    public void pairs(Blackhole blackhole) {
+        spatialIndex.forEachPair((a, b) -> blackhole.consume(a));
+    }
+}
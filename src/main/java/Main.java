@@ -1,4 +1,5 @@
 import sge.EngineCore;
+import test.SimulationTestScene;
 
 public class Main {
     public static void main(String[] args) {
@@ -6,6 +7,25 @@ public class Main {
         EngineCore engine = EngineCore.get();
         engine.setScreenConfig(800, 600, 1, "Game", true, true);
         //engine.setScreenConfig(200, 200, 4, "Game");
+        //engine.setFixedTimeStep(60, 5);
+        //engine.setMultiThreaded(true);
+        //engine.setProfilerReport(5.0);
+        //engine.setAllocationThreshold(256 * 1024); // Flag frames allocating over 256 KiB
+        //engine.setFrameCap(144); // Only used with vSync disabled
+        //engine.setDynamicResolution(0.5f, 1.0f, true);
+        //engine.setBackgroundFrameCap(10);
+        //engine.setPauseWhenMinimized(true);
+        //engine.setRenderOnChange(true); // Tools and editors with static scenes
+        //engine.setShaderHotReload(true);
+        //engine.setInputRecording("session.input");
+        //engine.setInputReplay("session.input");
+
+        // --headless [ticks]: simulation only, as fast as possible, e.g. on a server or CI
+        if (args.length > 0 && args[0].equals("--headless")) {
+            engine.setHeadless(true, true);
+            engine.setTickLimit((args.length > 1) ? Long.parseLong(args[1]) : 10000);
+            engine.setScene(new SimulationTestScene(100000));
+        }
         engine.run();
     }
 }
@@ -0,0 +1,84 @@
+/**
+ * Asset handle class. It is returned immediately when an asset is requested
+ * and holds the asset once it is loaded, so scenes can keep rendering (e.g.
+ * a placeholder) while it loads.
+ * @param <T>   the asset.
+ * */
+
+package asset;
+
+import java.util.concurrent.CompletableFuture;
+
+public class AssetHandle<T> {
+
+    /**
+     * Stores the path the asset is loaded from: {@link #path}
+     * */
+    private final String path;
+
+    /**
+     * Stores the future completed (on the OpenGL thread) with the asset: {@link #future}
+     * */
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+
+    /**
+     * Stores the asset once loaded, null until then: {@link #asset}
+     * */
+    private volatile T asset;
+
+    AssetHandle(String path) {
+        this.path = path;
+    }
+
+    void complete(T asset) {
+        this.asset = asset;
+        future.complete(asset);
+    }
+
+    void fail(Throwable error) {
+        future.completeExceptionally(error);
+    }
+
+    /**
+     * Returns the path the asset is loaded from.
+     * */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns if the asset is loaded and can be used.
+     * */
+    public boolean isReady() {
+        return asset != null;
+    }
+
+    /**
+     * Returns if loading the asset failed.
+     * */
+    public boolean isFailed() {
+        return future.isCompletedExceptionally();
+    }
+
+    /**
+     * Returns the asset, or null if it is not loaded yet.
+     * */
+    public T get() {
+        return asset;
+    }
+
+    /**
+     * Returns the asset, or the given placeholder if it is not loaded yet.
+     * */
+    public T getOrDefault(T placeholder) {
+        T loaded = asset;
+        return (loaded != null) ? loaded : placeholder;
+    }
+
+    /**
+     * Returns a future completed with the asset, on the OpenGL thread.
+     * */
+    public CompletableFuture<T> getFuture() {
+        return future;
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Asset load event class. JDK Flight Recorder event covering one stage of the
+ * load of an asset: the decode on a worker thread or the upload on the OpenGL thread.
+ * */
+
+package asset;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("sge.AssetLoad")
+@Label("Asset Load")
+@Category("SGE")
+final class AssetLoadEvent extends jdk.jfr.Event {
+
+    @Label("Path")
+    String path;
+
+    @Label("Loader")
+    String loader;
+
+    @Label("Stage")
+    String stage; // "decode" or "upload"
+
+    @Label("Success")
+    boolean success;
+}
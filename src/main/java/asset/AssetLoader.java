@@ -0,0 +1,40 @@
+/**
+ * Asset loader interface. It splits loading an asset in two steps: reading
+ * and decoding the file, done on a worker thread, and creating the OpenGL
+ * objects from the decoded data, done on the OpenGL thread.
+ * @param <D>   the decoded data.
+ * @param <T>   the asset.
+ * */
+
+package asset;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface AssetLoader<D, T> {
+
+    /**
+     * Read and decode a file. Called on a worker thread, must not use OpenGL.
+     * Temporary memory may come from {@link utils.FrameArena#local()}, an arena
+     * lent by the manager for the decode and reset when it returns, so the
+     * decoded data must not be stored there.
+     * @param path      the file to be loaded.
+     * @return the decoded data.
+     * */
+    D decode(Path path) throws IOException;
+
+    /**
+     * Create the asset from the decoded data. Called on the OpenGL thread.
+     * @param data      the decoded data, returned by {@link #decode(Path)}.
+     * @return the asset.
+     * */
+    T upload(D data);
+
+    /**
+     * Release the decoded data if the upload will not happen (e.g. the
+     * manager was shut down). Called on any thread.
+     * */
+    default void discard(D data) {
+
+    }
+}
@@ -0,0 +1,297 @@
+/**
+ * Asset manager class. It loads assets without blocking the frame: files are
+ * read and decoded on a pool of worker threads (virtual threads when the JVM
+ * supports them), and the OpenGL objects are created on the OpenGL thread by
+ * {@link #processUploads()}, which only spends a configurable time per frame.
+ * Requests return an {@link AssetHandle} right away; requesting the same path
+ * with the same loader again returns the same handle.
+ * */
+
+package asset;
+
+import renderer.Shader;
+import renderer.ShaderLibrary;
+import renderer.Texture;
+import renderer.TextureAtlas;
+import utils.FrameArena;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AssetManager {
+
+    /**
+     * Stores the handle of every requested asset, by loader and path: {@link #handles}
+     * */
+    private final Map<String, AssetHandle<?>> handles = new ConcurrentHashMap<>();
+
+    /**
+     * Stores the uploads waiting for the OpenGL thread: {@link #uploads}
+     * */
+    private final ConcurrentLinkedQueue<Upload<?, ?>> uploads = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Stores the worker threads reading and decoding files: {@link #workers}
+     * */
+    private final ExecutorService workers;
+
+    /**
+     * Stores the arenas lent to decodes, not in use: {@link #arenas}. Workers
+     * may be a new (virtual) thread per task, so decodes borrow an arena from
+     * here instead of keeping one per thread, and shutdown frees them.
+     * */
+    private final ConcurrentLinkedQueue<FrameArena> arenas = new ConcurrentLinkedQueue<>();
+    private volatile boolean shutdown;
+
+    /**
+     * Stores the library shaders are created on: {@link #shaderLibrary}
+     * */
+    private final ShaderLibrary shaderLibrary;
+
+    /**
+     * Stores the time (in nanoseconds) that uploads may take per frame: {@link #uploadBudget}
+     * */
+    private long uploadBudget;
+
+    /**
+     * Stores how many assets are requested but not ready (nor failed): {@link #pending}
+     * */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final TextureLoader textureLoader = new TextureLoader();
+    private final AtlasLoader atlasLoader = new AtlasLoader(TextureAtlas.DEFAULT_CACHE);
+
+    /**
+     * A decoded asset waiting to be uploaded on the OpenGL thread.
+     * */
+    private final class Upload<D, T> {
+        final AssetLoader<D, T> loader;
+        final AssetHandle<T> handle;
+        final D data;
+
+        Upload(AssetLoader<D, T> loader, AssetHandle<T> handle, D data) {
+            this.loader = loader;
+            this.handle = handle;
+            this.data = data;
+        }
+
+        void run() {
+            AssetLoadEvent event = new AssetLoadEvent();
+            event.begin();
+            boolean success = false;
+            try {
+                T asset = loader.upload(data);
+                success = true;
+                finish(handle, asset, null);
+            } catch (RuntimeException e) {
+                finish(handle, null, e);
+            } finally {
+                commit(event, handle.getPath(), loader, "upload", success);
+            }
+        }
+
+        void discard() {
+            loader.discard(data);
+        }
+    }
+
+    /**
+     * Constructor for the AssetManager.
+     * @param shaderLibrary     the library shaders are created on.
+     * */
+    public AssetManager(ShaderLibrary shaderLibrary) {
+        this.shaderLibrary = shaderLibrary;
+        this.workers = createWorkers();
+        this.uploadBudget = 2_000_000L; // 2ms per frame
+    }
+
+    /**
+     * Returns an executor running each task on a virtual thread when available
+     * (Java 21 or later), otherwise a pool with a daemon thread per spare core.
+     * */
+    private static ExecutorService createWorkers() {
+        try {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "SGE Asset Worker " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Set how long uploads may take per frame. At least one upload runs per
+     * frame, so loading always progresses.
+     * @param millis    the budget in milliseconds.
+     * */
+    public void setUploadBudget(double millis) {
+        uploadBudget = (long)(millis * 1e6);
+    }
+
+    /**
+     * Load a texture from an image file.
+     * */
+    public AssetHandle<Texture> loadTexture(String path) {
+        return load(path, textureLoader);
+    }
+
+    /**
+     * Load an atlas with every image of a directory, packed (or read from the
+     * atlas cache) on a worker thread.
+     * */
+    public AssetHandle<TextureAtlas> loadAtlas(String directory) {
+        return load(directory, atlasLoader);
+    }
+
+    /**
+     * Load a shader (variant) from a .glsl file.
+     * */
+    public AssetHandle<Shader> loadShader(String path, String... defines) {
+        return load(path, new ShaderLoader(shaderLibrary, defines), String.join(",", defines));
+    }
+
+    /**
+     * Load an asset with a loader.
+     * @param path      the file to be loaded.
+     * @param loader    decodes and uploads the asset.
+     * */
+    public <D, T> AssetHandle<T> load(String path, AssetLoader<D, T> loader) {
+        return load(path, loader, "");
+    }
+
+    @SuppressWarnings("unchecked")
+    private <D, T> AssetHandle<T> load(String path, AssetLoader<D, T> loader, String variant) {
+        String key = loader.getClass().getName() + ":" + path + "#" + variant;
+        AssetHandle<T> handle = new AssetHandle<>(path);
+        AssetHandle<?> existing = handles.putIfAbsent(key, handle);
+        if (existing != null) return (AssetHandle<T>)existing;
+
+        pending.incrementAndGet();
+        Path file = Paths.get(path);
+        try {
+            workers.execute(() -> decode(file, loader, handle));
+        } catch (RejectedExecutionException e) {
+            finish(handle, null, e);
+        }
+        return handle;
+    }
+
+    /**
+     * Decode an asset on a worker thread and queue its upload.
+     * */
+    private <D, T> void decode(Path file, AssetLoader<D, T> loader, AssetHandle<T> handle) {
+        AssetLoadEvent event = new AssetLoadEvent();
+        event.begin();
+        D data;
+        FrameArena arena = acquireArena();
+        FrameArena.bind(arena);
+        try {
+            data = loader.decode(file);
+        } catch (IOException | RuntimeException e) {
+            commit(event, handle.getPath(), loader, "decode", false);
+            finish(handle, null, e);
+            return;
+        } finally {
+            FrameArena.bind(null);
+            releaseArena(arena); // Transient memory of the decode, the data must not live there
+        }
+        commit(event, handle.getPath(), loader, "decode", true);
+        uploads.add(new Upload<>(loader, handle, data));
+        if (shutdown) discardUploads(); // Shut down during the decode, nothing will upload it
+    }
+
+    private void discardUploads() {
+        Upload<?, ?> upload;
+        while ((upload = uploads.poll()) != null) {
+            upload.discard();
+        }
+    }
+
+    private FrameArena acquireArena() {
+        FrameArena arena = arenas.poll();
+        return (arena != null) ? arena : new FrameArena(FrameArena.DEFAULT_LOCAL_CAPACITY);
+    }
+
+    private void releaseArena(FrameArena arena) {
+        arena.reset();
+        arenas.add(arena);
+        if (shutdown) freeArenas(); // Shut down during the decode
+    }
+
+    private void freeArenas() {
+        FrameArena arena;
+        while ((arena = arenas.poll()) != null) {
+            arena.free();
+        }
+    }
+
+    /**
+     * Commit a Flight Recorder event for a load stage, if enabled.
+     * */
+    private static void commit(AssetLoadEvent event, String path, AssetLoader<?, ?> loader, String stage, boolean success) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.path = path;
+        event.loader = loader.getClass().getSimpleName();
+        event.stage = stage;
+        event.success = success;
+        event.commit();
+    }
+
+    private <T> void finish(AssetHandle<T> handle, T asset, Throwable error) {
+        pending.decrementAndGet();
+        if (error != null) {
+            System.err.println("Could not load asset '" + handle.getPath() + "': " + error.getMessage());
+            handle.fail(error);
+        } else {
+            handle.complete(asset);
+        }
+    }
+
+    /**
+     * Run queued uploads until the per frame budget is spent. Called by the
+     * engine on the OpenGL thread once per frame.
+     * @return how many uploads ran.
+     * */
+    public int processUploads() {
+        long start = System.nanoTime();
+        int count = 0;
+        Upload<?, ?> upload;
+        while ((upload = uploads.poll()) != null) {
+            upload.run();
+            count++;
+            if (System.nanoTime() - start >= uploadBudget) break;
+        }
+        return count;
+    }
+
+    /**
+     * Returns how many assets were requested but are not loaded (nor failed) yet.
+     * */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Stop the worker threads. Decoded data that was not uploaded is dropped,
+     * and the memory of the decodes is freed (by the last ones to finish).
+     * */
+    public void shutdown() {
+        shutdown = true;
+        workers.shutdownNow();
+        freeArenas();
+        discardUploads();
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Atlas loader class. It loads (from the cache) or packs a {@link TextureAtlas}
+ * with every image of a directory on a worker thread, and creates its texture
+ * on the OpenGL thread.
+ * */
+
+package asset;
+
+import renderer.TextureAtlas;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class AtlasLoader implements AssetLoader<TextureAtlas, TextureAtlas> {
+    private final Path cacheDirectory;
+
+    /**
+     * Constructor for the AtlasLoader.
+     * @param cacheDirectory    directory for the cached atlases.
+     * */
+    public AtlasLoader(Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    @Override
+    public TextureAtlas decode(Path path) throws IOException {
+        return TextureAtlas.load(path, cacheDirectory);
+    }
+
+    @Override
+    public TextureAtlas upload(TextureAtlas atlas) {
+        atlas.create();
+        return atlas;
+    }
+
+    @Override
+    public void discard(TextureAtlas atlas) {
+        atlas.freePixels();
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ * Image data class. It holds an image decoded by stb_image into native
+ * memory, as RGBA pixels, until it is uploaded to a texture.
+ * */
+
+package asset;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.stb.STBImage.stbi_image_free;
+
+public class ImageData {
+    public final int width;
+    public final int height;
+    public final ByteBuffer pixels;
+
+    ImageData(int width, int height, ByteBuffer pixels) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Release the native memory of the pixels.
+     * */
+    public void free() {
+        stbi_image_free(pixels);
+    }
+}
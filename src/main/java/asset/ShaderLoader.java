@@ -0,0 +1,42 @@
+/**
+ * Shader loader class. It reads and preprocesses shader files on a worker
+ * thread, and compiles them on the OpenGL thread through a {@link ShaderLibrary},
+ * so each file and variant is still compiled only once.
+ * */
+
+package asset;
+
+import renderer.Shader;
+import renderer.ShaderLibrary;
+import renderer.ShaderPreprocessor;
+import renderer.ShaderSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class ShaderLoader implements AssetLoader<ShaderSource, Shader> {
+    private final ShaderLibrary library;
+    private final String[] defines;
+
+    /**
+     * Constructor for the ShaderLoader.
+     * @param library   the library the shaders are created on.
+     * @param defines   names defined on the shader variant.
+     * */
+    public ShaderLoader(ShaderLibrary library, String... defines) {
+        this.library = library;
+        this.defines = defines.clone();
+        Arrays.sort(this.defines);
+    }
+
+    @Override
+    public ShaderSource decode(Path path) throws IOException {
+        return ShaderPreprocessor.process(path, defines);
+    }
+
+    @Override
+    public Shader upload(ShaderSource source) {
+        return library.create(source);
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Texture loader class. It decodes images (PNG, JPEG, BMP, TGA...) with
+ * stb_image into native memory on a worker thread, and uploads them to a
+ * {@link Texture} on the OpenGL thread.
+ * */
+
+package asset;
+
+import org.lwjgl.system.MemoryStack;
+import renderer.Texture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+
+import static org.lwjgl.stb.STBImage.stbi_failure_reason;
+import static org.lwjgl.stb.STBImage.stbi_load;
+
+public class TextureLoader implements AssetLoader<ImageData, Texture> {
+
+    @Override
+    public ImageData decode(Path path) throws IOException {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer width = stack.mallocInt(1);
+            IntBuffer height = stack.mallocInt(1);
+            IntBuffer channels = stack.mallocInt(1);
+            ByteBuffer pixels = stbi_load(path.toString(), width, height, channels, 4); // Always RGBA
+            if (pixels == null) {
+                throw new IOException("Could not decode image '" + path + "': " + stbi_failure_reason());
+            }
+            return new ImageData(width.get(0), height.get(0), pixels);
+        }
+    }
+
+    @Override
+    public Texture upload(ImageData data) {
+        try {
+            return new Texture(data.width, data.height, data.pixels);
+        } finally {
+            data.free();
+        }
+    }
+
+    @Override
+    public void discard(ImageData data) {
+        data.free();
+    }
+}
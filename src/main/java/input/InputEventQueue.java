@@ -0,0 +1,228 @@
+/**
+ * Input event queue class. It hands GLFW input events from the thread polling
+ * the window events to the thread running the scene updates without locks.
+ * Events are stored in preallocated primitive arrays used as a ring buffer with
+ * a single producer and a single consumer, so queueing an event never allocates.
+ * Each event is stamped with the {@link System#nanoTime()} it was received at.
+ * */
+
+package input;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class InputEventQueue {
+    public static final int KEY = 0;
+    public static final int BUTTON = 1;
+    public static final int POSITION = 2;
+    public static final int SCROLL = 3;
+
+    /**
+     * Stores the mask used to wrap sequence numbers into the ring: {@link #mask}
+     * */
+    private final int mask;
+
+    /**
+     * Stores the event type for each slot: {@link #types}
+     * */
+    private final int[] types;
+
+    /**
+     * Stores the key or button code for each slot: {@link #codes}
+     * */
+    private final int[] codes;
+
+    /**
+     * Stores the GLFW action for each slot: {@link #actions}
+     * */
+    private final int[] actions;
+
+    /**
+     * Stores the GLFW modifier keys for each slot: {@link #mods}
+     * */
+    private final int[] mods;
+
+    /**
+     * Stores the x value (position or scroll) for each slot: {@link #xs}
+     * */
+    private final double[] xs;
+
+    /**
+     * Stores the y value (position or scroll) for each slot: {@link #ys}
+     * */
+    private final double[] ys;
+
+    /**
+     * Stores the time (in nanoseconds) each event was received: {@link #times}
+     * */
+    private final long[] times;
+
+    /**
+     * Stores the sequence of the next event to be read, written only by
+     * the consumer: {@link #head}
+     * */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Stores the sequence of the next event to be written, written only by
+     * the producer: {@link #tail}
+     * */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Stores how many events were dropped because the queue was full: {@link #dropped}
+     * */
+    private volatile long dropped;
+
+    /**
+     * Constructor for the InputEventQueue.
+     * @param capacity      maximum amount of pending events, rounded up to
+     *                      a power of two.
+     * */
+    public InputEventQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Input queue capacity must be positive.");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        mask = size - 1;
+        types = new int[size];
+        codes = new int[size];
+        actions = new int[size];
+        mods = new int[size];
+        xs = new double[size];
+        ys = new double[size];
+        times = new long[size];
+    }
+
+    /**
+     * Queue an event, called only from the producer thread.
+     * @return false if the queue was full and the event was dropped.
+     * */
+    boolean offer(int type, int code, int action, int modifiers, double x, double y) {
+        long time = System.nanoTime();
+        long t = tail.get();
+        if (t - head.get() > mask) {
+            dropped++;
+            return false;
+        }
+        int i = (int)t & mask;
+        types[i] = type;
+        codes[i] = code;
+        actions[i] = action;
+        mods[i] = modifiers;
+        xs[i] = x;
+        ys[i] = y;
+        times[i] = time;
+        tail.lazySet(t + 1); // Publish the slot to the consumer
+        return true;
+    }
+
+    /**
+     * Queue a key event, e.g. to feed input programmatically. Only one thread
+     * may offer events to a queue.
+     * @param key       GLFW key.
+     * @param action    GLFW action (press, release or repeat).
+     * @param mods      GLFW modifier keys.
+     * @return false if the queue was full and the event was dropped.
+     * */
+    public boolean offerKey(int key, int action, int mods) {
+        return offer(KEY, key, action, mods, 0.0, 0.0);
+    }
+
+    /**
+     * Queue a mouse button event, see {@link #offerKey(int, int, int)}.
+     * */
+    public boolean offerButton(int button, int action, int mods) {
+        return offer(BUTTON, button, action, mods, 0.0, 0.0);
+    }
+
+    /**
+     * Queue a mouse position event, see {@link #offerKey(int, int, int)}.
+     * */
+    public boolean offerPosition(double x, double y) {
+        return offer(POSITION, 0, 0, 0, x, y);
+    }
+
+    /**
+     * Queue a mouse scroll event, see {@link #offerKey(int, int, int)}.
+     * */
+    public boolean offerScroll(double xOffset, double yOffset) {
+        return offer(SCROLL, 0, 0, 0, xOffset, yOffset);
+    }
+
+    /**
+     * Apply every pending event to the {@link KeyListener} and {@link MouseListener}
+     * state, called only from the consumer thread.
+     * @return the amount of events applied.
+     * */
+    public int drain() {
+        return drain(null);
+    }
+
+    /**
+     * Apply every pending event to the {@link KeyListener} and {@link MouseListener}
+     * state, called only from the consumer thread. The snapshot receives the
+     * events, in order, and the state after applying them.
+     * @param snapshot  the snapshot of this frame, or null.
+     * @return the amount of events applied.
+     * */
+    public int drain(InputSnapshot snapshot) {
+        long h = head.get();
+        long t = tail.get();
+        if (snapshot != null) snapshot.clearEvents();
+        for (long s = h; s < t; s++) {
+            int i = (int)s & mask;
+            if (snapshot != null) {
+                snapshot.addEvent(types[i], codes[i], actions[i], mods[i], xs[i], ys[i], times[i]);
+            }
+            apply(types[i], codes[i], actions[i], xs[i], ys[i]);
+        }
+        head.lazySet(t); // Release the slots to the producer
+        if (snapshot != null) {
+            KeyListener.capture(snapshot);
+            MouseListener.capture(snapshot);
+        }
+        return (int)(t - h);
+    }
+
+    /**
+     * Returns true if no event is pending, called only from the consumer thread.
+     * */
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    /**
+     * Discard every pending event, called only from the consumer thread.
+     * */
+    public void clear() {
+        head.lazySet(tail.get());
+    }
+
+    /**
+     * Apply an event to the {@link KeyListener} or {@link MouseListener} state.
+     * */
+    static void apply(int type, int code, int action, double x, double y) {
+        switch (type) {
+            case KEY:
+                KeyListener.applyKey(code, action);
+                break;
+            case BUTTON:
+                MouseListener.applyButton(code, action);
+                break;
+            case POSITION:
+                MouseListener.applyPosition(x, y);
+                break;
+            case SCROLL:
+                MouseListener.applyScroll(x, y);
+                break;
+        }
+    }
+
+    /**
+     * Returns how many events were dropped because the queue was full.
+     * */
+    public long getDroppedCount() {
+        return dropped;
+    }
+}
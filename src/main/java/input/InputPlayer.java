@@ -0,0 +1,168 @@
+/**
+ * Input player class. It replays a file written by {@link InputRecorder}: each
+ * call to {@link #playFrame(InputSnapshot)} applies the events of the next
+ * recorded frame, exactly as {@link InputEventQueue#drain(InputSnapshot)}
+ * applies live events, and gives the recorded delta time of that frame.
+ * The file is read through a direct buffer refilled in big chunks.
+ * */
+
+package input;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class InputPlayer implements Closeable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+    private boolean endOfFile;
+
+    /**
+     * Stores the previous values, the base of the differences read:
+     * {@link #lastDelta}, {@link #lastTime}, {@link #lastX}, {@link #lastY}
+     * */
+    private long lastDelta;
+    private long lastTime;
+    private long lastX;
+    private long lastY;
+
+    private long frames;
+
+    /**
+     * Constructor for the InputPlayer.
+     * @param file  a file written by {@link InputRecorder}.
+     * */
+    public InputPlayer(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        buffer.flip(); // Empty, ready to be refilled
+        if (!ensure(5) || buffer.remaining() < 5 || buffer.getInt() != InputRecorder.MAGIC) {
+            channel.close();
+            throw new IOException("'" + file + "' is not an input recording.");
+        }
+        int version = buffer.get();
+        if (version != InputRecorder.VERSION) {
+            channel.close();
+            throw new IOException("Unsupported input recording version " + version + ".");
+        }
+    }
+
+    /**
+     * Apply the events of the next frame to the listeners and the snapshot.
+     * @param snapshot  receives the events and the state after them.
+     * @return false if there are no more frames.
+     * */
+    public boolean playFrame(InputSnapshot snapshot) throws IOException {
+        try {
+            return readFrame(snapshot);
+        } catch (BufferUnderflowException e) {
+            return false; // Recording cut in the middle of a frame
+        }
+    }
+
+    private boolean readFrame(InputSnapshot snapshot) throws IOException {
+        if (!ensure(20)) return false;
+        int count = (int)getVarLong();
+        lastDelta += unzigzag(getVarLong());
+
+        snapshot.clearEvents();
+        for (int i = 0; i < count; i++) {
+            if (!ensure(InputRecorder.MAX_EVENT_SIZE)) return false;
+            int header = buffer.get();
+            int type = header & 0b11;
+            int action = (header >>> 2) & 0b11;
+            boolean raw = (header & InputRecorder.RAW) != 0;
+            lastTime += unzigzag(getVarLong());
+
+            int code = 0;
+            int mods = 0;
+            double x = 0.0;
+            double y = 0.0;
+            switch (type) {
+                case InputEventQueue.KEY:
+                case InputEventQueue.BUTTON:
+                    code = (int)unzigzag(getVarLong());
+                    mods = (int)getVarLong();
+                    break;
+                case InputEventQueue.POSITION:
+                    if (raw) {
+                        x = buffer.getDouble();
+                        y = buffer.getDouble();
+                    } else {
+                        lastX += unzigzag(getVarLong());
+                        lastY += unzigzag(getVarLong());
+                        x = lastX;
+                        y = lastY;
+                    }
+                    break;
+                case InputEventQueue.SCROLL:
+                    if (raw) {
+                        x = buffer.getDouble();
+                        y = buffer.getDouble();
+                    } else {
+                        x = unzigzag(getVarLong());
+                        y = unzigzag(getVarLong());
+                    }
+                    break;
+            }
+            snapshot.addEvent(type, code, action, mods, x, y, lastTime);
+            InputEventQueue.apply(type, code, action, x, y);
+        }
+        KeyListener.capture(snapshot);
+        MouseListener.capture(snapshot);
+        frames++;
+        return true;
+    }
+
+    /**
+     * Returns the recorded delta time (in nanoseconds) of the last frame played.
+     * */
+    public long getDeltaNanos() {
+        return lastDelta;
+    }
+
+    /**
+     * Returns how many frames were played.
+     * */
+    public long getFrameCount() {
+        return frames;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Refill the buffer if it has less than the given bytes.
+     * @return false if the file ended before having them.
+     * */
+    private boolean ensure(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes || endOfFile) return buffer.remaining() > 0;
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) == -1) {
+                endOfFile = true;
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() > 0;
+    }
+
+    private long getVarLong() {
+        long value = 0L;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long)(b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
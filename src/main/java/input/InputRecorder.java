@@ -0,0 +1,161 @@
+/**
+ * Input recorder class. It writes the input of every frame, with the delta
+ * time of the frame, to a compact binary file that {@link InputPlayer} can
+ * replay, so a session can be reproduced frame by frame (e.g. to benchmark
+ * the same gameplay after every change).
+ * Numbers are written as varints, most of them as the (zigzag) difference with
+ * the previous value, into a direct buffer written to the file in big chunks.
+ * <pre>
+ * file:   magic "SGEI", version byte, frames until the end of the file
+ * frame:  varint event count, zigzag varint delta time - previous delta time
+ * event:  byte type | action &lt;&lt; 2 | raw &lt;&lt; 4,
+ *         zigzag varint time - previous event time,
+ *         key/button: zigzag varint code, varint mods
+ *         position:   zigzag varints x, y - previous position (raw: two doubles)
+ *         scroll:     zigzag varints x, y (raw: two doubles)
+ * </pre>
+ * */
+
+package input;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class InputRecorder implements Closeable {
+    static final int MAGIC = 0x53474549; // "SGEI"
+    static final int VERSION = 1;
+    static final int RAW = 1 << 4;
+    static final int MAX_EVENT_SIZE = 1 + 10 + 16 + 10;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+    /**
+     * Stores the previous values, the base of the differences written:
+     * {@link #lastDelta}, {@link #lastTime}, {@link #lastX}, {@link #lastY}
+     * */
+    private long lastDelta;
+    private long lastTime;
+    private long lastX;
+    private long lastY;
+
+    private long frames;
+
+    /**
+     * Constructor for the InputRecorder, replacing the file if it exists.
+     * @param file  the file to write.
+     * */
+    public InputRecorder(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        buffer.putInt(MAGIC);
+        buffer.put((byte)VERSION);
+    }
+
+    /**
+     * Write the input of a frame.
+     * @param deltaNanos    the delta time used by the frame.
+     * @param snapshot      the input of the frame.
+     * */
+    public void recordFrame(long deltaNanos, InputSnapshot snapshot) throws IOException {
+        ensure(20);
+        int count = snapshot.getEventCount();
+        putVarLong(count);
+        putVarLong(zigzag(deltaNanos - lastDelta));
+        lastDelta = deltaNanos;
+
+        for (int i = 0; i < count; i++) {
+            ensure(MAX_EVENT_SIZE);
+            int type = snapshot.getEventType(i);
+            double x = snapshot.getEventX(i);
+            double y = snapshot.getEventY(i);
+            boolean raw = (type == InputEventQueue.POSITION || type == InputEventQueue.SCROLL)
+                    && (!isWhole(x) || !isWhole(y));
+            buffer.put((byte)(type | (snapshot.getEventAction(i) & 0b11) << 2 | (raw ? RAW : 0)));
+            long time = snapshot.getEventTime(i);
+            putVarLong(zigzag(time - lastTime));
+            lastTime = time;
+
+            switch (type) {
+                case InputEventQueue.KEY:
+                case InputEventQueue.BUTTON:
+                    putVarLong(zigzag(snapshot.getEventCode(i)));
+                    putVarLong(snapshot.getEventMods(i) & 0xFFFFFFFFL);
+                    break;
+                case InputEventQueue.POSITION:
+                    if (raw) {
+                        buffer.putDouble(x).putDouble(y);
+                    } else {
+                        putVarLong(zigzag((long)x - lastX));
+                        putVarLong(zigzag((long)y - lastY));
+                        lastX = (long)x;
+                        lastY = (long)y;
+                    }
+                    break;
+                case InputEventQueue.SCROLL:
+                    if (raw) {
+                        buffer.putDouble(x).putDouble(y);
+                    } else {
+                        putVarLong(zigzag((long)x));
+                        putVarLong(zigzag((long)y));
+                    }
+                    break;
+            }
+        }
+        frames++;
+    }
+
+    /**
+     * Returns how many frames were recorded.
+     * */
+    public long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * Write what is left and close the file.
+     * */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte)value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Returns if a value is a whole number that is written exactly as a long.
+     * */
+    private static boolean isWhole(double value) {
+        return value == Math.rint(value) && Math.abs(value) < (1L << 52);
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * Input snapshot class. It holds the input of one frame, filled by
+ * {@link InputEventQueue#drain(InputSnapshot)}: the state of the keys, buttons
+ * and mouse after the events of the frame, and every event of the frame in the
+ * order it was received (e.g. every mouse position, not only the last one).
+ * Events are stored in primitive arrays reused every frame.
+ * */
+
+package input;
+
+import java.util.Arrays;
+
+public class InputSnapshot {
+
+    /**
+     * Stores the key status, one bit per key: {@link #keysHeld},
+     * {@link #keysPressed}, {@link #keysReleased}
+     * */
+    final long[] keysHeld = new long[KeyListener.WORDS];
+    final long[] keysPressed = new long[KeyListener.WORDS];
+    final long[] keysReleased = new long[KeyListener.WORDS];
+
+    /**
+     * Stores the button status, one bit per button: {@link #buttonsHeld},
+     * {@link #buttonsPressed}, {@link #buttonsReleased}
+     * */
+    int buttonsHeld;
+    int buttonsPressed;
+    int buttonsReleased;
+
+    /**
+     * Stores the mouse status: {@link #mouseX}, {@link #mouseY}, {@link #mouseDx},
+     * {@link #mouseDy}, {@link #scrollX}, {@link #scrollY}, {@link #dragging}
+     * */
+    double mouseX;
+    double mouseY;
+    double mouseDx;
+    double mouseDy;
+    double scrollX;
+    double scrollY;
+    boolean dragging;
+
+    /**
+     * Stores the events of the frame: {@link #types}, {@link #codes}, {@link #actions},
+     * {@link #mods}, {@link #xs}, {@link #ys}, {@link #times}
+     * */
+    private int[] types = new int[256];
+    private int[] codes = new int[256];
+    private int[] actions = new int[256];
+    private int[] mods = new int[256];
+    private double[] xs = new double[256];
+    private double[] ys = new double[256];
+    private long[] times = new long[256];
+    private int eventCount;
+
+    void clearEvents() {
+        eventCount = 0;
+    }
+
+    void addEvent(int type, int code, int action, int modifiers, double x, double y, long time) {
+        if (eventCount == types.length) {
+            int capacity = eventCount * 2;
+            types = Arrays.copyOf(types, capacity);
+            codes = Arrays.copyOf(codes, capacity);
+            actions = Arrays.copyOf(actions, capacity);
+            mods = Arrays.copyOf(mods, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            times = Arrays.copyOf(times, capacity);
+        }
+        int i = eventCount++;
+        types[i] = type;
+        codes[i] = code;
+        actions[i] = action;
+        mods[i] = modifiers;
+        xs[i] = x;
+        ys[i] = y;
+        times[i] = time;
+    }
+
+    public boolean isKeyHeld(int key) {
+        return KeyListener.isSet(keysHeld, key);
+    }
+
+    /**
+     * Returns if the key was pressed this frame.
+     * */
+    public boolean isKeyDown(int key) {
+        return KeyListener.isSet(keysPressed, key);
+    }
+
+    /**
+     * Returns if the key was released this frame.
+     * */
+    public boolean isKeyUp(int key) {
+        return KeyListener.isSet(keysReleased, key);
+    }
+
+    public boolean isButtonHeld(int button) {
+        return MouseListener.isSet(buttonsHeld, button);
+    }
+
+    /**
+     * Returns if the button was pressed this frame.
+     * */
+    public boolean isButtonDown(int button) {
+        return MouseListener.isSet(buttonsPressed, button);
+    }
+
+    /**
+     * Returns if the button was released this frame.
+     * */
+    public boolean isButtonUp(int button) {
+        return MouseListener.isSet(buttonsReleased, button);
+    }
+
+    public double getMouseX() {
+        return mouseX;
+    }
+
+    public double getMouseY() {
+        return mouseY;
+    }
+
+    /**
+     * Returns the x the mouse had at the start of the frame minus the current x.
+     * */
+    public double getMouseDx() {
+        return mouseDx;
+    }
+
+    /**
+     * Returns the y the mouse had at the start of the frame minus the current y.
+     * */
+    public double getMouseDy() {
+        return mouseDy;
+    }
+
+    /**
+     * Returns the horizontal scroll of the frame.
+     * */
+    public double getScrollX() {
+        return scrollX;
+    }
+
+    /**
+     * Returns the vertical scroll of the frame.
+     * */
+    public double getScrollY() {
+        return scrollY;
+    }
+
+    public boolean isDragging() {
+        return dragging;
+    }
+
+    /**
+     * Returns how many events were received this frame.
+     * */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Returns the type of an event, one of the {@link InputEventQueue} types.
+     * */
+    public int getEventType(int event) {
+        return types[event];
+    }
+
+    /**
+     * Returns the key or button of an event.
+     * */
+    public int getEventCode(int event) {
+        return codes[event];
+    }
+
+    /**
+     * Returns the GLFW action (press, release or repeat) of an event.
+     * */
+    public int getEventAction(int event) {
+        return actions[event];
+    }
+
+    /**
+     * Returns the GLFW modifier keys of an event.
+     * */
+    public int getEventMods(int event) {
+        return mods[event];
+    }
+
+    /**
+     * Returns the x (position or scroll) of an event.
+     * */
+    public double getEventX(int event) {
+        return xs[event];
+    }
+
+    /**
+     * Returns the y (position or scroll) of an event.
+     * */
+    public double getEventY(int event) {
+        return ys[event];
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} an event was received at.
+     * */
+    public long getEventTime(int event) {
+        return times[event];
+    }
+}
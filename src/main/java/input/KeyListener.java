@@ -1,58 +1,76 @@
 /**
  * Keyboard listener class. It listens for all possible keyboard keys on GLFW.
- * This class stores the status for each keyboard key.
+ * This class stores the status for each keyboard key as bitsets (one bit per
+ * key): held, pressed this frame and released this frame.
  * */
 
 package input;
 
-import utils.KeyAction;
-
-import java.security.Key;
-import java.util.Vector;
-
 import static org.lwjgl.glfw.GLFW.GLFW_PRESS;
 import static org.lwjgl.glfw.GLFW.GLFW_RELEASE;
 
 
 public class KeyListener {
+    static final int KEY_COUNT = 350;
+    static final int WORDS = (KEY_COUNT + 63) / 64;
 
     /**
-     * Stores Key Actions for each key: {@link #keys}
+     * Stores the keys being held: {@link #held}
      * */
-    private KeyAction keys[];
+    private final long[] held = new long[WORDS];
 
     /**
-     * Stores the index of which key(s) were released: {@link #keysReleasedIndex}
+     * Stores the keys pressed since the last reset: {@link #pressed}
      * */
-    private Vector<Integer> keysReleasedIndex;
+    private final long[] pressed = new long[WORDS];
 
     /**
-     * Stores the singleton instance for the KeyListener
-     * class: {@link #keyListener}
+     * Stores the keys released since the last reset: {@link #released}
      * */
-    private static KeyListener keyListener;
+    private final long[] released = new long[WORDS];
 
     /**
-     * Default constructor for the KeyListener.
+     * Stores the KeyListener of the threads without one bound: {@link #DEFAULT}
      * */
-    private KeyListener() {
-        keys = new KeyAction[350];
-        keysReleasedIndex = new Vector<Integer>();
-        for (int i = 0; i < keys.length; i++) {
-            keys[i] = new KeyAction();
-        }
+    private static final KeyListener DEFAULT = new KeyListener();
+
+    /**
+     * Stores the KeyListener bound to each thread: {@link #CURRENT}
+     * */
+    private static final ThreadLocal<KeyListener> CURRENT = ThreadLocal.withInitial(() -> DEFAULT);
+
+    /**
+     * Stores the queue events are handed off to, to be applied by the thread
+     * updating the scene, null to apply them directly: {@link #handoffQueue}
+     * */
+    private volatile InputEventQueue handoffQueue;
+
+    /**
+     * Default constructor for the KeyListener. Each engine has its own, see {@link #bind(KeyListener)}.
+     * */
+    public KeyListener() {
+
     }
 
     /**
-     * Singleton static method, synchronized to avoid multiple
-     * instances if multiple threads call it at the same time.
+     * Returns the KeyListener bound to the calling thread (a default one if none).
+     * No lock is taken, so it is cheap to call on every frame.
      * */
-    public static synchronized KeyListener get() {
-        if (KeyListener.keyListener == null) {
-            KeyListener.keyListener = new KeyListener();
-        }
+    public static KeyListener get() {
+        return CURRENT.get();
+    }
 
-        return KeyListener.keyListener;
+    /**
+     * Bind a KeyListener to the calling thread, used by every static method
+     * called from it. GLFW callbacks use the one bound to the main thread.
+     * @param listener  the listener, null to use the default one.
+     * */
+    public static void bind(KeyListener listener) {
+        if (listener == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(listener);
+        }
     }
 
     /**
@@ -60,58 +78,87 @@ public class KeyListener {
      * as described on the GLFW documentation.
      */
     public static void keyCallback(long gameWindow, int key, int scancode, int action, int mods) {
+        InputEventQueue queue = get().handoffQueue;
+        if (queue != null) {
+            queue.offer(InputEventQueue.KEY, key, action, mods, 0.0, 0.0);
+        } else {
+            applyKey(key, action);
+        }
+    }
+
+    /**
+     * Set the queue used to hand events off to the thread updating the scene,
+     * on the listener bound to the calling thread.
+     * @param queue     the queue receiving the events, or null to update
+     *                  the key status directly on the callback.
+     * */
+    public static void setHandoffQueue(InputEventQueue queue) {
+        get().handoffQueue = queue;
+    }
+
+    /**
+     * Update the key status for a key action.
+     * */
+    static void applyKey(int key, int action) {
+        if (key < 0 || key >= KEY_COUNT) return; // GLFW_KEY_UNKNOWN
         KeyListener instance = get();
-        if (key >= instance.keys.length) return;
-        System.out.println("Keyboard key " + key + " " + action + ".");
+        int word = key >>> 6;
+        long bit = 1L << key;
         if (action == GLFW_PRESS) {
-            instance.keys[key].held = true;
-            instance.keys[key].pressed = true;
+            instance.held[word] |= bit;
+            instance.pressed[word] |= bit;
         } else if (action == GLFW_RELEASE) {
-            instance.keys[key].released = true; // Remember to reset this!
-            instance.keysReleasedIndex.add(key);
-            instance.keys[key].held = false;
-            instance.keys[key].pressed = false;
+            instance.held[word] &= ~bit;
+            instance.released[word] |= bit;
         }
     }
 
+    /**
+     * Copy the key status into an input snapshot.
+     * */
+    static void capture(InputSnapshot snapshot) {
+        KeyListener instance = get();
+        System.arraycopy(instance.held, 0, snapshot.keysHeld, 0, WORDS);
+        System.arraycopy(instance.pressed, 0, snapshot.keysPressed, 0, WORDS);
+        System.arraycopy(instance.released, 0, snapshot.keysReleased, 0, WORDS);
+    }
+
+    /**
+     * Returns if a key bit is set.
+     * */
+    static boolean isSet(long[] bits, int key) {
+        return key >= 0 && key < KEY_COUNT && (bits[key >>> 6] & (1L << key)) != 0;
+    }
+
     /**
      * Returns if the specified key is being held.
      */
     public static boolean isKeyHeld(int button) {
-        if (button < get().keys.length) {
-            return get().keys[button].held;
-        }
-        return false;
+        return isSet(get().held, button);
     }
 
     /**
      * Returns if the specified key has been released.
      */
     public static boolean isKeyUp(int button) {
-        if (button < get().keys.length) {
-            return get().keys[button].released;
-        }
-        return false;
+        return isSet(get().released, button);
     }
 
     /**
      * Returns if the specified key has been pressed.
      */
     public static boolean isKeyDown(int button) {
-        if (button < get().keys.length) {
-            return get().keys[button].pressed;
-        }
-        return false;
+        return isSet(get().pressed, button);
     }
 
     /**
-     * Reset release state for all keys (at the end of the frame).
+     * Reset pressed and release state for all keys (at the end of the frame).
      */
     public static void resetKeyRelease() {
         KeyListener instance = get();
-        for (int i = 0; i < instance.keysReleasedIndex.size(); i++) {
-            instance.keys[instance.keysReleasedIndex.get(i)].released = false;
+        for (int i = 0; i < WORDS; i++) {
+            instance.pressed[i] = 0L;
+            instance.released[i] = 0L;
         }
-        instance.keysReleasedIndex.clear();
     }
 }
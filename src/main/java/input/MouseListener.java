@@ -4,19 +4,18 @@
  * the difference between the mouse position from one frame and the previous
  * one).
  * It also stores the values for the mouse wheel (scroll), and the button
- * status (pressed, held and released).
+ * status (pressed, held and released) as bitsets, one bit per button.
  * */
 package input;
 
-import org.lwjgl.glfw.GLFW;
-import org.lwjgl.system.CallbackI;
-import utils.KeyAction;
 import utils.Vect2D;
+import utils.Vect2F;
 
 import static org.lwjgl.glfw.GLFW.GLFW_PRESS;
 import static org.lwjgl.glfw.GLFW.GLFW_RELEASE;
 
 public class MouseListener {
+    static final int BUTTON_COUNT = 8;
 
     /**
      * Stores the mouse current position on screen: {@link #pos}
@@ -24,14 +23,17 @@ public class MouseListener {
     private Vect2D pos;
 
     /**
-     * Stores the mouse previous position on screen: {@link #lastPos}
+     * Stores the mouse position at the start of the frame: {@link #lastPos}
      * */
     private Vect2D lastPos;
 
     /**
-     * Stores Key Actions for each mouse buttons: {@link #keys}
+     * Stores the buttons held, pressed and released this frame, one bit per
+     * button: {@link #held}, {@link #pressed}, {@link #released}
      * */
-    private KeyAction keys[];
+    private int held;
+    private int pressed;
+    private int released;
 
     /**
      * Stores if the mouse is being dragged (moved while pressed/held)
@@ -40,45 +42,60 @@ public class MouseListener {
     private boolean dragging;
 
     /**
-     * Stores the mouse scroll on the X-axis: {@link #xScroll}
+     * Stores the mouse scroll on the X-axis during the frame: {@link #xScroll}
      * */
     private double xScroll;
 
     /**
-     * Stores the mouse scroll on the Y-axis: {@link #yScroll}
+     * Stores the mouse scroll on the Y-axis during the frame: {@link #yScroll}
      * */
     private double yScroll;
 
     /**
-     * Stores the singleton instance for the MouseListener
-     * class: {@link #mouseListener}
+     * Stores the MouseListener of the threads without one bound: {@link #DEFAULT}
      * */
-    private static MouseListener mouseListener = null;
+    private static final MouseListener DEFAULT = new MouseListener();
 
     /**
-     * Default constructor for the MouseListener.
+     * Stores the MouseListener bound to each thread: {@link #CURRENT}
      * */
-    private MouseListener() {
+    private static final ThreadLocal<MouseListener> CURRENT = ThreadLocal.withInitial(() -> DEFAULT);
+
+    /**
+     * Stores the queue events are handed off to, to be applied by the thread
+     * updating the scene, null to apply them directly: {@link #handoffQueue}
+     * */
+    private volatile InputEventQueue handoffQueue;
+
+    /**
+     * Default constructor for the MouseListener. Each engine has its own, see {@link #bind(MouseListener)}.
+     * */
+    public MouseListener() {
         pos = new Vect2D();
         lastPos = new Vect2D();
         xScroll = 0.0;
         yScroll = 0.0;
-        keys = new KeyAction[7];
-        for (int i = 0; i < keys.length; i++) {
-            keys[i] = new KeyAction();
-        }
     }
 
     /**
-     * Singleton static method, synchronized to avoid multiple
-     * instances if multiple threads call it at the same time.
+     * Returns the MouseListener bound to the calling thread (a default one if none).
+     * No lock is taken, so it is cheap to call on every frame.
      * */
-    public static synchronized MouseListener get() {
-        if (MouseListener.mouseListener == null) {
-            MouseListener.mouseListener = new MouseListener();
-        }
+    public static MouseListener get() {
+        return CURRENT.get();
+    }
 
-        return MouseListener.mouseListener;
+    /**
+     * Bind a MouseListener to the calling thread, used by every static method
+     * called from it. GLFW callbacks use the one bound to the main thread.
+     * @param listener  the listener, null to use the default one.
+     * */
+    public static void bind(MouseListener listener) {
+        if (listener == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(listener);
+        }
     }
 
     /**
@@ -86,10 +103,22 @@ public class MouseListener {
      * as described on the GLFW documentation.
      */
     public static void positionCallBack(long gameWindow, double x, double y) {
+        InputEventQueue queue = get().handoffQueue;
+        if (queue != null) {
+            queue.offer(InputEventQueue.POSITION, 0, 0, 0, x, y);
+        } else {
+            applyPosition(x, y);
+        }
+    }
+
+    /**
+     * Update the mouse position. Every position of the frame is kept as an event
+     * of the {@link InputSnapshot}, the listener only keeps the last one.
+     * */
+    static void applyPosition(double x, double y) {
         MouseListener instance = get();
-        instance.lastPos.copy(instance.pos);
         instance.pos.set(x, y);
-        instance.dragging = isAnyPressed();
+        instance.dragging = instance.held != 0;
     }
 
     /**
@@ -97,16 +126,27 @@ public class MouseListener {
      * as described on the GLFW documentation.
      */
     public static void buttonCallback(long gameWindow, int button, int action, int mods) {
+        InputEventQueue queue = get().handoffQueue;
+        if (queue != null) {
+            queue.offer(InputEventQueue.BUTTON, button, action, mods, 0.0, 0.0);
+        } else {
+            applyButton(button, action);
+        }
+    }
+
+    /**
+     * Update the button status for a button action.
+     * */
+    static void applyButton(int button, int action) {
+        if (button < 0 || button >= BUTTON_COUNT) return;
         MouseListener instance = get();
-        if (button >= instance.keys.length) return;
-        System.out.println("Mouse button " + button + " " + action + ".");
+        int bit = 1 << button;
         if (action == GLFW_PRESS) {
-            instance.keys[button].held = true;
-            instance.keys[button].pressed = true;
+            instance.held |= bit;
+            instance.pressed |= bit;
         } else if (action == GLFW_RELEASE) {
-            instance.keys[button].pressed = false;
-            instance.keys[button].released = true; // Remember to reset!!
-            instance.keys[button].held = false;
+            instance.held &= ~bit;
+            instance.released |= bit;
             instance.dragging = false;
         }
     }
@@ -116,9 +156,48 @@ public class MouseListener {
      * as described on the GLFW documentation.
      */
     public static void scrollCallback(long gameWindow, double xOffset, double yOffset) {
+        InputEventQueue queue = get().handoffQueue;
+        if (queue != null) {
+            queue.offer(InputEventQueue.SCROLL, 0, 0, 0, xOffset, yOffset);
+        } else {
+            applyScroll(xOffset, yOffset);
+        }
+    }
+
+    /**
+     * Set the queue used to hand events off to the thread updating the scene,
+     * on the listener bound to the calling thread.
+     * @param queue     the queue receiving the events, or null to update
+     *                  the mouse status directly on the callback.
+     * */
+    public static void setHandoffQueue(InputEventQueue queue) {
+        get().handoffQueue = queue;
+    }
+
+    /**
+     * Update the mouse scrolling, adding up every scroll of the frame.
+     * */
+    static void applyScroll(double xOffset, double yOffset) {
+        MouseListener instance = get();
+        instance.xScroll += xOffset;
+        instance.yScroll += yOffset;
+    }
+
+    /**
+     * Copy the mouse status into an input snapshot.
+     * */
+    static void capture(InputSnapshot snapshot) {
         MouseListener instance = get();
-        instance.xScroll = xOffset;
-        instance.yScroll = yOffset;
+        snapshot.mouseX = instance.pos.x;
+        snapshot.mouseY = instance.pos.y;
+        snapshot.mouseDx = instance.lastPos.x - instance.pos.x;
+        snapshot.mouseDy = instance.lastPos.y - instance.pos.y;
+        snapshot.scrollX = instance.xScroll;
+        snapshot.scrollY = instance.yScroll;
+        snapshot.buttonsHeld = instance.held;
+        snapshot.buttonsPressed = instance.pressed;
+        snapshot.buttonsReleased = instance.released;
+        snapshot.dragging = instance.dragging;
     }
 
     /**
@@ -128,33 +207,22 @@ public class MouseListener {
         MouseListener instance = get();
         instance.xScroll = 0.0;
         instance.yScroll = 0.0;
-        instance.lastPos.set(instance.getX(), instance.getY());
+        instance.lastPos.copy(instance.pos);
         MouseListener.resetButtonRelease();
     }
 
-    /**
-     * Returns if any button is pressed.
-     */
-    private static boolean isAnyPressed() {
-        MouseListener instance = get();
-        for (int i = 0; i < instance.keys.length; i++) {
-            if (instance.keys[i].pressed) return true;
-        }
-        return false;
-    }
-
     /**
      * Returns the current X position.
      */
     public static double getX() {
-        return (float)get().pos.x;
+        return get().pos.x;
     }
 
     /**
      * Returns the current Y position.
      */
     public static double getY() {
-        return (float)get().pos.y;
+        return get().pos.y;
     }
 
     /**
@@ -165,33 +233,41 @@ public class MouseListener {
     }
 
     /**
-     * Returns dx value, the difference between current and last
-     * x values.
+     * Copy the current X and Y position into a Vect2F, without allocating.
+     * @param dest  receives the position.
+     */
+    public static Vect2F getPos(Vect2F dest) {
+        return dest.set(get().pos);
+    }
+
+    /**
+     * Returns dx value, the difference between the x at the start of the
+     * frame and the current x.
      */
     public static double getDx() {
-        return (float)(get().lastPos.x - get().pos.x);
+        return get().lastPos.x - get().pos.x;
     }
 
     /**
-     * Returns dy value, the difference between current and last
-     * y values.
+     * Returns dy value, the difference between the y at the start of the
+     * frame and the current y.
      */
     public static double getDy() {
-        return (float)(get().lastPos.y - get().pos.y);
+        return get().lastPos.y - get().pos.y;
     }
 
     /**
      * Returns scroll horizontal value.
      */
     public static double getXScroll() {
-        return (float)get().xScroll;
+        return get().xScroll;
     }
 
     /**
      * Returns scroll vertical value.
      */
     public static double getYScroll() {
-        return (float)get().xScroll;
+        return get().yScroll;
     }
 
     /**
@@ -205,39 +281,36 @@ public class MouseListener {
      * Returns if the specified button is being held.
      */
     public static boolean isButtonHeld(int button) {
-        if (button < get().keys.length) {
-            return get().keys[button].held;
-        }
-        return false;
+        return isSet(get().held, button);
     }
 
     /**
      * Returns if the specified button has been released.
      */
     public static boolean isButtonUp(int button) {
-        if (button < get().keys.length) {
-            return get().keys[button].released;
-        }
-        return false;
+        return isSet(get().released, button);
     }
 
     /**
      * Returns if the specified button has been pressed.
      */
     public static boolean isButtonDown(int button) {
-        if (button < get().keys.length) {
-            return get().keys[button].pressed;
-        }
-        return false;
+        return isSet(get().pressed, button);
     }
 
     /**
-     * Reset release state for all buttons (at the end of the frame).
+     * Returns if a button bit is set.
+     * */
+    static boolean isSet(int bits, int button) {
+        return button >= 0 && button < BUTTON_COUNT && (bits & (1 << button)) != 0;
+    }
+
+    /**
+     * Reset pressed and release state for all buttons (at the end of the frame).
      */
     public static void resetButtonRelease() {
         MouseListener instance = get();
-        for (int i = 0; i < instance.keys.length; i++) {
-            instance.keys[i].released = false;
-        }
+        instance.pressed = 0;
+        instance.released = 0;
     }
 }
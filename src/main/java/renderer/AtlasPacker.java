@@ -0,0 +1,167 @@
+/**
+ * Atlas packer class. It places rectangles inside a fixed size area with the
+ * skyline bottom-left heuristic: the packer keeps the top outline ("skyline")
+ * of the placed rectangles and puts each new one where its top ends lowest.
+ * It only works with primitive arrays. Packing rectangles sorted by height
+ * (tallest first) gives the best results.
+ * */
+
+package renderer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+public class AtlasPacker {
+
+    /**
+     * Stores the size of the area being packed: {@link #width}, {@link #height}
+     * */
+    private final int width;
+    private final int height;
+
+    /**
+     * Stores the skyline segments, sorted by x: start, height and width of each
+     * one: {@link #nodeX}, {@link #nodeY}, {@link #nodeWidth}
+     * */
+    private int[] nodeX;
+    private int[] nodeY;
+    private int[] nodeWidth;
+    private int nodeCount;
+
+    /**
+     * Constructor for the AtlasPacker.
+     * @param width     width of the area.
+     * @param height    height of the area.
+     * */
+    public AtlasPacker(int width, int height) {
+        this.width = width;
+        this.height = height;
+        nodeX = new int[16];
+        nodeY = new int[16];
+        nodeWidth = new int[16];
+        nodeX[0] = 0;
+        nodeY[0] = 0;
+        nodeWidth[0] = width;
+        nodeCount = 1;
+    }
+
+    /**
+     * Place a rectangle.
+     * @param rectWidth     width of the rectangle.
+     * @param rectHeight    height of the rectangle.
+     * @param position      receives the x (index 0) and y (index 1) of the rectangle.
+     * @return false if the rectangle does not fit.
+     * */
+    public boolean pack(int rectWidth, int rectHeight, int[] position) {
+        int bestNode = -1;
+        int bestTop = Integer.MAX_VALUE;
+        int bestWidth = Integer.MAX_VALUE;
+        int bestY = 0;
+
+        for (int i = 0; i < nodeCount; i++) {
+            int y = fit(i, rectWidth, rectHeight);
+            if (y < 0) continue;
+            int top = y + rectHeight;
+            if (top < bestTop || (top == bestTop && nodeWidth[i] < bestWidth)) {
+                bestNode = i;
+                bestTop = top;
+                bestWidth = nodeWidth[i];
+                bestY = y;
+            }
+        }
+        if (bestNode == -1) return false;
+
+        position[0] = nodeX[bestNode];
+        position[1] = bestY;
+        addNode(bestNode, nodeX[bestNode], bestY + rectHeight, rectWidth);
+        return true;
+    }
+
+    /**
+     * Returns the y a rectangle would have if placed at the start of a node,
+     * or -1 if it does not fit there.
+     * */
+    private int fit(int node, int rectWidth, int rectHeight) {
+        int x = nodeX[node];
+        if (x + rectWidth > width) return -1;
+        int remaining = rectWidth;
+        int y = 0;
+        for (int i = node; remaining > 0; i++) {
+            y = Math.max(y, nodeY[i]);
+            if (y + rectHeight > height) return -1;
+            remaining -= nodeWidth[i];
+        }
+        return y;
+    }
+
+    /**
+     * Raise the skyline where a rectangle was placed, trimming the segments it covers.
+     * */
+    private void addNode(int index, int x, int y, int nodeSize) {
+        insert(index, x, y, nodeSize);
+
+        // Trim or remove the segments now under the new one
+        int i = index + 1;
+        while (i < nodeCount) {
+            int end = nodeX[index] + nodeWidth[index];
+            if (nodeX[i] >= end) break;
+            int shrink = end - nodeX[i];
+            nodeX[i] += shrink;
+            nodeWidth[i] -= shrink;
+            if (nodeWidth[i] > 0) break;
+            remove(i);
+        }
+
+        // Merge neighbours at the same height
+        for (int j = 0; j < nodeCount - 1; j++) {
+            if (nodeY[j] == nodeY[j + 1]) {
+                nodeWidth[j] += nodeWidth[j + 1];
+                remove(j + 1);
+                j--;
+            }
+        }
+    }
+
+    private void insert(int index, int x, int y, int nodeSize) {
+        if (nodeCount == nodeX.length) {
+            nodeX = Arrays.copyOf(nodeX, nodeCount * 2);
+            nodeY = Arrays.copyOf(nodeY, nodeCount * 2);
+            nodeWidth = Arrays.copyOf(nodeWidth, nodeCount * 2);
+        }
+        int moved = nodeCount - index;
+        System.arraycopy(nodeX, index, nodeX, index + 1, moved);
+        System.arraycopy(nodeY, index, nodeY, index + 1, moved);
+        System.arraycopy(nodeWidth, index, nodeWidth, index + 1, moved);
+        nodeX[index] = x;
+        nodeY[index] = y;
+        nodeWidth[index] = nodeSize;
+        nodeCount++;
+    }
+
+    private void remove(int index) {
+        int moved = nodeCount - index - 1;
+        System.arraycopy(nodeX, index + 1, nodeX, index, moved);
+        System.arraycopy(nodeY, index + 1, nodeY, index, moved);
+        System.arraycopy(nodeWidth, index + 1, nodeWidth, index, moved);
+        nodeCount--;
+    }
+
+    /**
+     * Build time packer: packs every image of a directory into an atlas cache, so
+     * the game loads it memory mapped instead of packing on the first run.
+     * Usage: AtlasPacker &lt;image directory&gt; [cache directory]
+     * */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: AtlasPacker <image directory> [cache directory]");
+            System.exit(1);
+        }
+        Path cache = (args.length > 1) ? Paths.get(args[1]) : TextureAtlas.DEFAULT_CACHE;
+        TextureAtlas atlas = TextureAtlas.load(Paths.get(args[0]), cache);
+        System.out.println("Packed " + atlas.getRegionCount() + " images into a " + atlas.getWidth() + "x"
+                + atlas.getHeight() + " atlas on '" + cache + "'.");
+        atlas.freePixels();
+    }
+}
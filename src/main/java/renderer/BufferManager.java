@@ -0,0 +1,296 @@
+/**
+ * Buffer manager class. It owns the OpenGL buffers holding geometry: static
+ * geometry is sub-allocated from large pooled buffers with an offset allocator
+ * (first fit, freed ranges merged with their neighbours), so many meshes share
+ * a few buffers; dynamic geometry is streamed through {@link StreamBuffer}s,
+ * rings that never make an upload wait on the driver.
+ * Uploads go through GL_COPY_WRITE_BUFFER, so they never change the buffers
+ * bound to the current vertex array. Must only be used on the OpenGL thread.
+ * */
+
+package renderer;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL31.GL_COPY_WRITE_BUFFER;
+
+public class BufferManager {
+    public static final int DEFAULT_BLOCK_SIZE = 4 << 20; // 4 MiB
+    public static final int ALIGNMENT = 16; // Enough for any vertex attribute or element type
+
+    /**
+     * Stores the size of each pooled buffer, larger allocations get a buffer
+     * of their own: {@link #blockSize}
+     * */
+    private final int blockSize;
+
+    /**
+     * Stores the pooled buffers: {@link #blocks}
+     * */
+    private final List<Block> blocks = new ArrayList<>();
+
+    /**
+     * Stores the stream buffers advanced on every frame: {@link #streams}
+     * */
+    private final List<StreamBuffer> streams = new ArrayList<>();
+
+    /**
+     * Stores the statistics of the current frame: {@link #bytesUploaded},
+     * {@link #stalls}, {@link #overflows}
+     * */
+    long bytesUploaded;
+    int stalls; // Waits on a fence that was not signaled yet
+    int overflows; // Stream writes dropped because the frame segment was full
+    private long totalStalls;
+
+    /**
+     * Default constructor for the BufferManager, with 4 MiB pooled buffers.
+     * */
+    public BufferManager() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructor for the BufferManager.
+     * @param blockSize     size (in bytes) of each pooled buffer.
+     * */
+    public BufferManager(int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Buffer block size must be positive.");
+        }
+        this.blockSize = align(blockSize);
+    }
+
+    /**
+     * Allocate a range of a pooled buffer for static geometry, creating a new
+     * buffer when none has room.
+     * @param target    the buffer target (e.g. GL_ARRAY_BUFFER), buffers are pooled by target.
+     * @param bytes     size of the range.
+     * */
+    public BufferRange allocate(int target, int bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Buffer range size must be positive.");
+        }
+        int allocated = align(bytes);
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            if (block.target != target) continue;
+            int offset = block.allocate(allocated, bytes);
+            if (offset >= 0) return new BufferRange(block, offset, bytes, allocated);
+        }
+
+        Block block = new Block(target, Math.max(blockSize, allocated));
+        blocks.add(block);
+        return new BufferRange(block, block.allocate(allocated, bytes), bytes, allocated);
+    }
+
+    /**
+     * Return a range to its pooled buffer. The range must not be used afterwards.
+     * */
+    public void free(BufferRange range) {
+        if (range.isFreed()) {
+            throw new IllegalStateException("The buffer range was already freed.");
+        }
+        range.markFreed();
+        range.block.release(range.getOffset(), range.getAllocated(), range.getSize());
+    }
+
+    public void upload(BufferRange range, ByteBuffer data) {
+        checkUpload(range, data.remaining());
+        glBindBuffer(GL_COPY_WRITE_BUFFER, range.getBuffer());
+        glBufferSubData(GL_COPY_WRITE_BUFFER, range.getOffset(), data);
+        bytesUploaded += data.remaining();
+    }
+
+    public void upload(BufferRange range, FloatBuffer data) {
+        checkUpload(range, (long)data.remaining() * Float.BYTES);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, range.getBuffer());
+        glBufferSubData(GL_COPY_WRITE_BUFFER, range.getOffset(), data);
+        bytesUploaded += (long)data.remaining() * Float.BYTES;
+    }
+
+    public void upload(BufferRange range, IntBuffer data) {
+        checkUpload(range, (long)data.remaining() * Integer.BYTES);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, range.getBuffer());
+        glBufferSubData(GL_COPY_WRITE_BUFFER, range.getOffset(), data);
+        bytesUploaded += (long)data.remaining() * Integer.BYTES;
+    }
+
+    private static void checkUpload(BufferRange range, long bytes) {
+        if (range.isFreed()) {
+            throw new IllegalStateException("Can not upload to a freed buffer range.");
+        }
+        if (bytes > range.getSize()) {
+            throw new IllegalArgumentException("The data (" + bytes + " bytes) does not fit the range ("
+                    + range.getSize() + " bytes).");
+        }
+    }
+
+    /**
+     * Create a ring buffer for data changing every frame.
+     * @param target            the buffer target (e.g. GL_ARRAY_BUFFER).
+     * @param segmentBytes      bytes that can be written per frame.
+     * */
+    public StreamBuffer createStream(int target, int segmentBytes) {
+        StreamBuffer stream = new StreamBuffer(this, target, align(segmentBytes));
+        stream.create();
+        streams.add(stream);
+        return stream;
+    }
+
+    /**
+     * Start a frame: reset the frame statistics and move every stream buffer to
+     * its next segment, waiting for the GPU only if it is still reading it.
+     * */
+    public void beginFrame() {
+        totalStalls += stalls;
+        bytesUploaded = 0;
+        stalls = 0;
+        overflows = 0;
+        for (int i = 0; i < streams.size(); i++) {
+            streams.get(i).beginFrame();
+        }
+    }
+
+    /**
+     * End a frame, after its draws were issued: fence the segments written.
+     * */
+    public void endFrame() {
+        for (int i = 0; i < streams.size(); i++) {
+            streams.get(i).endFrame();
+        }
+    }
+
+    /**
+     * Returns the bytes uploaded on the current (or last) frame.
+     * */
+    public long getBytesUploaded() {
+        return bytesUploaded;
+    }
+
+    /**
+     * Returns how many times the current (or last) frame waited for the GPU.
+     * */
+    public int getStalls() {
+        return stalls;
+    }
+
+    public long getTotalStalls() {
+        return totalStalls + stalls;
+    }
+
+    /**
+     * Returns how many stream writes the current (or last) frame dropped because they did not fit.
+     * */
+    public int getOverflows() {
+        return overflows;
+    }
+
+    /**
+     * Returns the size of every buffer owned by the manager, in bytes.
+     * */
+    public long getCapacity() {
+        long capacity = 0;
+        for (int i = 0; i < blocks.size(); i++) capacity += blocks.get(i).capacity;
+        for (int i = 0; i < streams.size(); i++) capacity += (long)streams.get(i).getSegmentSize() * StreamBuffer.SEGMENTS;
+        return capacity;
+    }
+
+    /**
+     * Returns the bytes not holding data: free and padding space of the pooled
+     * buffers, plus the space left unused by the last frame on each stream segment.
+     * */
+    public long getWastedBytes() {
+        long wasted = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            wasted += block.capacity - block.requested;
+        }
+        for (int i = 0; i < streams.size(); i++) {
+            StreamBuffer stream = streams.get(i);
+            wasted += stream.getSegmentSize() - stream.getLastUsed();
+        }
+        return wasted;
+    }
+
+    /**
+     * Delete every buffer owned by the manager.
+     * */
+    public void delete() {
+        for (int i = 0; i < blocks.size(); i++) {
+            glDeleteBuffers(blocks.get(i).buffer);
+        }
+        for (int i = 0; i < streams.size(); i++) {
+            streams.get(i).delete();
+        }
+        blocks.clear();
+        streams.clear();
+    }
+
+    static int align(int bytes) {
+        return (bytes + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /**
+     * Pooled buffer with its free ranges, by offset.
+     * */
+    static final class Block {
+        final int target;
+        final int buffer;
+        final int capacity;
+        private final TreeMap<Integer, Integer> free = new TreeMap<>();
+        private long requested; // Bytes asked for by the live ranges, without padding
+
+        Block(int target, int capacity) {
+            this.target = target;
+            this.capacity = capacity;
+            buffer = glGenBuffers();
+            glBindBuffer(GL_COPY_WRITE_BUFFER, buffer);
+            glBufferData(GL_COPY_WRITE_BUFFER, capacity, GL_STATIC_DRAW);
+            free.put(0, capacity);
+        }
+
+        /**
+         * Returns the offset of the first free range that fits, -1 if none does.
+         * */
+        int allocate(int allocated, int bytes) {
+            Iterator<Map.Entry<Integer, Integer>> it = free.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Integer, Integer> range = it.next();
+                int size = range.getValue();
+                if (size < allocated) continue;
+
+                int offset = range.getKey();
+                it.remove();
+                if (size > allocated) free.put(offset + allocated, size - allocated);
+                requested += bytes;
+                return offset;
+            }
+            return -1;
+        }
+
+        void release(int offset, int allocated, int bytes) {
+            requested -= bytes;
+            int size = allocated;
+            Map.Entry<Integer, Integer> next = free.ceilingEntry(offset);
+            if (next != null && next.getKey() == offset + size) { // Merge with the next free range
+                size += next.getValue();
+                free.remove(next.getKey());
+            }
+            Map.Entry<Integer, Integer> previous = free.floorEntry(offset);
+            if (previous != null && previous.getKey() + previous.getValue() == offset) { // And the previous one
+                offset = previous.getKey();
+                size += previous.getValue();
+            }
+            free.put(offset, size);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Buffer range class. It is a range of one of the pooled OpenGL buffers of a
+ * {@link BufferManager}, allocated for static geometry. Draws use the buffer
+ * of the range and add its offset to their attribute or element offsets.
+ * */
+
+package renderer;
+
+public final class BufferRange {
+
+    /**
+     * Stores the pooled buffer holding the range: {@link #block}
+     * */
+    final BufferManager.Block block;
+
+    private final int offset;
+    private final int size;
+    private final int allocated; // Size including the alignment padding
+    private boolean freed;
+
+    BufferRange(BufferManager.Block block, int offset, int size, int allocated) {
+        this.block = block;
+        this.offset = offset;
+        this.size = size;
+        this.allocated = allocated;
+    }
+
+    /**
+     * Returns the OpenGL buffer holding the range.
+     * */
+    public int getBuffer() {
+        return block.buffer;
+    }
+
+    /**
+     * Returns the buffer target (e.g. GL_ARRAY_BUFFER).
+     * */
+    public int getTarget() {
+        return block.target;
+    }
+
+    /**
+     * Returns the offset of the range in the buffer, in bytes.
+     * */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the size requested for the range, in bytes.
+     * */
+    public int getSize() {
+        return size;
+    }
+
+    int getAllocated() {
+        return allocated;
+    }
+
+    boolean isFreed() {
+        return freed;
+    }
+
+    void markFreed() {
+        freed = true;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Framebuffer class. It holds an offscreen OpenGL framebuffer with an RGBA
+ * color texture and a depth and stencil renderbuffer. It can be rendered to
+ * on any region up to its size and copied (blit) to the window, scaling it.
+ * */
+
+package renderer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL30.*;
+
+public class Framebuffer {
+
+    /**
+     * Stores the OpenGL objects: {@link #framebufferID}, {@link #colorID}, {@link #depthID}
+     * */
+    private int framebufferID;
+    private int colorID; // Texture
+    private int depthID; // Renderbuffer
+
+    private final int width;
+    private final int height;
+
+    /**
+     * Constructor for the Framebuffer. Must be called on the OpenGL thread.
+     * @param width     width in pixels.
+     * @param height    height in pixels.
+     * */
+    public Framebuffer(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Framebuffer size must be positive.");
+        }
+        this.width = width;
+        this.height = height;
+
+        colorID = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, colorID);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA8, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, 0L);
+        glBindTexture(GL_TEXTURE_2D, 0);
+
+        depthID = glGenRenderbuffers();
+        glBindRenderbuffer(GL_RENDERBUFFER, depthID);
+        glRenderbufferStorage(GL_RENDERBUFFER, GL_DEPTH24_STENCIL8, width, height);
+        glBindRenderbuffer(GL_RENDERBUFFER, 0);
+
+        framebufferID = glGenFramebuffers();
+        glBindFramebuffer(GL_FRAMEBUFFER, framebufferID);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, colorID, 0);
+        glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_DEPTH_STENCIL_ATTACHMENT, GL_RENDERBUFFER, depthID);
+        int status = glCheckFramebufferStatus(GL_FRAMEBUFFER);
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+        if (status != GL_FRAMEBUFFER_COMPLETE) {
+            delete();
+            throw new IllegalStateException("Framebuffer incomplete (status 0x" + Integer.toHexString(status) + ").");
+        }
+    }
+
+    /**
+     * Render to this framebuffer instead of the window.
+     * */
+    public void bind() {
+        glBindFramebuffer(GL_FRAMEBUFFER, framebufferID);
+    }
+
+    /**
+     * Render to the window again.
+     * */
+    public static void unbind() {
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+
+    /**
+     * Copy a region of the color to the window, scaling it to cover the window.
+     * Leaves the window framebuffer bound.
+     * @param sourceWidth       width of the region copied, from the bottom left corner.
+     * @param sourceHeight      height of the region copied.
+     * @param windowWidth       width of the window framebuffer.
+     * @param windowHeight      height of the window framebuffer.
+     * @param linear            true to filter linearly, false to keep the pixels sharp.
+     * */
+    public void blitToWindow(int sourceWidth, int sourceHeight, int windowWidth, int windowHeight, boolean linear) {
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, framebufferID);
+        glBindFramebuffer(GL_DRAW_FRAMEBUFFER, 0);
+        glBlitFramebuffer(0, 0, sourceWidth, sourceHeight, 0, 0, windowWidth, windowHeight,
+                GL_COLOR_BUFFER_BIT, linear ? GL_LINEAR : GL_NEAREST);
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+
+    /**
+     * Returns the OpenGL texture holding the color.
+     * */
+    public int getColorTexture() {
+        return colorID;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Delete the OpenGL objects.
+     * */
+    public void delete() {
+        glDeleteFramebuffers(framebufferID);
+        glDeleteRenderbuffers(depthID);
+        glDeleteTextures(colorID);
+        framebufferID = 0;
+        depthID = 0;
+        colorID = 0;
+    }
+}
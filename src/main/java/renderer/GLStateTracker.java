@@ -0,0 +1,111 @@
+/**
+ * GL state tracker class. It shadows the OpenGL binding state (program, vertex
+ * array and the texture of each unit) and only calls OpenGL when a bind changes
+ * it, counting the binds issued and the ones elided because the state was
+ * already current. Code binding behind its back must call {@link #invalidate()}.
+ * Must only be used on the OpenGL thread.
+ * */
+
+package renderer;
+
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+import static org.lwjgl.opengl.GL20.glUseProgram;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+
+public class GLStateTracker {
+    private static final int UNKNOWN = -1; // Never a valid OpenGL name
+    private static final int TEXTURE_UNITS = 16; // Minimum guaranteed by OpenGL 3.3 on the fragment stage
+
+    private int program = UNKNOWN;
+    private int vertexArray = UNKNOWN;
+    private int activeUnit = UNKNOWN;
+
+    /**
+     * Stores the texture bound to each unit: {@link #textures}
+     * */
+    private final int[] textures = new int[TEXTURE_UNITS];
+
+    /**
+     * Stores the binds sent to OpenGL and the ones skipped since {@link #resetStats()}:
+     * {@link #bindsIssued}, {@link #bindsElided}
+     * */
+    private int bindsIssued;
+    private int bindsElided;
+
+    /**
+     * Default constructor for the GLStateTracker, with an unknown state.
+     * */
+    public GLStateTracker() {
+        invalidate();
+    }
+
+    /**
+     * Forget the tracked state, so the next bind of each kind is always issued.
+     * */
+    public void invalidate() {
+        program = UNKNOWN;
+        vertexArray = UNKNOWN;
+        activeUnit = UNKNOWN;
+        Arrays.fill(textures, UNKNOWN);
+    }
+
+    public void useProgram(int program) {
+        if (this.program == program) {
+            bindsElided++;
+            return;
+        }
+        glUseProgram(program);
+        this.program = program;
+        bindsIssued++;
+    }
+
+    public void bindVertexArray(int vertexArray) {
+        if (this.vertexArray == vertexArray) {
+            bindsElided++;
+            return;
+        }
+        glBindVertexArray(vertexArray);
+        this.vertexArray = vertexArray;
+        bindsIssued++;
+    }
+
+    /**
+     * Bind a 2D texture to a texture unit.
+     * @param unit      the texture unit, from 0 to 15.
+     * @param texture   the OpenGL texture, 0 for none.
+     * */
+    public void bindTexture(int unit, int texture) {
+        if (textures[unit] == texture) {
+            bindsElided++;
+            return;
+        }
+        if (activeUnit != unit) {
+            glActiveTexture(GL_TEXTURE0 + unit);
+            activeUnit = unit;
+        }
+        glBindTexture(GL_TEXTURE_2D, texture);
+        textures[unit] = texture;
+        bindsIssued++;
+    }
+
+    /**
+     * Start counting the binds of a new frame.
+     * */
+    public void resetStats() {
+        bindsIssued = 0;
+        bindsElided = 0;
+    }
+
+    public int getBindsIssued() {
+        return bindsIssued;
+    }
+
+    public int getBindsElided() {
+        return bindsElided;
+    }
+}
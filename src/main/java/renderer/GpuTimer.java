@@ -0,0 +1,82 @@
+/**
+ * GPU timer class. It measures how long the GPU takes to run the commands
+ * issued between {@link #begin()} and {@link #end()}, with timer queries. The
+ * results arrive a few frames later, so it keeps a ring of queries and only
+ * reads the ones already available, never waiting on the GPU.
+ * Does nothing (and measures 0) without OpenGL 3.3 nor ARB_timer_query.
+ * */
+
+package renderer;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL33.GL_TIME_ELAPSED;
+import static org.lwjgl.opengl.GL33.glGetQueryObjecti64;
+
+public class GpuTimer {
+    private static final int QUERIES = 4; // Frames a result may take to arrive
+
+    private final int[] queries = new int[QUERIES];
+    private final boolean[] pending = new boolean[QUERIES];
+    private int next; // Query used by the next begin()
+    private boolean supported;
+
+    /**
+     * Stores the last measured time, in nanoseconds: {@link #lastNanos}
+     * */
+    private long lastNanos;
+
+    /**
+     * Constructor for the GpuTimer. Must be called on the OpenGL thread.
+     * */
+    public GpuTimer() {
+        GLCapabilities capabilities = GL.getCapabilities();
+        supported = capabilities.OpenGL33 || capabilities.GL_ARB_timer_query;
+        if (supported) glGenQueries(queries);
+    }
+
+    public void begin() {
+        if (!supported) return;
+        collect();
+        if (pending[next]) return; // Every query still in flight, skip this measure
+        glBeginQuery(GL_TIME_ELAPSED, queries[next]);
+    }
+
+    public void end() {
+        if (!supported || pending[next]) return;
+        glEndQuery(GL_TIME_ELAPSED);
+        pending[next] = true;
+        next = (next + 1) % QUERIES;
+    }
+
+    /**
+     * Read the results that are available, oldest first.
+     * */
+    private void collect() {
+        for (int n = 0; n < QUERIES; n++) {
+            int i = (next + n) % QUERIES;
+            if (!pending[i]) continue;
+            if (glGetQueryObjecti(queries[i], GL_QUERY_RESULT_AVAILABLE) == GL_FALSE) return;
+            lastNanos = glGetQueryObjecti64(queries[i], GL_QUERY_RESULT);
+            pending[i] = false;
+        }
+    }
+
+    /**
+     * Returns the last GPU time measured, in nanoseconds (usually from a few frames ago).
+     * */
+    public long getLastNanos() {
+        return lastNanos;
+    }
+
+    public boolean isSupported() {
+        return supported;
+    }
+
+    public void delete() {
+        if (supported) glDeleteQueries(queries);
+        supported = false;
+    }
+}
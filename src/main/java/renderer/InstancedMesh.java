@@ -0,0 +1,244 @@
+/**
+ * Instanced mesh class. It draws many copies of the same mesh with a single
+ * draw call, each copy (instance) with its own 2D transform and color.
+ * The mesh vertexes use the basicShader.glsl layout (position and RGBA color),
+ * and the shader must declare three per instance attributes with the
+ * '#instanced' directive, in this order: the first and second rows of the
+ * transform (vec3 each) and the instance color (vec4), see instancedShader.glsl.
+ * Instance data is kept in a buffer on the CPU and only the changed range is
+ * uploaded before drawing.
+ * */
+
+package renderer;
+
+import org.lwjgl.BufferUtils;
+import utils.FrameArena;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
+import static org.lwjgl.opengl.GL30.glGenVertexArrays;
+import static org.lwjgl.opengl.GL31.glDrawElementsInstanced;
+import static org.lwjgl.opengl.GL33.glVertexAttribDivisor;
+
+public class InstancedMesh {
+    private static final int POS_SIZE = 3; // x, y, z
+    private static final int COLOR_SIZE = 4; // R, G, B, A
+    private static final int VERTEX_SIZE_BYTES = (POS_SIZE + COLOR_SIZE) * Float.BYTES;
+
+    private static final int[] INSTANCE_ATTRIBUTE_SIZES = {3, 3, 4}; // Transform rows and color
+    private static final int INSTANCE_SIZE = 10;
+    private static final int INSTANCE_SIZE_BYTES = INSTANCE_SIZE * Float.BYTES;
+
+    /**
+     * Stores the shader used to draw the instances: {@link #shader}
+     * */
+    private final Shader shader;
+
+    /**
+     * Stores the mesh vertexes, released after {@link #create()}: {@link #vertexes}
+     * */
+    private float[] vertexes;
+
+    /**
+     * Stores the mesh elements, released after {@link #create()}: {@link #elementArray}
+     * */
+    private int[] elementArray;
+
+    /**
+     * Stores how many elements are drawn per instance: {@link #elementCount}
+     * */
+    private final int elementCount;
+
+    /**
+     * Stores the data of every instance, {@link #INSTANCE_SIZE} floats per
+     * instance: {@link #instanceData}
+     * */
+    private final FloatBuffer instanceData;
+
+    /**
+     * Stores the maximum amount of instances: {@link #maxInstances}
+     * */
+    private final int maxInstances;
+
+    /**
+     * Stores how many instances are drawn: {@link #instanceCount}
+     * */
+    private int instanceCount;
+
+    /**
+     * Stores the first instance changed since the last upload: {@link #dirtyFirst}
+     * */
+    private int dirtyFirst;
+
+    /**
+     * Stores the instance after the last one changed since the last upload: {@link #dirtyEnd}
+     * */
+    private int dirtyEnd;
+
+    private int VAOID; // Vertex Array Object
+    private int VBOID; // Vertex Buffer Object (mesh)
+    private int EBOID; // Element Buffer Object
+    private int instanceVBOID; // Vertex Buffer Object (instances)
+
+    /**
+     * Constructor for the InstancedMesh.
+     * @param shader        shader declaring the per instance attributes.
+     * @param vertexes      mesh vertexes, position (vec3) and color (vec4).
+     * @param elementArray  mesh triangles.
+     * @param maxInstances  maximum amount of instances.
+     * */
+    public InstancedMesh(Shader shader, float[] vertexes, int[] elementArray, int maxInstances) {
+        if (shader.getInstancedAttributes().size() != INSTANCE_ATTRIBUTE_SIZES.length) {
+            throw new IllegalArgumentException("Instanced mesh shaders must declare '#instanced' transform rows and color.");
+        }
+        this.shader = shader;
+        this.vertexes = vertexes;
+        this.elementArray = elementArray;
+        this.elementCount = elementArray.length;
+        this.maxInstances = maxInstances;
+        instanceData = BufferUtils.createFloatBuffer(maxInstances * INSTANCE_SIZE);
+        dirtyFirst = maxInstances;
+        dirtyEnd = 0;
+    }
+
+    /**
+     * Create the OpenGL objects for the mesh, must be called on the OpenGL thread
+     * after the shader was created.
+     * */
+    public void create() {
+        VAOID = glGenVertexArrays();
+        glBindVertexArray(VAOID);
+
+        FrameArena arena = FrameArena.local();
+        long mark = arena.mark();
+        FloatBuffer vertexesBuffer = arena.floats(vertexes);
+        VBOID = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, VBOID);
+        glBufferData(GL_ARRAY_BUFFER, vertexesBuffer, GL_STATIC_DRAW);
+
+        IntBuffer elementBuffer = arena.ints(elementArray);
+        EBOID = glGenBuffers();
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, EBOID);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, elementBuffer, GL_STATIC_DRAW);
+        arena.release(mark);
+
+        glVertexAttribPointer(0, POS_SIZE, GL_FLOAT, false, VERTEX_SIZE_BYTES, 0);
+        glEnableVertexAttribArray(0);
+        glVertexAttribPointer(1, COLOR_SIZE, GL_FLOAT, false, VERTEX_SIZE_BYTES, POS_SIZE * Float.BYTES);
+        glEnableVertexAttribArray(1);
+
+        instanceVBOID = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, instanceVBOID);
+        glBufferData(GL_ARRAY_BUFFER, (long)maxInstances * INSTANCE_SIZE_BYTES, GL_DYNAMIC_DRAW);
+
+        // Per instance attributes advance once per instance (divisor 1)
+        List<String> names = shader.getInstancedAttributes();
+        int offset = 0;
+        for (int i = 0; i < INSTANCE_ATTRIBUTE_SIZES.length; i++) {
+            int location = glGetAttribLocation(shader.getID(), names.get(i));
+            if (location != -1) { // Unused attributes are removed by the compiler
+                glVertexAttribPointer(location, INSTANCE_ATTRIBUTE_SIZES[i], GL_FLOAT, false, INSTANCE_SIZE_BYTES, (long)offset * Float.BYTES);
+                glEnableVertexAttribArray(location);
+                glVertexAttribDivisor(location, 1);
+            }
+            offset += INSTANCE_ATTRIBUTE_SIZES[i];
+        }
+
+        glBindVertexArray(0);
+        vertexes = null;
+        elementArray = null;
+    }
+
+    /**
+     * Set how many instances are drawn, new instances must have their transform
+     * and color set.
+     * */
+    public void setInstanceCount(int instanceCount) {
+        if (instanceCount < 0 || instanceCount > maxInstances) {
+            throw new IllegalArgumentException("Instance count must be between 0 and " + maxInstances + ".");
+        }
+        this.instanceCount = instanceCount;
+    }
+
+    /**
+     * Returns how many instances are drawn.
+     * */
+    public int getInstanceCount() {
+        return instanceCount;
+    }
+
+    /**
+     * Set the transform of an instance.
+     * @param instance      the instance index.
+     * @param x             translation on the X-axis.
+     * @param y             translation on the Y-axis.
+     * @param rotation      rotation in radians.
+     * @param scaleX        scale on the X-axis.
+     * @param scaleY        scale on the Y-axis.
+     * */
+    public void setTransform(int instance, float x, float y, float rotation, float scaleX, float scaleY) {
+        float cos = (float)Math.cos(rotation);
+        float sin = (float)Math.sin(rotation);
+        int i = instance * INSTANCE_SIZE;
+        instanceData.put(i, cos * scaleX).put(i + 1, -sin * scaleY).put(i + 2, x);
+        instanceData.put(i + 3, sin * scaleX).put(i + 4, cos * scaleY).put(i + 5, y);
+        markDirty(instance);
+    }
+
+    /**
+     * Set the color of an instance, multiplied by the mesh vertex colors.
+     * */
+    public void setColor(int instance, float r, float g, float b, float a) {
+        int i = instance * INSTANCE_SIZE + 6;
+        instanceData.put(i, r).put(i + 1, g).put(i + 2, b).put(i + 3, a);
+        markDirty(instance);
+    }
+
+    /**
+     * Extend the range of instances to be uploaded.
+     * */
+    private void markDirty(int instance) {
+        if (instance < dirtyFirst) dirtyFirst = instance;
+        if (instance + 1 > dirtyEnd) dirtyEnd = instance + 1;
+    }
+
+    /**
+     * Upload the changed instances and draw every instance with one draw call.
+     * */
+    public void draw() {
+        if (instanceCount == 0) return;
+
+        shader.use();
+        glBindVertexArray(VAOID);
+
+        if (dirtyFirst < dirtyEnd) {
+            glBindBuffer(GL_ARRAY_BUFFER, instanceVBOID);
+            instanceData.limit(dirtyEnd * INSTANCE_SIZE).position(dirtyFirst * INSTANCE_SIZE);
+            glBufferSubData(GL_ARRAY_BUFFER, (long)dirtyFirst * INSTANCE_SIZE_BYTES, instanceData);
+            instanceData.clear();
+            dirtyFirst = maxInstances;
+            dirtyEnd = 0;
+        }
+
+        glDrawElementsInstanced(GL_TRIANGLES, elementCount, GL_UNSIGNED_INT, 0, instanceCount);
+
+        glBindVertexArray(0);
+        shader.detach();
+    }
+
+    /**
+     * Delete the OpenGL objects of the mesh.
+     * */
+    public void delete() {
+        glDeleteBuffers(VBOID);
+        glDeleteBuffers(EBOID);
+        glDeleteBuffers(instanceVBOID);
+        glDeleteVertexArrays(VAOID);
+    }
+}
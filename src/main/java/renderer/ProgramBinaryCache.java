@@ -0,0 +1,167 @@
+/**
+ * Program binary cache class. It stores linked shader programs on disk with
+ * glGetProgramBinary and loads them back with glProgramBinary, so later runs
+ * skip the GLSL compilation. Each binary is keyed by a hash of the shader
+ * sources and the driver (vendor, renderer and version), as binaries are only
+ * valid for the driver that created them. Drivers may still reject a binary
+ * (e.g. after an update), in which case the shader is compiled as usual.
+ * */
+
+package renderer;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import utils.FrameArena;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL41.*;
+
+public class ProgramBinaryCache {
+
+    /**
+     * Stores the directory where binaries are kept: {@link #directory}
+     * */
+    private final Path directory;
+
+    /**
+     * Stores the driver description, part of every key. Read from the
+     * OpenGL context on first use: {@link #driver}
+     * */
+    private String driver;
+
+    /**
+     * Stores if the driver supports program binaries, null until checked: {@link #supported}
+     * */
+    private Boolean supported;
+
+    /**
+     * Constructor for the ProgramBinaryCache.
+     * @param directory     directory where binaries are kept, created if needed.
+     * */
+    public ProgramBinaryCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns if the current OpenGL context can save and load program binaries.
+     * */
+    public boolean isSupported() {
+        if (supported == null) {
+            GLCapabilities capabilities = GL.getCapabilities();
+            supported = (capabilities.OpenGL41 || capabilities.GL_ARB_get_program_binary)
+                    && glGetInteger(GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+        }
+        return supported;
+    }
+
+    /**
+     * Returns the key for a program built from the given sources on the current driver.
+     * */
+    public String key(String source) {
+        if (driver == null) {
+            driver = glGetString(GL_VENDOR) + "|" + glGetString(GL_RENDERER) + "|" + glGetString(GL_VERSION);
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(driver.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)0);
+            byte[] hash = digest.digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    /**
+     * Create a program from a stored binary.
+     * @param key   key of the program, see {@link #key(String)}.
+     * @return the program identifier, or 0 if there is no valid binary for the key.
+     * */
+    public int load(String key) {
+        if (!isSupported()) return 0;
+        Path file = directory.resolve(key + ".bin");
+        if (!Files.isRegularFile(file)) return 0;
+
+        FrameArena arena = FrameArena.local(); // The binary is only needed until the driver copies it
+        long mark = arena.mark();
+        try {
+            ByteBuffer content;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                content = arena.bytes((int)channel.size());
+                while (content.hasRemaining() && channel.read(content) != -1) {
+                }
+                content.flip();
+            } catch (IOException e) {
+                System.err.println("Could not read program binary '" + file + "'.");
+                return 0;
+            }
+            if (content.remaining() < Integer.BYTES) return 0;
+
+            int binaryFormat = content.order(ByteOrder.LITTLE_ENDIAN).getInt();
+            int program = glCreateProgram();
+            glProgramBinary(program, binaryFormat, content.slice());
+            if (glGetProgrami(program, GL_LINK_STATUS) == GL_FALSE) { // Rejected by the driver
+                glDeleteProgram(program);
+                return 0;
+            }
+            return program;
+        } finally {
+            arena.release(mark);
+        }
+    }
+
+    /**
+     * Store the binary of a linked program. The program must have been linked
+     * with GL_PROGRAM_BINARY_RETRIEVABLE_HINT set.
+     * @param key       key of the program, see {@link #key(String)}.
+     * @param program   the program identifier.
+     * */
+    public void store(String key, int program) {
+        if (!isSupported()) return;
+        int length = glGetProgrami(program, GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0) return;
+
+        FrameArena arena = FrameArena.local(); // The binary is only needed until it is written
+        long mark = arena.mark();
+        ByteBuffer content = arena.bytes(Integer.BYTES + length).order(ByteOrder.LITTLE_ENDIAN);
+        int[] binaryFormat = new int[1];
+        content.position(Integer.BYTES);
+        glGetProgramBinary(program, (int[])null, binaryFormat, content); // Written after the format
+        content.putInt(0, binaryFormat[0]);
+        content.position(0);
+
+        Path file = directory.resolve(key + ".bin");
+        try {
+            Files.createDirectories(directory);
+            Path tmp = directory.resolve(key + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (content.hasRemaining()) {
+                    channel.write(content);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING); // Never leave half written binaries
+        } catch (IOException e) {
+            System.err.println("Could not write program binary '" + file + "'.");
+        } finally {
+            arena.release(mark);
+        }
+    }
+}
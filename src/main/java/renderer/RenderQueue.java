@@ -0,0 +1,222 @@
+/**
+ * Render queue class. Scenes submit draw commands during {@link sge.Scene#render(float)}
+ * and the engine draws them at the end of the frame, sorted by a packed 64 bit
+ * key so commands sharing the same state run one after the other and the
+ * {@link GLStateTracker} can skip the binds that would not change anything.
+ * The key holds, from the most significant bits: layer (8 bits), shader program
+ * (12 bits), texture (12 bits), vertex array (12 bits) and depth (20 bits).
+ * OpenGL names above 4095 share their sort bucket with lower ones, which only
+ * costs elided binds, as the commands keep the full names.
+ * Commands are stored in preallocated arrays (growing if needed), so submitting
+ * and drawing do not allocate.
+ * */
+
+package renderer;
+
+import utils.RadixSort;
+
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
+import static org.lwjgl.opengl.GL11.glDrawArrays;
+import static org.lwjgl.opengl.GL11.glDrawElements;
+
+public class RenderQueue {
+    private static final int NAME_BITS = 12;
+    private static final int NAME_MASK = (1 << NAME_BITS) - 1;
+    private static final int DEPTH_BITS = 20;
+    private static final int DEPTH_MAX = (1 << DEPTH_BITS) - 1;
+
+    /**
+     * Stores the sort key of each command, in drawing order after sorting: {@link #keys}
+     * */
+    private long[] keys;
+
+    /**
+     * Stores the submission index of each command, in drawing order after
+     * sorting: {@link #order}
+     * */
+    private int[] order;
+
+    private long[] tmpKeys; // Used by the sort
+    private int[] tmpOrder; // Used by the sort
+
+    /**
+     * Stores the state and arguments of each command, by submission index: {@link #programs},
+     * {@link #textures}, {@link #vertexArrays}, {@link #modes}, {@link #counts}, {@link #offsets}
+     * */
+    private int[] programs;
+    private int[] textures;
+    private int[] vertexArrays;
+    private int[] modes;
+    private int[] counts;
+    private long[] offsets; // Byte offset into the element buffer, or first vertex (negated minus one) for array draws
+
+    /**
+     * Stores how many commands were submitted since {@link #clear()}: {@link #count}
+     * */
+    private int count;
+
+    /**
+     * Stores how many draw calls the last {@link #flush(GLStateTracker)} issued: {@link #drawCalls}
+     * */
+    private int drawCalls;
+
+    /**
+     * Default constructor for the RenderQueue, room for 4096 commands per frame.
+     * */
+    public RenderQueue() {
+        this(4096);
+    }
+
+    /**
+     * Constructor for the RenderQueue.
+     * @param capacity      initial amount of commands that can be submitted per
+     *                      frame, it grows if needed.
+     * */
+    public RenderQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Render queue capacity must be positive.");
+        }
+        keys = new long[capacity];
+        order = new int[capacity];
+        tmpKeys = new long[capacity];
+        tmpOrder = new int[capacity];
+        programs = new int[capacity];
+        textures = new int[capacity];
+        vertexArrays = new int[capacity];
+        modes = new int[capacity];
+        counts = new int[capacity];
+        offsets = new long[capacity];
+    }
+
+    /**
+     * Returns the sort key of a command.
+     * @param layer         drawing layer (0 to 255), lower layers are drawn first.
+     * @param program       the OpenGL shader program.
+     * @param texture       the OpenGL texture bound to unit 0, 0 for none.
+     * @param vertexArray   the OpenGL vertex array.
+     * @param depth         depth from 0 to 1 (clamped), lower depths are drawn
+     *                      first within the same state.
+     * */
+    public static long key(int layer, int program, int texture, int vertexArray, float depth) {
+        long quantized = (long)(Math.min(Math.max(depth, 0.0f), 1.0f) * DEPTH_MAX);
+        return ((long)(layer & 0xFF) << 56)
+                | ((long)(program & NAME_MASK) << 44)
+                | ((long)(texture & NAME_MASK) << 32)
+                | ((long)(vertexArray & NAME_MASK) << 20)
+                | quantized;
+    }
+
+    /**
+     * Drop the commands submitted on the previous frame.
+     * */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Submit an indexed draw, with unsigned int elements.
+     * @param layer         drawing layer (0 to 255).
+     * @param depth         depth from 0 to 1 within the layer.
+     * @param shader        the shader used to draw.
+     * @param texture       the OpenGL texture bound to unit 0, 0 for none.
+     * @param vertexArray   the OpenGL vertex array, with its element buffer.
+     * @param mode          the primitive type (e.g. GL_TRIANGLES).
+     * @param elementCount  amount of elements drawn.
+     * @param offset        byte offset of the first element in the element buffer.
+     * */
+    public void drawElements(int layer, float depth, Shader shader, int texture, int vertexArray,
+                             int mode, int elementCount, long offset) {
+        submit(layer, depth, shader.getID(), texture, vertexArray, mode, elementCount, offset);
+    }
+
+    /**
+     * Submit a non indexed draw.
+     * @param first         first vertex drawn.
+     * @param vertexCount   amount of vertexes drawn.
+     * @see #drawElements(int, float, Shader, int, int, int, int, long)
+     * */
+    public void drawArrays(int layer, float depth, Shader shader, int texture, int vertexArray,
+                           int mode, int first, int vertexCount) {
+        submit(layer, depth, shader.getID(), texture, vertexArray, mode, vertexCount, -1L - first);
+    }
+
+    private void submit(int layer, float depth, int program, int texture, int vertexArray,
+                        int mode, int elementCount, long offset) {
+        if (count == keys.length) grow();
+
+        keys[count] = key(layer, program, texture, vertexArray, depth);
+        order[count] = count;
+        programs[count] = program;
+        textures[count] = texture;
+        vertexArrays[count] = vertexArray;
+        modes[count] = mode;
+        counts[count] = elementCount;
+        offsets[count] = offset;
+        count++;
+    }
+
+    /**
+     * Sort the submitted commands and draw them, then leave no program nor
+     * vertex array bound. Must be called on the OpenGL thread.
+     * @param state     the tracker eliding redundant binds, invalidated first
+     *                  as other code may have changed the bindings.
+     * */
+    public void flush(GLStateTracker state) {
+        drawCalls = 0;
+        if (count == 0) return;
+
+        RadixSort.sort(keys, order, tmpKeys, tmpOrder, count);
+        state.invalidate();
+
+        for (int n = 0; n < count; n++) {
+            int i = order[n];
+            state.useProgram(programs[i]);
+            state.bindTexture(0, textures[i]);
+            state.bindVertexArray(vertexArrays[i]);
+
+            long offset = offsets[i];
+            if (offset >= 0) {
+                glDrawElements(modes[i], counts[i], GL_UNSIGNED_INT, offset);
+            } else {
+                glDrawArrays(modes[i], (int)(-1L - offset), counts[i]);
+            }
+            drawCalls++;
+        }
+
+        state.bindVertexArray(0);
+        state.useProgram(0);
+    }
+
+    /**
+     * Double the amount of commands that can be submitted per frame.
+     * */
+    private void grow() {
+        int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        order = Arrays.copyOf(order, capacity);
+        tmpKeys = new long[capacity];
+        tmpOrder = new int[capacity];
+        programs = Arrays.copyOf(programs, capacity);
+        textures = Arrays.copyOf(textures, capacity);
+        vertexArrays = Arrays.copyOf(vertexArrays, capacity);
+        modes = Arrays.copyOf(modes, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+    }
+
+    /**
+     * Returns how many commands were submitted on the current (or last) frame.
+     * */
+    public int getCommandCount() {
+        return count;
+    }
+
+    /**
+     * Returns how many draw calls the last flush issued.
+     * */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+}
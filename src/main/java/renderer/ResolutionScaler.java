@@ -0,0 +1,162 @@
+/**
+ * Resolution scaler class. It renders the scene to an offscreen {@link Framebuffer}
+ * at a resolution that scales between two bounds, then copies (blits) it to the
+ * window with nearest or linear filtering. The scale follows the frame time:
+ * the slower of the CPU time and the GPU time ({@link GpuTimer}) is smoothed
+ * and, when it leaves a band around the target frame time, the scale changes
+ * by the square root of the ratio (the cost grows with the pixel count), going
+ * down fast and up slowly, then waits some frames for the change to show.
+ * The framebuffer is allocated once for the largest scale, and smaller scales
+ * only render to a region of it, so scaling never reallocates.
+ * */
+
+package renderer;
+
+import static org.lwjgl.opengl.GL11.*;
+
+public class ResolutionScaler {
+    private static final double SMOOTHING = 0.1; // Weight of each new frame time
+    private static final double OVER_BUDGET = 0.95; // Target / time below this lowers the scale
+    private static final double UNDER_BUDGET = 1.25; // Target / time above this raises the scale
+    private static final double MAX_DECREASE = 0.85;
+    private static final double MAX_INCREASE = 1.05;
+    private static final int COOLDOWN_FRAMES = 15;
+
+    private final float minScale;
+    private final float maxScale;
+    private final boolean linear;
+
+    /**
+     * Stores the frame time aimed for, in nanoseconds: {@link #targetNanos}
+     * */
+    private long targetNanos;
+
+    /**
+     * Stores the current scale, relative to the base resolution: {@link #scale}
+     * */
+    private float scale;
+
+    private double smoothedNanos;
+    private int cooldown;
+
+    private Framebuffer framebuffer; // Sized for maxScale of the current base resolution
+    private GpuTimer gpuTimer;
+    private int renderWidth;
+    private int renderHeight;
+
+    /**
+     * Constructor for the ResolutionScaler.
+     * @param minScale      lowest scale of the base resolution (e.g. 0.5).
+     * @param maxScale      highest scale of the base resolution (e.g. 1).
+     * @param linear        true to upscale with linear filtering, false for nearest (pixel art).
+     * @param targetNanos   frame time aimed for, in nanoseconds.
+     * */
+    public ResolutionScaler(float minScale, float maxScale, boolean linear, long targetNanos) {
+        if (minScale <= 0.0f || maxScale < minScale) {
+            throw new IllegalArgumentException("Resolution scales must be positive, the minimum not above the maximum.");
+        }
+        this.minScale = minScale;
+        this.maxScale = maxScale;
+        this.linear = linear;
+        setTargetFrameTime(targetNanos);
+        scale = maxScale;
+    }
+
+    public void setTargetFrameTime(long targetNanos) {
+        if (targetNanos <= 0) {
+            throw new IllegalArgumentException("Target frame time must be positive.");
+        }
+        this.targetNanos = targetNanos;
+    }
+
+    /**
+     * Adjust the scale to the time taken by the last frame.
+     * @param cpuNanos  CPU time of the last frame, without the time spent waiting (v-sync, frame cap).
+     * */
+    public void update(long cpuNanos) {
+        long gpuNanos = (gpuTimer != null) ? gpuTimer.getLastNanos() : 0L;
+        long frameNanos = Math.max(cpuNanos, gpuNanos);
+        if (frameNanos <= 0) return;
+        smoothedNanos = (smoothedNanos == 0.0) ? frameNanos : smoothedNanos + SMOOTHING * (frameNanos - smoothedNanos);
+
+        if (cooldown > 0) {
+            cooldown--;
+            return;
+        }
+        double ratio = targetNanos / smoothedNanos;
+        if (ratio >= OVER_BUDGET && ratio <= UNDER_BUDGET) return;
+
+        double factor = Math.min(Math.max(Math.sqrt(ratio), MAX_DECREASE), MAX_INCREASE);
+        float scaled = (float)Math.min(Math.max(scale * factor, minScale), maxScale);
+        if (scaled != scale) {
+            scale = scaled;
+            cooldown = COOLDOWN_FRAMES;
+        }
+    }
+
+    /**
+     * Start rendering the frame to the framebuffer, at the current scale.
+     * @param baseWidth     width of the base resolution (scale 1).
+     * @param baseHeight    height of the base resolution.
+     * */
+    public void begin(int baseWidth, int baseHeight) {
+        int maxWidth = Math.max(1, Math.round(baseWidth * maxScale));
+        int maxHeight = Math.max(1, Math.round(baseHeight * maxScale));
+        if (framebuffer == null || framebuffer.getWidth() != maxWidth || framebuffer.getHeight() != maxHeight) {
+            if (framebuffer != null) framebuffer.delete(); // Only when the window is resized
+            framebuffer = new Framebuffer(maxWidth, maxHeight);
+        }
+        if (gpuTimer == null) gpuTimer = new GpuTimer();
+
+        renderWidth = Math.max(1, Math.min(maxWidth, Math.round(baseWidth * scale)));
+        renderHeight = Math.max(1, Math.min(maxHeight, Math.round(baseHeight * scale)));
+
+        gpuTimer.begin();
+        framebuffer.bind();
+        glViewport(0, 0, renderWidth, renderHeight);
+        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+    }
+
+    /**
+     * Finish the frame, copying the rendered region to the whole window.
+     * @param windowWidth   width of the window framebuffer.
+     * @param windowHeight  height of the window framebuffer.
+     * */
+    public void end(int windowWidth, int windowHeight) {
+        framebuffer.blitToWindow(renderWidth, renderHeight, windowWidth, windowHeight, linear);
+        glViewport(0, 0, windowWidth, windowHeight);
+        gpuTimer.end();
+    }
+
+    /**
+     * Returns the current scale of the base resolution.
+     * */
+    public float getScale() {
+        return scale;
+    }
+
+    public int getRenderWidth() {
+        return renderWidth;
+    }
+
+    public int getRenderHeight() {
+        return renderHeight;
+    }
+
+    /**
+     * Returns the last GPU time measured for a frame, in nanoseconds, 0 if unknown.
+     * */
+    public long getGpuNanos() {
+        return (gpuTimer != null) ? gpuTimer.getLastNanos() : 0L;
+    }
+
+    /**
+     * Delete the OpenGL objects.
+     * */
+    public void delete() {
+        if (framebuffer != null) framebuffer.delete();
+        if (gpuTimer != null) gpuTimer.delete();
+        framebuffer = null;
+        gpuTimer = null;
+    }
+}
@@ -4,15 +4,19 @@
  * */
 package renderer;
 
-import org.lwjgl.opengl.GL;
+import org.joml.Matrix4f;
+import org.lwjgl.system.MemoryStack;
+import utils.StringIntMap;
 
-import javax.swing.*;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.FloatBuffer;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
 
 import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT;
+import static org.lwjgl.opengl.GL41.glProgramParameteri;
 
 public class Shader {
     /**
@@ -26,122 +30,332 @@ public class Shader {
     private String path;
 
     /**
-     * Stores the vertex shader configuration: {@link #vertexShaderSource}
+     * Stores the preprocessed source of every stage, null if the file could
+     * not be loaded: {@link #source}
      * */
-    private String vertexShaderSource;
+    private volatile ShaderSource source;
 
     /**
-     * Stores the fragment shader configuration: {@link #fragmentShaderSource}
+     * Stores the names defined (with '#define') on every stage, making this
+     * shader a variant of the file: {@link #defines}
      * */
-    private String fragmentShaderSource;
+    private String[] defines;
 
     /**
-     * Constructor for the Shader class. Loads both sources from shader .glsl file.
+     * Stores the location of each uniform looked up so far, -1 for the
+     * ones that do not exist: {@link #uniformLocations}
+     * */
+    private StringIntMap uniformLocations = new StringIntMap();
+
+    /**
+     * Stores the location of each vertex attribute looked up so far, -1 for
+     * the ones that do not exist: {@link #attributeLocations}
+     * */
+    private StringIntMap attributeLocations = new StringIntMap();
+
+    /**
+     * Constructor for the Shader class. Loads every stage from shader .glsl file,
+     * see {@link ShaderPreprocessor} for the supported directives.
      * @param path      path to the .glsl file.
+     * @param defines   names defined on every stage, right after the '#version'
+     *                  line, to build a variant of the shader.
      * */
-    public Shader (String path) {
+    public Shader (String path, String... defines) {
         this.path = path;
+        this.defines = defines;
         try {
-            String content = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8); // Load content
-            // from shader file to a string
-            String[] shadersSource = content.split("(#type)( )+([a-zA-Z]+)"); // Split string using RegExp, this
-            // is used to separate vertex shader from fragment shader on the same file.
+            this.source = ShaderPreprocessor.process(Paths.get(path), defines);
+        } catch(IOException e) {
+            e.printStackTrace();
+            System.err.println("Could not open file for shader '" + path + ".'");
+        }
+    }
 
-            int cursor = content.indexOf("#type") + 6; // Find the place right after the end of the word '#type'.
-            int eol = content.indexOf(System.lineSeparator(), cursor); // Find the end of the line.
+    /**
+     * Constructor for the Shader class from an already preprocessed source,
+     * e.g. preprocessed on another thread.
+     * @param source    the preprocessed shader.
+     * */
+    public Shader (ShaderSource source) {
+        this.path = source.getPath().toString();
+        this.defines = source.getDefines();
+        this.source = source;
+    }
 
-            String firstMatch = content.substring(cursor, eol).trim(); // Find the type name, the content just after
-            // '#type'
+    /**
+     * Compile a single stage of the shader.
+     * @return the OpenGL shader identifier, or 0 if it did not compile.
+     * */
+    private int compileStage(ShaderSource source, int stage) {
+        int stageID = glCreateShader(source.getStageType(stage));
+        glShaderSource(stageID, source.getStageSource(stage));
+        glCompileShader(stageID);
 
-            cursor = content.indexOf("#type", eol) + 6; // Find position of the next declaration of '#type'
-            eol = content.indexOf(System.lineSeparator(), cursor); // Find the end of the line.
+        // Verify if any problem happened in compilation
+        if(glGetShaderi(stageID, GL_COMPILE_STATUS) == GL_FALSE) {
+            System.out.println("ERROR: Could not compile " + source.getStageName(stage) + " shader from '"+ this.path + "'.");
+            System.out.println(glGetShaderInfoLog(stageID, glGetShaderi(stageID, GL_INFO_LOG_LENGTH)));
+            glDeleteShader(stageID);
+            return 0;
+        }
+        return stageID;
+    }
 
-            String secondMatch = content.substring(cursor, eol).trim(); // Find type name of the second type.
+    /**
+     * Link every compiled stage into a program.
+     * @return the program identifier, or 0 if it did not link.
+     * */
+    private int linkStages(int[] stageIDs, boolean retrievable) {
+        // Linking Shaders
+        int programID = glCreateProgram();
+        if (retrievable) {
+            glProgramParameteri(programID, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE); // Allow storing the binary
+        }
+        for (int stageID : stageIDs) {
+            glAttachShader(programID, stageID);
+        }
+        glLinkProgram(programID);
 
-            if (firstMatch.equals("vertex")) {
-                vertexShaderSource = shadersSource[1];
-            } else if (firstMatch.equals("fragment")) {
-                fragmentShaderSource = shadersSource[1];
-            } else {
-                throw new IOException("Invalid type name '" + firstMatch + "' in '" + path + "'.");
-            }
+        // Stages are not needed once linked
+        for (int stageID : stageIDs) {
+            glDetachShader(programID, stageID);
+            glDeleteShader(stageID);
+        }
+
+        // Verify if any problem happened while linking
+        if(glGetProgrami(programID, GL_LINK_STATUS) == GL_FALSE) {
+            System.out.println("ERROR: Could not link shaders from '"+ this.path + "'.");
+            System.out.println(glGetProgramInfoLog(programID, glGetProgrami(programID, GL_INFO_LOG_LENGTH)));
+            glDeleteProgram(programID);
+            return 0;
+        }
+        return programID;
+    }
+
+    /**
+     * Compile and Link Shader.
+     * */
+    public void create() {
+        create(null);
+    }
 
-            if (secondMatch.equals("vertex")) {
-                vertexShaderSource = shadersSource[2];
-            } else if (secondMatch.equals("fragment")) {
-                fragmentShaderSource = shadersSource[2];
-            } else {
-                throw new IOException("Invalid type name '" + secondMatch + "' in '" + path + "'.");
+    /**
+     * Create the shader program from a stored binary if available, otherwise
+     * compile and link it, storing its binary for the next time.
+     * @param binaryCache   the cache for program binaries, null to always compile.
+     * */
+    public void create(ProgramBinaryCache binaryCache) {
+        ShaderSource source = this.source;
+        if (source == null) return; // Not loaded, the error was already reported
+
+        ShaderCompileEvent event = new ShaderCompileEvent();
+        event.begin();
+        boolean cached = binaryCache != null && binaryCache.isSupported();
+        String key = null;
+        if (cached) {
+            key = binaryCache.key(joinedSource(source));
+            int program = binaryCache.load(key);
+            if (program != 0) {
+                this.shaderID = program;
+                commit(event, false, true, true);
+                return;
             }
+        }
 
+        this.shaderID = build(source, cached);
 
-        } catch(IOException e) {
-            e.printStackTrace();
-            System.err.println("Could not open file for shader '" + path + ".'");
+        if (cached && this.shaderID != 0) {
+            binaryCache.store(key, this.shaderID);
         }
+        commit(event, false, false, this.shaderID != 0);
     }
 
     /**
-     * Compile Vertex Shader.
+     * Commit a Flight Recorder event for the creation of the program, if enabled.
      * */
-    private int compileVertexShader() {
-        // Creating and compiling vertex shader
-        int vertexShaderID;
-        vertexShaderID = glCreateShader(GL_VERTEX_SHADER);
-        glShaderSource(vertexShaderID, vertexShaderSource);
-        glCompileShader(vertexShaderID);
+    private void commit(ShaderCompileEvent event, boolean reload, boolean fromBinaryCache, boolean success) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.path = path;
+        event.defines = (defines != null) ? String.join(",", defines) : "";
+        event.reload = reload;
+        event.fromBinaryCache = fromBinaryCache;
+        event.success = success;
+        event.commit();
+    }
 
-        // Verify if any problem happened in compilation
-        if(glGetShaderi(vertexShaderID, GL_COMPILE_STATUS) == GL_FALSE) {
-            System.out.println("ERROR: Could not compile vertex shader from '"+ this.path + "'.");
-            System.out.println(glGetShaderInfoLog(vertexShaderID, glGetShaderi(vertexShaderID, GL_INFO_LOG_LENGTH)));
+    /**
+     * Replace the program with one built from a new source (e.g. after the file
+     * changed). If the new source does not compile or link, the current program
+     * is kept. Must be called on the OpenGL thread, between frames.
+     * @param newSource     the new preprocessed source.
+     * @return true if the program was replaced.
+     * */
+    public boolean reload(ShaderSource newSource) {
+        ShaderCompileEvent event = new ShaderCompileEvent();
+        event.begin();
+        int programID = build(newSource, false);
+        commit(event, true, false, programID != 0);
+        if (programID == 0) {
+            System.out.println("Keeping previous program for '" + this.path + "'.");
+            return false;
         }
-        return vertexShaderID;
+
+        glDeleteProgram(shaderID);
+        shaderID = programID; // Picked by the next use()
+        source = newSource;
+        uniformLocations.clear(); // Locations may change on the new program
+        attributeLocations.clear();
+        return true;
     }
 
     /**
-     * Compile Fragment Shader.
+     * Compile every stage of a source and link them.
+     * @return the program identifier, or 0 if any stage failed.
      * */
-    private int compileFragmentShader() {
-        // Creating and compiling fragment shader
-        int fragmentShaderID = glCreateShader(GL_FRAGMENT_SHADER);
-        glShaderSource(fragmentShaderID, fragmentShaderSource);
-        glCompileShader(fragmentShaderID);
+    private int build(ShaderSource source, boolean retrievable) {
+        int[] stageIDs = new int[source.getStageCount()];
+        for (int i = 0; i < stageIDs.length; i++) {
+            stageIDs[i] = compileStage(source, i);
+            if (stageIDs[i] == 0) {
+                for (int j = 0; j < i; j++) {
+                    glDeleteShader(stageIDs[j]);
+                }
+                return 0;
+            }
+        }
+        return linkStages(stageIDs, retrievable);
+    }
 
-        // Verify if any problem happened in compilation
-        if(glGetShaderi(fragmentShaderID, GL_COMPILE_STATUS) == GL_FALSE) {
-            System.out.println("ERROR: Could not compile vertex shader from '"+ this.path + "'.");
-            System.out.println(glGetShaderInfoLog(fragmentShaderID, glGetShaderi(fragmentShaderID, GL_INFO_LOG_LENGTH)));
+    /**
+     * Returns every stage type and source in a single string, used as the
+     * program binary key.
+     * */
+    private static String joinedSource(ShaderSource source) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < source.getStageCount(); i++) {
+            joined.append(source.getStageName(i)).append('\0').append(source.getStageSource(i)).append('\0');
         }
-        return fragmentShaderID;
+        return joined.toString();
     }
 
     /**
-     * Link Vertex and Fragment Shaders.
+     * Returns the location of a uniform, looked up on OpenGL only the first time.
+     * @return the location, or -1 if the uniform does not exist (or is unused).
      * */
-    private void linkShaders(int vertexShaderID, int fragmentShaderID) {
-        // Linking Shaders
-        this.shaderID = glCreateProgram();
-        glAttachShader(this.shaderID, vertexShaderID);
-        glAttachShader(this.shaderID, fragmentShaderID);
-        glLinkProgram(this.shaderID);
+    public int getUniformLocation(String name) {
+        int location = uniformLocations.get(name, Integer.MIN_VALUE);
+        if (location == Integer.MIN_VALUE) {
+            location = glGetUniformLocation(shaderID, name);
+            uniformLocations.put(name, location);
+        }
+        return location;
+    }
 
-        // Verify if any problem happened while linking
-        if(glGetProgrami(this.shaderID, GL_LINK_STATUS) == GL_FALSE) {
-            System.out.println("ERROR: Could not link shaders from '"+ this.path + "'.");
-            System.out.println(glGetProgramInfoLog(vertexShaderID, glGetProgrami(this.shaderID, GL_INFO_LOG_LENGTH)));
+    /**
+     * Returns the location of a vertex attribute, looked up on OpenGL only the first time.
+     * @return the location, or -1 if the attribute does not exist (or is unused).
+     * */
+    public int getAttributeLocation(String name) {
+        int location = attributeLocations.get(name, Integer.MIN_VALUE);
+        if (location == Integer.MIN_VALUE) {
+            location = glGetAttribLocation(shaderID, name);
+            attributeLocations.put(name, location);
         }
+        return location;
     }
 
     /**
-     * Compile and Link Shader.
+     * Upload an int (or sampler) uniform, the shader must be in use.
      * */
-    public void create() {
-        int vertexShaderID = compileVertexShader();
+    public void uploadInt(String name, int value) {
+        glUniform1i(getUniformLocation(name), value);
+    }
 
-        int fragmentShaderID = compileFragmentShader();
+    /**
+     * Upload a float uniform, the shader must be in use.
+     * */
+    public void uploadFloat(String name, float value) {
+        glUniform1f(getUniformLocation(name), value);
+    }
+
+    /**
+     * Upload a vec2 uniform, the shader must be in use.
+     * */
+    public void uploadVec2f(String name, float x, float y) {
+        glUniform2f(getUniformLocation(name), x, y);
+    }
+
+    /**
+     * Upload a vec4 uniform, the shader must be in use.
+     * */
+    public void uploadVec4f(String name, float x, float y, float z, float w) {
+        glUniform4f(getUniformLocation(name), x, y, z, w);
+    }
+
+    /**
+     * Upload a mat4 uniform, the shader must be in use.
+     * */
+    public void uploadMat4f(String name, Matrix4f matrix) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            FloatBuffer buffer = stack.mallocFloat(16);
+            glUniformMatrix4fv(getUniformLocation(name), false, matrix.get(buffer));
+        }
+    }
 
-        linkShaders(vertexShaderID, fragmentShaderID);
+    /**
+     * Returns the path to the shader file.
+     * */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the names defined on this variant of the shader.
+     * */
+    public String[] getDefines() {
+        return defines.clone();
+    }
+
+    /**
+     * Delete the shader program.
+     * */
+    public void delete() {
+        glDeleteProgram(shaderID);
+        shaderID = 0;
+        uniformLocations.clear();
+        attributeLocations.clear();
+    }
+
+    /**
+     * Returns the OpenGL program identifier for this shader.
+     * */
+    public int getID() {
+        return shaderID;
+    }
+
+    /**
+     * Returns the vertex attributes declared as per instance with the '#instanced'
+     * directive, in declaration order.
+     * */
+    public List<String> getInstancedAttributes() {
+        ShaderSource source = this.source;
+        return (source != null) ? source.getInstancedAttributes() : Collections.emptyList();
+    }
+
+    /**
+     * Returns the names declared with '#variant' on the shader file.
+     * */
+    public List<String> getVariantNames() {
+        ShaderSource source = this.source;
+        return (source != null) ? source.getVariantNames() : Collections.emptyList();
+    }
+
+    /**
+     * Returns the preprocessed source of the shader, null if it could not be loaded.
+     * */
+    public ShaderSource getSource() {
+        return source;
     }
 
     /**
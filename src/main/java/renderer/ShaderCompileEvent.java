@@ -0,0 +1,31 @@
+/**
+ * Shader compile event class. JDK Flight Recorder event covering the creation
+ * of a shader program: compiled and linked, or loaded from a stored binary.
+ * */
+
+package renderer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("sge.ShaderCompile")
+@Label("Shader Compile")
+@Category("SGE")
+final class ShaderCompileEvent extends jdk.jfr.Event {
+
+    @Label("Path")
+    String path;
+
+    @Label("Defines")
+    String defines;
+
+    @Label("Reload")
+    boolean reload;
+
+    @Label("From Binary Cache")
+    boolean fromBinaryCache;
+
+    @Label("Success")
+    boolean success;
+}
@@ -0,0 +1,239 @@
+/**
+ * Shader library class. It keeps every shader program loaded so far, so each
+ * file (and variant, given by its defines) is read, compiled and linked once,
+ * no matter how many times it is requested. Linked programs are stored on
+ * disk by a {@link ProgramBinaryCache} to skip compiling on the next runs.
+ * Shaders can be reloaded when their files change, see {@link #startWatching()}.
+ * All methods must be called on the OpenGL thread, unless stated otherwise.
+ * */
+
+package renderer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class ShaderLibrary {
+
+    /**
+     * Stores the shaders loaded so far, by path and defines: {@link #shaders}
+     * */
+    private final Map<String, Shader> shaders = new ConcurrentHashMap<>(); // Also read by the watcher
+
+    /**
+     * Stores the cache for program binaries, null if disabled: {@link #binaryCache}
+     * */
+    private final ProgramBinaryCache binaryCache;
+
+    /**
+     * Stores the watcher reloading changed shaders, null if not watching: {@link #watcher}
+     * */
+    private ShaderWatcher watcher;
+
+    /**
+     * Stores the reloads preprocessed by the watcher, waiting to be compiled: {@link #pendingReloads}
+     * */
+    private final ConcurrentLinkedQueue<PendingReload> pendingReloads = new ConcurrentLinkedQueue<>();
+
+    /**
+     * A shader and its new source, waiting to be compiled on the OpenGL thread.
+     * */
+    private static final class PendingReload {
+        final Shader shader;
+        final ShaderSource source;
+
+        PendingReload(Shader shader, ShaderSource source) {
+            this.shader = shader;
+            this.source = source;
+        }
+    }
+
+    /**
+     * Default constructor for the ShaderLibrary, storing program binaries on '.cache/shaders'.
+     * */
+    public ShaderLibrary() {
+        this(Paths.get(".cache", "shaders"));
+    }
+
+    /**
+     * Constructor for the ShaderLibrary.
+     * @param binaryCacheDirectory      directory for the program binaries, null to
+     *                                  always compile the shaders.
+     * */
+    public ShaderLibrary(Path binaryCacheDirectory) {
+        binaryCache = (binaryCacheDirectory != null) ? new ProgramBinaryCache(binaryCacheDirectory) : null;
+    }
+
+    /**
+     * Returns the shader for a file and variant, creating it on the first request.
+     * @param path      path to the .glsl file.
+     * @param defines   names defined on the sources for this variant, in any order.
+     * */
+    public Shader get(String path, String... defines) {
+        String[] sorted = defines.clone();
+        Arrays.sort(sorted); // The same variant regardless of the order
+        String key = key(path, sorted);
+
+        Shader shader = shaders.get(key);
+        if (shader == null) {
+            shader = new Shader(path, sorted);
+            shader.create(binaryCache);
+            shaders.put(key, shader);
+            watch(shader.getSource());
+        }
+        return shader;
+    }
+
+    /**
+     * Returns the shader for an already preprocessed source (e.g. preprocessed on
+     * a worker thread), creating it if that file and variant was not created yet.
+     * @param source    the preprocessed shader.
+     * */
+    public Shader create(ShaderSource source) {
+        String[] sorted = source.getDefines();
+        Arrays.sort(sorted);
+        String key = key(source.getPath().toString(), sorted);
+
+        Shader shader = shaders.get(key);
+        if (shader == null) {
+            shader = new Shader(source);
+            shader.create(binaryCache);
+            shaders.put(key, shader);
+            watch(source);
+        }
+        return shader;
+    }
+
+    /**
+     * Returns the key of a shader file and variant.
+     * @param path      path to the .glsl file.
+     * @param sorted    the variant defines, sorted.
+     * */
+    private static String key(String path, String[] sorted) {
+        String file = Paths.get(path).normalize().toString();
+        return (sorted.length == 0) ? file : file + "#" + String.join(",", sorted);
+    }
+
+    /**
+     * Start watching the shader files, reloading the shaders whose file (or an
+     * included file) changes. Reloads happen on {@link #applyReloads()}.
+     * */
+    public void startWatching() {
+        if (watcher != null) return;
+        try {
+            watcher = new ShaderWatcher(this);
+        } catch (IOException e) {
+            System.err.println("Could not watch shader files, hot reload disabled.");
+            return;
+        }
+        for (Shader shader : shaders.values()) {
+            watch(shader.getSource());
+        }
+        watcher.start();
+    }
+
+    /**
+     * Stop watching the shader files.
+     * */
+    public void stopWatching() {
+        if (watcher == null) return;
+        watcher.stop();
+        watcher = null;
+        pendingReloads.clear();
+    }
+
+    /**
+     * Watch the file of a shader and the files it includes.
+     * */
+    private void watch(ShaderSource source) {
+        if (watcher == null || source == null) return;
+        watcher.watch(source.getPath());
+        for (Path dependency : source.getDependencies()) {
+            watcher.watch(dependency);
+        }
+    }
+
+    /**
+     * Preprocess again the shaders affected by changed files and queue them to be
+     * compiled. Called from the watcher thread.
+     * @param changed   the changed files (absolute and normalized).
+     * */
+    void queueReloads(Set<Path> changed) {
+        for (Shader shader : shaders.values()) {
+            ShaderSource source = shader.getSource();
+            if (source == null || !isAffected(source, changed)) continue;
+            try {
+                pendingReloads.add(new PendingReload(shader, ShaderPreprocessor.process(source.getPath(), source.getDefines())));
+            } catch (IOException e) {
+                System.err.println("Could not reload shader '" + shader.getPath() + "': " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns if a shader source depends on any of the changed files.
+     * */
+    private static boolean isAffected(ShaderSource source, Set<Path> changed) {
+        if (changed.contains(source.getPath().toAbsolutePath().normalize())) return true;
+        for (Path dependency : source.getDependencies()) {
+            if (changed.contains(dependency)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if changed shaders are waiting for {@link #applyReloads()}.
+     * */
+    public boolean hasPendingReloads() {
+        return !pendingReloads.isEmpty();
+    }
+
+    /**
+     * Compile and link the shaders reloaded since the last call, swapping their
+     * programs. Called by the engine between frames.
+     * @return how many shaders were replaced.
+     * */
+    public int applyReloads() {
+        int reloaded = 0;
+        PendingReload reload;
+        while ((reload = pendingReloads.poll()) != null) {
+            if (reload.shader.reload(reload.source)) {
+                System.out.println("Reloaded shader '" + reload.shader.getPath() + "'.");
+                watch(reload.source); // It may include new files
+                reloaded++;
+            }
+        }
+        return reloaded;
+    }
+
+    /**
+     * Returns every variant of a shader file, one for each combination of the
+     * names declared with '#variant' on it, creating the missing ones.
+     * @param path      path to the .glsl file.
+     * */
+    public List<Shader> getVariants(String path) {
+        List<Shader> variants = new ArrayList<>();
+        for (String[] defines : ShaderPreprocessor.permutations(get(path).getVariantNames())) {
+            variants.add(get(path, defines));
+        }
+        return variants;
+    }
+
+    /**
+     * Delete every shader program in the library.
+     * */
+    public void delete() {
+        stopWatching();
+        for (Shader shader : shaders.values()) {
+            shader.delete();
+        }
+        shaders.clear();
+    }
+}
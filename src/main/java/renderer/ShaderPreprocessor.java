@@ -0,0 +1,327 @@
+/**
+ * Shader preprocessor class. It turns a shader file into a {@link ShaderSource}
+ * in a single pass over its content. Supported directives:
+ * '#type name' starts a stage (vertex, fragment, geometry or compute), any
+ * amount of stages per file;
+ * '#include "file"' inserts another file, relative to the current one;
+ * '#instanced names...' declares per instance vertex attributes;
+ * '#variant names...' declares names that variants of the shader may define,
+ * see {@link #permutations(List)}.
+ * Variant defines are inserted right after the '#version' line of each stage.
+ * '#line' directives keep the line numbers of the files: the stages count the
+ * lines of the shader file (source string 0), and included text counts the
+ * lines of its file, numbered in the order of the dependencies from 1, so
+ * compile errors point to the right file and line. Any line ending (LF, CRLF or CR) is accepted. Each file is tokenized once
+ * into fragments that are cached (until the file changes), so building many
+ * variants or including the same file many times does not parse it again.
+ * */
+
+package renderer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ShaderPreprocessor {
+    private static final int TEXT = 0;
+    private static final int TYPE = 1;
+    private static final int INCLUDE = 2;
+    private static final int VERSION = 3;
+    private static final int INSTANCED = 4;
+    private static final int VARIANT = 5;
+
+    /**
+     * Stores the parsed fragment of each file read so far: {@link #fragments}
+     * */
+    private static final ConcurrentHashMap<Path, Fragment> fragments = new ConcurrentHashMap<>();
+
+    /**
+     * A tokenized file: a sequence of segments, each one being a text chunk or a directive.
+     * */
+    private static final class Fragment {
+        final long modified;
+        final int[] kinds;
+        final String[] values;
+        final int[] lines; // Line of each directive, used for '#line' after the defines and includes
+
+        Fragment(long modified, Segments segments) {
+            this.modified = modified;
+            this.kinds = Arrays.copyOf(segments.kinds, segments.count);
+            this.values = Arrays.copyOf(segments.values, segments.count);
+            this.lines = Arrays.copyOf(segments.lines, segments.count);
+        }
+    }
+
+    /**
+     * The segments of a file being tokenized, in arrays grown as needed.
+     * */
+    private static final class Segments {
+        int[] kinds = new int[16];
+        String[] values = new String[16];
+        int[] lines = new int[16];
+        int count;
+
+        void add(int kind, String value, int line) {
+            if (count == kinds.length) {
+                kinds = Arrays.copyOf(kinds, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+                lines = Arrays.copyOf(lines, count * 2);
+            }
+            kinds[count] = kind;
+            values[count] = value;
+            lines[count] = line;
+            count++;
+        }
+    }
+
+    private ShaderPreprocessor() {
+    }
+
+    /**
+     * Preprocess a shader file.
+     * @param path      path to the .glsl file.
+     * @param defines   names defined on every stage for this variant.
+     * */
+    public static ShaderSource process(Path path, String... defines) throws IOException {
+        Path file = path.toAbsolutePath().normalize();
+        Assembly assembly = new Assembly(defines);
+        assembly.append(fragment(file), file, false);
+        return assembly.finish(path);
+    }
+
+    /**
+     * Returns every combination of the given variant names (including none).
+     * */
+    public static List<String[]> permutations(List<String> variantNames) {
+        int count = variantNames.size();
+        if (count > 16) {
+            throw new IllegalArgumentException("Too many shader variants (" + count + ").");
+        }
+        List<String[]> permutations = new ArrayList<>(1 << count);
+        for (int mask = 0; mask < (1 << count); mask++) {
+            String[] defines = new String[Integer.bitCount(mask)];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                if ((mask & (1 << i)) != 0) defines[n++] = variantNames.get(i);
+            }
+            permutations.add(defines);
+        }
+        return permutations;
+    }
+
+    /**
+     * Drop the cached fragment of a file, so it is read again on the next use.
+     * */
+    public static void invalidate(Path path) {
+        fragments.remove(path.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Returns the fragment of a file, parsing it if it is not cached or changed.
+     * */
+    private static Fragment fragment(Path file) throws IOException {
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        Fragment fragment = fragments.get(file);
+        if (fragment == null || fragment.modified != modified) {
+            String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            fragment = parse(content, file, modified);
+            fragments.put(file, fragment);
+        }
+        return fragment;
+    }
+
+    /**
+     * Tokenize a file into segments, in a single pass over its content.
+     * */
+    private static Fragment parse(String content, Path file, long modified) throws IOException {
+        Segments segments = new Segments();
+        StringBuilder text = new StringBuilder(content.length());
+        int length = content.length();
+        int line = 1;
+        int i = 0;
+
+        while (i < length) {
+            // Find the end of the line and the start of the next one, for any line ending
+            int end = i;
+            while (end < length && content.charAt(end) != '\n' && content.charAt(end) != '\r') end++;
+            int next = end;
+            if (next < length && content.charAt(next) == '\r') next++;
+            if (next < length && content.charAt(next) == '\n' && (next == end || content.charAt(end) == '\r')) next++;
+
+            int start = i;
+            while (start < end && Character.isWhitespace(content.charAt(start))) start++;
+
+            int kind = TEXT;
+            int argument = end;
+            if (start < end && content.charAt(start) == '#') {
+                int word = start + 1;
+                while (word < end && content.charAt(word) == ' ') word++;
+                if (isDirective(content, word, end, "type")) {
+                    kind = TYPE;
+                    argument = word + 4;
+                } else if (isDirective(content, word, end, "include")) {
+                    kind = INCLUDE;
+                    argument = word + 7;
+                } else if (isDirective(content, word, end, "version")) {
+                    kind = VERSION;
+                } else if (isDirective(content, word, end, "instanced")) {
+                    kind = INSTANCED;
+                    argument = word + 9;
+                } else if (isDirective(content, word, end, "variant")) {
+                    kind = VARIANT;
+                    argument = word + 7;
+                }
+            }
+
+            if (kind == TEXT) {
+                text.append(content, i, end).append('\n');
+            } else {
+                if (text.length() > 0) {
+                    segments.add(TEXT, text.toString(), line);
+                    text.setLength(0);
+                }
+                String value = content.substring(argument, end).trim();
+                switch (kind) {
+                    case INCLUDE:
+                        if (value.length() < 2 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"') {
+                            throw new IOException("Invalid include '" + value + "' in '" + file + "' line " + line + ".");
+                        }
+                        Path included = file.resolveSibling(value.substring(1, value.length() - 1)).normalize();
+                        segments.add(INCLUDE, included.toString(), line);
+                        break;
+                    case VERSION:
+                        segments.add(VERSION, content.substring(i, end) + "\n", line);
+                        break;
+                    default:
+                        segments.add(kind, value, line);
+                        if (kind != TYPE) text.append('\n'); // Keep line numbers
+                }
+            }
+
+            line++;
+            i = next;
+        }
+        if (text.length() > 0) {
+            segments.add(TEXT, text.toString(), line);
+        }
+        return new Fragment(modified, segments);
+    }
+
+    /**
+     * Returns if a directive name starts at the given position, followed by a
+     * blank or the end of the line.
+     * */
+    private static boolean isDirective(String content, int start, int end, String name) {
+        int after = start + name.length();
+        return after <= end && content.startsWith(name, start)
+                && (after == end || Character.isWhitespace(content.charAt(after)));
+    }
+
+    /**
+     * Builds the stages of a shader by walking the fragments of a file and its includes.
+     * */
+    private static final class Assembly {
+        private final String[] defines;
+        private final List<String> stageNames = new ArrayList<>();
+        private final List<String> stageSources = new ArrayList<>();
+        private final List<String> instanced = new ArrayList<>();
+        private final List<String> variants = new ArrayList<>();
+        private final Set<Path> dependencies = new LinkedHashSet<>();
+        private final Deque<Path> including = new ArrayDeque<>();
+        private StringBuilder current;
+
+        Assembly(String[] defines) {
+            this.defines = defines;
+        }
+
+        void append(Fragment fragment, Path file, boolean included) throws IOException {
+            including.push(file);
+            for (int s = 0; s < fragment.kinds.length; s++) {
+                String value = fragment.values[s];
+                switch (fragment.kinds[s]) {
+                    case TEXT:
+                        if (current != null) current.append(value); // Text before the first '#type' is ignored
+                        break;
+                    case TYPE:
+                        if (included) {
+                            throw new IOException("'#type' is not allowed in included file '" + file + "'.");
+                        }
+                        finishStage();
+                        stageNames.add(value);
+                        current = new StringBuilder();
+                        break;
+                    case VERSION:
+                        if (current == null) break;
+                        current.append(value);
+                        for (String define : defines) {
+                            current.append("#define ").append(define).append('\n');
+                        }
+                        current.append("#line ").append(fragment.lines[s] + 1).append('\n');
+                        break;
+                    case INCLUDE:
+                        Path includedFile = Paths.get(value);
+                        if (including.contains(includedFile)) {
+                            throw new IOException("Circular include of '" + includedFile + "' in '" + file + "'.");
+                        }
+                        dependencies.add(includedFile);
+                        if (current != null) current.append("#line 1 ").append(sourceNumber(includedFile)).append('\n');
+                        append(fragment(includedFile), includedFile, true);
+                        if (current != null) { // Back to the lines after the include
+                            current.append("#line ").append(fragment.lines[s] + 1).append(' ')
+                                    .append(sourceNumber(file)).append('\n');
+                        }
+                        break;
+                    case INSTANCED:
+                        addNames(instanced, value);
+                        break;
+                    case VARIANT:
+                        addNames(variants, value);
+                        break;
+                }
+            }
+            including.pop();
+        }
+
+        /**
+         * Returns the source string number of a file in '#line': 0 for the
+         * shader file, then its dependencies in order from 1.
+         * */
+        private int sourceNumber(Path file) {
+            int number = 1;
+            for (Path dependency : dependencies) {
+                if (dependency.equals(file)) return number;
+                number++;
+            }
+            return 0;
+        }
+
+        private void addNames(List<String> names, String value) {
+            for (String name : value.split("\\s+")) {
+                if (!name.isEmpty() && !names.contains(name)) names.add(name);
+            }
+        }
+
+        private void finishStage() {
+            if (current != null) stageSources.add(current.toString());
+            current = null;
+        }
+
+        ShaderSource finish(Path path) throws IOException {
+            finishStage();
+            if (stageNames.isEmpty()) {
+                throw new IOException("No '#type' found in '" + path + "'.");
+            }
+            return new ShaderSource(path, defines, stageNames, stageSources, instanced, variants, new ArrayList<>(dependencies));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Shader source class. It holds the result of preprocessing a shader file:
+ * the source of each stage, ready to be compiled, and what the directives
+ * declared (per instance attributes, variant names and included files).
+ * Instances are immutable, so they can be built on any thread.
+ * */
+
+package renderer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL20.GL_FRAGMENT_SHADER;
+import static org.lwjgl.opengl.GL20.GL_VERTEX_SHADER;
+import static org.lwjgl.opengl.GL32.GL_GEOMETRY_SHADER;
+import static org.lwjgl.opengl.GL43.GL_COMPUTE_SHADER;
+
+public class ShaderSource {
+    private final Path path;
+    private final String[] defines;
+    private final String[] stageNames;
+    private final int[] stageTypes;
+    private final String[] stageSources;
+    private final List<String> instancedAttributes;
+    private final List<String> variantNames;
+    private final List<Path> dependencies;
+
+    ShaderSource(Path path, String[] defines, List<String> stageNames, List<String> stageSources,
+                 List<String> instancedAttributes, List<String> variantNames, List<Path> dependencies) throws IOException {
+        this.path = path;
+        this.defines = defines.clone();
+        this.stageNames = stageNames.toArray(new String[0]);
+        this.stageSources = stageSources.toArray(new String[0]);
+        this.stageTypes = new int[this.stageNames.length];
+        for (int i = 0; i < this.stageNames.length; i++) {
+            this.stageTypes[i] = stageType(this.stageNames[i], path);
+        }
+        this.instancedAttributes = Collections.unmodifiableList(instancedAttributes);
+        this.variantNames = Collections.unmodifiableList(variantNames);
+        this.dependencies = Collections.unmodifiableList(dependencies);
+    }
+
+    /**
+     * Returns the OpenGL shader type for a '#type' name.
+     * */
+    private static int stageType(String name, Path path) throws IOException {
+        switch (name) {
+            case "vertex":
+                return GL_VERTEX_SHADER;
+            case "fragment":
+                return GL_FRAGMENT_SHADER;
+            case "geometry":
+                return GL_GEOMETRY_SHADER;
+            case "compute":
+                return GL_COMPUTE_SHADER;
+            default:
+                throw new IOException("Invalid type name '" + name + "' in '" + path + "'.");
+        }
+    }
+
+    /**
+     * Returns the path to the shader file.
+     * */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the names defined on this variant.
+     * */
+    public String[] getDefines() {
+        return defines.clone();
+    }
+
+    /**
+     * Returns how many stages ('#type' blocks) the shader has.
+     * */
+    public int getStageCount() {
+        return stageNames.length;
+    }
+
+    /**
+     * Returns the '#type' name of a stage, e.g. "vertex".
+     * */
+    public String getStageName(int stage) {
+        return stageNames[stage];
+    }
+
+    /**
+     * Returns the OpenGL shader type of a stage, e.g. GL_VERTEX_SHADER.
+     * */
+    public int getStageType(int stage) {
+        return stageTypes[stage];
+    }
+
+    /**
+     * Returns the GLSL source of a stage.
+     * */
+    public String getStageSource(int stage) {
+        return stageSources[stage];
+    }
+
+    /**
+     * Returns the vertex attributes declared as per instance with '#instanced'.
+     * */
+    public List<String> getInstancedAttributes() {
+        return instancedAttributes;
+    }
+
+    /**
+     * Returns the names declared with '#variant', each one may be defined or not.
+     * */
+    public List<String> getVariantNames() {
+        return variantNames;
+    }
+
+    /**
+     * Returns every file included (directly or not) by the shader.
+     * */
+    public List<Path> getDependencies() {
+        return dependencies;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Shader watcher class. It watches the shader files of a {@link ShaderLibrary}
+ * (and the files they include) on a background thread. When one changes, the
+ * affected shaders are preprocessed on that thread and queued; the OpenGL
+ * thread then compiles and links them between frames with
+ * {@link ShaderLibrary#applyReloads()}. A shader that fails to preprocess or
+ * compile keeps its previous program.
+ * */
+
+package renderer;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+public class ShaderWatcher implements Runnable {
+
+    /**
+     * Time (in milliseconds) to wait for more events after a change, as editors
+     * usually write a file in several steps.
+     * */
+    private static final long SETTLE_TIME = 100;
+
+    /**
+     * Stores the library whose shaders are reloaded: {@link #library}
+     * */
+    private final ShaderLibrary library;
+
+    /**
+     * Stores the file system watch service: {@link #watchService}
+     * */
+    private final WatchService watchService;
+
+    /**
+     * Stores the directory watched by each watch key: {@link #directories}
+     * */
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    /**
+     * Stores the watcher thread: {@link #thread}
+     * */
+    private Thread thread;
+
+    /**
+     * Constructor for the ShaderWatcher.
+     * @param library   the library whose shaders are reloaded.
+     * */
+    public ShaderWatcher(ShaderLibrary library) throws IOException {
+        this.library = library;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Watch the directory of a file, if not watched yet.
+     * */
+    public synchronized void watch(Path file) {
+        Path directory = file.toAbsolutePath().normalize().getParent();
+        if (directory == null || directories.containsValue(directory)) return;
+        try {
+            directories.put(directory.register(watchService, ENTRY_MODIFY, ENTRY_CREATE), directory);
+        } catch (IOException e) {
+            System.err.println("Could not watch shader directory '" + directory + "'.");
+        }
+    }
+
+    /**
+     * Start the watcher thread.
+     * */
+    public void start() {
+        thread = new Thread(this, "SGE Shader Watcher");
+        thread.setDaemon(true); // Never keeps the engine from exiting
+        thread.start();
+    }
+
+    /**
+     * Stop the watcher thread.
+     * */
+    public void stop() {
+        try {
+            watchService.close(); // Wakes the thread up
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        Set<Path> changed = new LinkedHashSet<>();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                // Gather every change until files settle
+                while (key != null) {
+                    collect(key, changed);
+                    key = watchService.poll(SETTLE_TIME, TimeUnit.MILLISECONDS);
+                }
+                for (Path file : changed) {
+                    ShaderPreprocessor.invalidate(file);
+                }
+                library.queueReloads(changed);
+                changed.clear();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     * Add the files changed on a watch key and reset it.
+     * */
+    private void collect(WatchKey key, Set<Path> changed) {
+        Path directory;
+        synchronized (this) {
+            directory = directories.get(key);
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory != null && event.context() instanceof Path) {
+                changed.add(directory.resolve((Path)event.context()).normalize());
+            }
+        }
+        key.reset();
+    }
+}
@@ -0,0 +1,369 @@
+/**
+ * Sprite batch class. It draws many quads (sprites) with as few draw calls as
+ * possible. Sprites submitted between {@link #begin()} and {@link #end()} are
+ * sorted by their state (shader and texture) and written into a single
+ * interleaved vertex buffer, drawn with one call per state change using an
+ * index buffer built once on {@link #create()}.
+ * The vertex layout extends the basicShader.glsl one: position (location 0),
+ * RGBA color (location 1), texture coordinates (location 2) and texture slot
+ * (location 3, negative for untextured sprites), see spriteShader.glsl.
+ * */
+
+package renderer;
+
+import org.lwjgl.BufferUtils;
+import utils.FrameArena;
+import utils.RadixSort;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+
+public class SpriteBatch {
+    private static final int POS_SIZE = 3; // x, y, z
+    private static final int COLOR_SIZE = 4; // R, G, B, A
+    private static final int UV_SIZE = 2; // u, v
+    private static final int SLOT_SIZE = 1; // texture slot
+    private static final int VERTEX_SIZE = POS_SIZE + COLOR_SIZE + UV_SIZE + SLOT_SIZE;
+    private static final int VERTEX_SIZE_BYTES = VERTEX_SIZE * Float.BYTES;
+
+    /**
+     * Floats stored for each submitted sprite: x, y, z, width, height, r, g, b, a, u0, v0, u1, v1.
+     * */
+    private static final int SPRITE_SIZE = 13;
+
+    /**
+     * Stores the maximum amount of quads written to the vertex buffer before
+     * drawing: {@link #maxQuads}
+     * */
+    private final int maxQuads;
+
+    private int VAOID; // Vertex Array Object
+    private int VBOID; // Vertex Buffer Object
+    private int EBOID; // Element Buffer Object
+
+    /**
+     * Stores the vertexes of the quads being written: {@link #vertexes}
+     * */
+    private final FloatBuffer vertexes;
+
+    /**
+     * Stores the data of each submitted sprite, {@link #SPRITE_SIZE} floats
+     * per sprite: {@link #sprites}
+     * */
+    private float[] sprites;
+
+    /**
+     * Stores the state key of each submitted sprite: {@link #keys}
+     * */
+    private long[] keys;
+
+    /**
+     * Stores the submission index of each sprite, in drawing order after
+     * sorting: {@link #order}
+     * */
+    private int[] order;
+
+    private long[] tmpKeys; // Used by the sort
+    private int[] tmpOrder; // Used by the sort
+
+    /**
+     * Stores the state key of each run of quads sharing the same state: {@link #runKeys}
+     * */
+    private final long[] runKeys;
+
+    /**
+     * Stores the first quad of each run of quads sharing the same state: {@link #runFirst}
+     * */
+    private final int[] runFirst;
+
+    /**
+     * Stores the shaders used so far, the state key holds the index on this array: {@link #shaders}
+     * */
+    private Shader[] shaders;
+    private int shaderCount;
+
+    /**
+     * Stores how many sprites were submitted since {@link #begin()}: {@link #count}
+     * */
+    private int count;
+
+    /**
+     * Stores how many draw calls were issued since {@link #begin()}: {@link #drawCalls}
+     * */
+    private int drawCalls;
+
+    private boolean drawing;
+
+    /**
+     * Default constructor for the SpriteBatch, 16384 quads per draw.
+     * */
+    public SpriteBatch() {
+        this(16384, 1024);
+    }
+
+    /**
+     * Constructor for the SpriteBatch.
+     * @param maxQuads      maximum quads drawn in a single draw call.
+     * @param capacity      initial amount of sprites that can be submitted per
+     *                      frame, it grows if needed.
+     * */
+    public SpriteBatch(int maxQuads, int capacity) {
+        if (maxQuads <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Sprite batch sizes must be positive.");
+        }
+        this.maxQuads = maxQuads;
+        vertexes = BufferUtils.createFloatBuffer(maxQuads * 4 * VERTEX_SIZE);
+        sprites = new float[capacity * SPRITE_SIZE];
+        keys = new long[capacity];
+        order = new int[capacity];
+        tmpKeys = new long[capacity];
+        tmpOrder = new int[capacity];
+        runKeys = new long[maxQuads];
+        runFirst = new int[maxQuads];
+        shaders = new Shader[8];
+    }
+
+    /**
+     * Create the OpenGL objects for the batch, must be called on the OpenGL thread.
+     * */
+    public void create() {
+        VAOID = glGenVertexArrays();
+        glBindVertexArray(VAOID);
+
+        VBOID = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, VBOID);
+        glBufferData(GL_ARRAY_BUFFER, (long)vertexes.capacity() * Float.BYTES, GL_STREAM_DRAW);
+
+        // Two triangles per quad, the same for every batch
+        FrameArena arena = FrameArena.local();
+        long mark = arena.mark();
+        IntBuffer elementBuffer = arena.ints(maxQuads * 6);
+        for (int i = 0; i < maxQuads; i++) {
+            int first = i * 4;
+            elementBuffer.put(first).put(first + 1).put(first + 3);
+            elementBuffer.put(first + 1).put(first + 2).put(first + 3);
+        }
+        elementBuffer.flip();
+
+        EBOID = glGenBuffers();
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, EBOID);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, elementBuffer, GL_STATIC_DRAW);
+        arena.release(mark);
+
+        // Attributes are enabled once, the VAO keeps them
+        glVertexAttribPointer(0, POS_SIZE, GL_FLOAT, false, VERTEX_SIZE_BYTES, 0);
+        glEnableVertexAttribArray(0);
+        glVertexAttribPointer(1, COLOR_SIZE, GL_FLOAT, false, VERTEX_SIZE_BYTES, POS_SIZE * Float.BYTES);
+        glEnableVertexAttribArray(1);
+        glVertexAttribPointer(2, UV_SIZE, GL_FLOAT, false, VERTEX_SIZE_BYTES, (POS_SIZE + COLOR_SIZE) * Float.BYTES);
+        glEnableVertexAttribArray(2);
+        glVertexAttribPointer(3, SLOT_SIZE, GL_FLOAT, false, VERTEX_SIZE_BYTES, (POS_SIZE + COLOR_SIZE + UV_SIZE) * Float.BYTES);
+        glEnableVertexAttribArray(3);
+
+        glBindVertexArray(0);
+    }
+
+    /**
+     * Start submitting sprites for a new frame.
+     * */
+    public void begin() {
+        if (drawing) {
+            throw new IllegalStateException("SpriteBatch.end() must be called before begin().");
+        }
+        drawing = true;
+        count = 0;
+        drawCalls = 0;
+    }
+
+    /**
+     * Submit an untextured sprite.
+     * */
+    public void draw(Shader shader, float x, float y, float width, float height, float r, float g, float b, float a) {
+        draw(shader, 0, x, y, 0.0f, width, height, r, g, b, a, 0.0f, 0.0f, 1.0f, 1.0f);
+    }
+
+    /**
+     * Submit a sprite.
+     * @param shader        the shader used to draw it, with the spriteShader.glsl layout.
+     * @param textureID     the OpenGL texture bound to unit 0, 0 for none.
+     * @param x             left position.
+     * @param y             bottom position.
+     * @param z             depth.
+     * @param width         width of the quad.
+     * @param height        height of the quad.
+     * @param r             red tint.
+     * @param g             green tint.
+     * @param b             blue tint.
+     * @param a             alpha tint.
+     * @param u0            left texture coordinate.
+     * @param v0            bottom texture coordinate.
+     * @param u1            right texture coordinate.
+     * @param v1            top texture coordinate.
+     * */
+    public void draw(Shader shader, int textureID, float x, float y, float z, float width, float height,
+                     float r, float g, float b, float a, float u0, float v0, float u1, float v1) {
+        if (!drawing) {
+            throw new IllegalStateException("SpriteBatch.begin() must be called before draw().");
+        }
+        if (count == keys.length) grow();
+
+        keys[count] = ((long)shaderSlot(shader) << 32) | (textureID & 0xFFFFFFFFL);
+        order[count] = count;
+
+        int i = count * SPRITE_SIZE;
+        sprites[i] = x;
+        sprites[i + 1] = y;
+        sprites[i + 2] = z;
+        sprites[i + 3] = width;
+        sprites[i + 4] = height;
+        sprites[i + 5] = r;
+        sprites[i + 6] = g;
+        sprites[i + 7] = b;
+        sprites[i + 8] = a;
+        sprites[i + 9] = u0;
+        sprites[i + 10] = v0;
+        sprites[i + 11] = u1;
+        sprites[i + 12] = v1;
+        count++;
+    }
+
+    /**
+     * Sort the submitted sprites by state and draw them.
+     * */
+    public void end() {
+        if (!drawing) {
+            throw new IllegalStateException("SpriteBatch.begin() must be called before end().");
+        }
+        drawing = false;
+        if (count == 0) return;
+
+        RadixSort.sort(keys, order, tmpKeys, tmpOrder, count);
+
+        glBindVertexArray(VAOID);
+        glBindBuffer(GL_ARRAY_BUFFER, VBOID);
+
+        int quads = 0;
+        int runs = 0;
+        for (int n = 0; n < count; n++) {
+            if (quads == maxQuads) {
+                flush(quads, runs);
+                quads = 0;
+                runs = 0;
+            }
+            if (runs == 0 || keys[n] != runKeys[runs - 1]) { // State changed, start a new run
+                runKeys[runs] = keys[n];
+                runFirst[runs] = quads;
+                runs++;
+            }
+            putQuad(order[n], keys[n]);
+            quads++;
+        }
+        flush(quads, runs);
+
+        glBindVertexArray(0);
+        glUseProgram(0);
+    }
+
+    /**
+     * Upload the written quads and draw each run of quads with the same state.
+     * */
+    private void flush(int quads, int runs) {
+        vertexes.flip();
+        glBufferData(GL_ARRAY_BUFFER, (long)vertexes.capacity() * Float.BYTES, GL_STREAM_DRAW); // Orphan the
+        // old storage, so the driver does not wait for the previous draw to finish
+        glBufferSubData(GL_ARRAY_BUFFER, 0, vertexes);
+        vertexes.clear();
+
+        int currentShader = -1;
+        int currentTexture = -1;
+        for (int r = 0; r < runs; r++) {
+            int shader = (int)(runKeys[r] >>> 32);
+            int texture = (int)runKeys[r];
+            if (shader != currentShader) {
+                shaders[shader].use();
+                currentShader = shader;
+            }
+            if (texture != currentTexture) {
+                glActiveTexture(GL_TEXTURE0);
+                glBindTexture(GL_TEXTURE_2D, texture);
+                currentTexture = texture;
+            }
+
+            int first = runFirst[r];
+            int last = (r + 1 < runs) ? runFirst[r + 1] : quads;
+            glDrawElements(GL_TRIANGLES, (last - first) * 6, GL_UNSIGNED_INT, (long)first * 6 * Integer.BYTES);
+            drawCalls++;
+        }
+    }
+
+    /**
+     * Write the four vertexes of a submitted sprite.
+     * */
+    private void putQuad(int sprite, long key) {
+        int i = sprite * SPRITE_SIZE;
+        float x = sprites[i], y = sprites[i + 1], z = sprites[i + 2];
+        float right = x + sprites[i + 3], top = y + sprites[i + 4];
+        float r = sprites[i + 5], g = sprites[i + 6], b = sprites[i + 7], a = sprites[i + 8];
+        float u0 = sprites[i + 9], v0 = sprites[i + 10], u1 = sprites[i + 11], v1 = sprites[i + 12];
+        float slot = ((int)key == 0) ? -1.0f : 0.0f;
+
+        vertexes.put(right).put(top).put(z).put(r).put(g).put(b).put(a).put(u1).put(v1).put(slot); // Top right
+        vertexes.put(right).put(y).put(z).put(r).put(g).put(b).put(a).put(u1).put(v0).put(slot); // Bottom right
+        vertexes.put(x).put(y).put(z).put(r).put(g).put(b).put(a).put(u0).put(v0).put(slot); // Bottom left
+        vertexes.put(x).put(top).put(z).put(r).put(g).put(b).put(a).put(u0).put(v1).put(slot); // Top left
+    }
+
+    /**
+     * Returns the index of a shader on {@link #shaders}, adding it if needed.
+     * */
+    private int shaderSlot(Shader shader) {
+        for (int i = 0; i < shaderCount; i++) {
+            if (shaders[i] == shader) return i;
+        }
+        if (shaderCount == shaders.length) {
+            shaders = Arrays.copyOf(shaders, shaders.length * 2);
+        }
+        shaders[shaderCount] = shader;
+        return shaderCount++;
+    }
+
+    /**
+     * Double the amount of sprites that can be submitted per frame.
+     * */
+    private void grow() {
+        int capacity = keys.length * 2;
+        sprites = Arrays.copyOf(sprites, capacity * SPRITE_SIZE);
+        keys = Arrays.copyOf(keys, capacity);
+        order = Arrays.copyOf(order, capacity);
+        tmpKeys = new long[capacity];
+        tmpOrder = new int[capacity];
+    }
+
+    /**
+     * Returns how many sprites were submitted on the current (or last) frame.
+     * */
+    public int getSpriteCount() {
+        return count;
+    }
+
+    /**
+     * Returns how many draw calls were issued on the current (or last) frame.
+     * */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    /**
+     * Delete the OpenGL objects of the batch.
+     * */
+    public void delete() {
+        glDeleteBuffers(VBOID);
+        glDeleteBuffers(EBOID);
+        glDeleteVertexArrays(VAOID);
+    }
+}
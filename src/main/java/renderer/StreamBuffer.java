@@ -0,0 +1,170 @@
+/**
+ * Stream buffer class. It is a ring of three segments of one OpenGL buffer for
+ * data rewritten every frame: each frame writes its own segment while the GPU
+ * may still read the ones of the two previous frames. A fence is placed after
+ * the draws of each frame and only waited on when the ring comes back to its
+ * segment, so writes are mapped unsynchronized and never block on the driver.
+ * Without fences (OpenGL below 3.2 and no ARB_sync) the buffer storage is
+ * orphaned instead every time the ring wraps.
+ * Created by {@link BufferManager#createStream(int, int)}, which also advances
+ * it every frame.
+ * */
+
+package renderer;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.GL_COPY_WRITE_BUFFER;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
+import static org.lwjgl.system.MemoryUtil.memAddress;
+import static org.lwjgl.system.MemoryUtil.memCopy;
+
+public class StreamBuffer {
+    public static final int SEGMENTS = 3;
+    private static final long WAIT_TIMEOUT = 1_000_000L; // 1 ms per wait, repeated until the fence is signaled
+
+    private final BufferManager manager;
+    private final int target;
+    private final int segmentSize;
+    private int buffer;
+    private boolean fenced; // Fences supported, orphaning otherwise
+
+    /**
+     * Stores the fence placed after the last frame that wrote each segment: {@link #fences}
+     * */
+    private final long[] fences = new long[SEGMENTS];
+
+    /**
+     * Stores the segment of the current frame and the bytes written on it:
+     * {@link #segment}, {@link #cursor}
+     * */
+    private int segment = SEGMENTS - 1; // The first frame starts on segment 0
+    private int cursor;
+    private int lastUsed; // Bytes written by the last finished frame
+
+    StreamBuffer(BufferManager manager, int target, int segmentSize) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Stream segment size must be positive.");
+        }
+        this.manager = manager;
+        this.target = target;
+        this.segmentSize = segmentSize;
+    }
+
+    void create() {
+        GLCapabilities capabilities = GL.getCapabilities();
+        fenced = capabilities.OpenGL32 || capabilities.GL_ARB_sync;
+        buffer = glGenBuffers();
+        glBindBuffer(GL_COPY_WRITE_BUFFER, buffer);
+        glBufferData(GL_COPY_WRITE_BUFFER, (long)segmentSize * SEGMENTS, GL_STREAM_DRAW);
+    }
+
+    void beginFrame() {
+        segment = (segment + 1) % SEGMENTS;
+        cursor = 0;
+        if (fenced) {
+            waitFence(segment);
+        } else if (segment == 0) { // Wrapped, give the driver new storage instead of waiting on the old one
+            glBindBuffer(GL_COPY_WRITE_BUFFER, buffer);
+            glBufferData(GL_COPY_WRITE_BUFFER, (long)segmentSize * SEGMENTS, GL_STREAM_DRAW);
+        }
+    }
+
+    void endFrame() {
+        lastUsed = cursor;
+        if (fenced) fences[segment] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+    }
+
+    /**
+     * Wait until the GPU finished reading a segment, counting a stall if it had not.
+     * */
+    private void waitFence(int index) {
+        long fence = fences[index];
+        if (fence == NULL) return;
+        fences[index] = NULL;
+
+        int status = glClientWaitSync(fence, 0, 0L);
+        if (status == GL_TIMEOUT_EXPIRED) {
+            manager.stalls++;
+            do {
+                status = glClientWaitSync(fence, GL_SYNC_FLUSH_COMMANDS_BIT, WAIT_TIMEOUT);
+            } while (status == GL_TIMEOUT_EXPIRED);
+        }
+        if (status == GL_WAIT_FAILED) {
+            System.err.println("ERROR: Waiting on a stream buffer fence failed.");
+        }
+        glDeleteSync(fence);
+    }
+
+    /**
+     * Write data on the segment of the current frame.
+     * @return the byte offset of the data in the buffer, to draw from it, or -1
+     *         if it did not fit in what is left of the segment.
+     * */
+    public long write(ByteBuffer data) {
+        return write(memAddress(data), data.remaining());
+    }
+
+    public long write(FloatBuffer data) {
+        return write(memAddress(data), data.remaining() * Float.BYTES);
+    }
+
+    private long write(long address, int bytes) {
+        if (bytes > segmentSize - cursor) {
+            manager.overflows++;
+            return -1L;
+        }
+        long offset = (long)segment * segmentSize + cursor;
+
+        glBindBuffer(GL_COPY_WRITE_BUFFER, buffer);
+        ByteBuffer mapped = glMapBufferRange(GL_COPY_WRITE_BUFFER, offset, bytes,
+                GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_RANGE_BIT | GL_MAP_UNSYNCHRONIZED_BIT);
+        if (mapped == null) {
+            System.err.println("ERROR: Could not map the stream buffer.");
+            return -1L;
+        }
+        memCopy(address, memAddress(mapped), bytes);
+        glUnmapBuffer(GL_COPY_WRITE_BUFFER);
+
+        cursor = Math.min(segmentSize, BufferManager.align(cursor + bytes));
+        manager.bytesUploaded += bytes;
+        return offset;
+    }
+
+    /**
+     * Returns the OpenGL buffer, to bind it (e.g. on a vertex array) for the draws.
+     * */
+    public int getBuffer() {
+        return buffer;
+    }
+
+    public int getTarget() {
+        return target;
+    }
+
+    /**
+     * Returns the bytes that can be written per frame.
+     * */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    int getLastUsed() {
+        return lastUsed;
+    }
+
+    void delete() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            if (fences[i] != NULL) glDeleteSync(fences[i]);
+            fences[i] = NULL;
+        }
+        glDeleteBuffers(buffer);
+    }
+}
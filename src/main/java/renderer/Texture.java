@@ -0,0 +1,90 @@
+/**
+ * Texture class. It holds an OpenGL 2D texture created from RGBA pixels.
+ * Textures use nearest filtering by default, keeping pixel art sharp.
+ * */
+
+package renderer;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+
+public class Texture {
+
+    /**
+     * Stores the OpenGL texture identifier: {@link #textureID}
+     * */
+    private int textureID;
+
+    /**
+     * Stores the width of the texture in pixels: {@link #width}
+     * */
+    private final int width;
+
+    /**
+     * Stores the height of the texture in pixels: {@link #height}
+     * */
+    private final int height;
+
+    /**
+     * Constructor for the Texture. Must be called on the OpenGL thread.
+     * @param width     width in pixels.
+     * @param height    height in pixels.
+     * @param pixels    RGBA pixels, 4 bytes per pixel, rows from top to bottom.
+     * */
+    public Texture(int width, int height, ByteBuffer pixels) {
+        this.width = width;
+        this.height = height;
+
+        textureID = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, textureID);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA8, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, pixels);
+        glBindTexture(GL_TEXTURE_2D, 0);
+    }
+
+    /**
+     * Bind the texture to a texture unit.
+     * @param unit      the texture unit, starting at 0.
+     * */
+    public void bind(int unit) {
+        glActiveTexture(GL_TEXTURE0 + unit);
+        glBindTexture(GL_TEXTURE_2D, textureID);
+    }
+
+    /**
+     * Returns the OpenGL texture identifier.
+     * */
+    public int getID() {
+        return textureID;
+    }
+
+    /**
+     * Returns the width of the texture in pixels.
+     * */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the texture in pixels.
+     * */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Delete the OpenGL texture.
+     * */
+    public void delete() {
+        glDeleteTextures(textureID);
+        textureID = 0;
+    }
+}
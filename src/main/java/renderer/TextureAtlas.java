@@ -0,0 +1,417 @@
+/**
+ * Texture atlas class. It packs many images into a single texture, so sprites
+ * using different images can still be drawn in one batch. Each image becomes a
+ * named region with its texture coordinates on the atlas.
+ * Images are decoded by stb_image straight into native memory and copied row by
+ * row into the (native) atlas pixels, never going through the Java heap. The
+ * packed atlas is cached on disk (pixels and an index of the regions) and, on
+ * the next runs, the pixels are memory mapped instead of packed again. The cache
+ * is only used while the source images are unchanged.
+ * */
+
+package renderer;
+
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import utils.StringIntMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.lwjgl.stb.STBImage.stbi_failure_reason;
+import static org.lwjgl.stb.STBImage.stbi_image_free;
+import static org.lwjgl.stb.STBImage.stbi_load;
+
+public class TextureAtlas {
+    public static final Path DEFAULT_CACHE = Paths.get(".cache", "atlases");
+
+    private static final int MAGIC = 0x41454753; // "SGEA"
+    private static final int VERSION = 1;
+    private static final int PADDING = 1; // Empty pixels between images, avoids bleeding with linear filtering
+    private static final int MAX_SIZE = 8192;
+    private static final String[] EXTENSIONS = {".png", ".jpg", ".jpeg", ".bmp", ".tga", ".gif"};
+
+    private final int width;
+    private final int height;
+
+    /**
+     * Stores the name of each region, the image file name: {@link #names}
+     * */
+    private final String[] names;
+
+    /**
+     * Stores x, y, width and height (in pixels) of each region: {@link #rects}
+     * */
+    private final int[] rects;
+
+    /**
+     * Stores u0, v0 (bottom left) and u1, v1 (top right) of each region: {@link #uvs}
+     * */
+    private final float[] uvs;
+
+    /**
+     * Stores the index of each region by name: {@link #indexes}
+     * */
+    private final StringIntMap indexes;
+
+    /**
+     * Stores the atlas pixels until the texture is created, either allocated
+     * natively or memory mapped from the cache: {@link #pixels}
+     * */
+    private ByteBuffer pixels;
+
+    /**
+     * Stores if {@link #pixels} was allocated and must be freed: {@link #ownsPixels}
+     * */
+    private boolean ownsPixels;
+
+    /**
+     * Stores the atlas texture, null until {@link #create()}: {@link #texture}
+     * */
+    private Texture texture;
+
+    private TextureAtlas(int width, int height, String[] names, int[] rects, ByteBuffer pixels, boolean ownsPixels) {
+        this.width = width;
+        this.height = height;
+        this.names = names;
+        this.rects = rects;
+        this.pixels = pixels;
+        this.ownsPixels = ownsPixels;
+        this.uvs = new float[names.length * 4];
+        this.indexes = new StringIntMap(names.length);
+        for (int i = 0; i < names.length; i++) {
+            int x = rects[i * 4], y = rects[i * 4 + 1], w = rects[i * 4 + 2], h = rects[i * 4 + 3];
+            // Image rows go from top to bottom, so the bottom of the image has the biggest v
+            uvs[i * 4] = (float)x / width;
+            uvs[i * 4 + 1] = (float)(y + h) / height;
+            uvs[i * 4 + 2] = (float)(x + w) / width;
+            uvs[i * 4 + 3] = (float)y / height;
+            indexes.put(names[i], i);
+        }
+    }
+
+    /**
+     * Load the atlas of every image in a directory, from the cache if it is up to
+     * date, otherwise packing the images (and caching the result). Does not use
+     * OpenGL, so it can run on a worker thread; call {@link #create()} after.
+     * @param directory         directory with the images.
+     * @param cacheDirectory    directory for the cached atlases.
+     * */
+    public static TextureAtlas load(Path directory, Path cacheDirectory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(TextureAtlas::isImage).sorted().collect(Collectors.toList());
+        }
+        if (files.isEmpty()) {
+            throw new IOException("No images found in '" + directory + "'.");
+        }
+
+        long signature = signature(files);
+        Path absolute = directory.toAbsolutePath().normalize();
+        String cacheName = absolute.getFileName() + "-" + Integer.toHexString(absolute.toString().hashCode());
+        Path indexFile = cacheDirectory.resolve(cacheName + ".index");
+        Path pixelsFile = cacheDirectory.resolve(cacheName + ".atlas");
+
+        TextureAtlas atlas = readCache(indexFile, pixelsFile, signature);
+        if (atlas == null) {
+            atlas = pack(files);
+            atlas.writeCache(indexFile, pixelsFile, signature);
+        }
+        return atlas;
+    }
+
+    private static boolean isImage(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (String extension : EXTENSIONS) {
+            if (name.endsWith(extension)) return Files.isRegularFile(file);
+        }
+        return false;
+    }
+
+    /**
+     * Returns a checksum of the names and content of the images, used to know if
+     * the cached atlas is still up to date.
+     * */
+    private static long signature(List<Path> files) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        for (Path file : files) {
+            crc.update(file.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    crc.update(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        return (crc.getValue() << 16) ^ ((long)files.size() << 8) ^ VERSION ^ PADDING;
+    }
+
+    /**
+     * Decode and pack the images into a new atlas.
+     * */
+    private static TextureAtlas pack(List<Path> files) throws IOException {
+        int count = files.size();
+        ByteBuffer[] images = new ByteBuffer[count];
+        int[] sizes = new int[count * 2];
+        try {
+            try (MemoryStack stack = MemoryStack.stackPush()) {
+                IntBuffer w = stack.mallocInt(1);
+                IntBuffer h = stack.mallocInt(1);
+                IntBuffer channels = stack.mallocInt(1);
+                for (int i = 0; i < count; i++) {
+                    images[i] = stbi_load(files.get(i).toString(), w, h, channels, 4); // Always RGBA
+                    if (images[i] == null) {
+                        throw new IOException("Could not decode image '" + files.get(i) + "': " + stbi_failure_reason());
+                    }
+                    sizes[i * 2] = w.get(0);
+                    sizes[i * 2 + 1] = h.get(0);
+                }
+            }
+
+            // Tallest images first, keeping the file order between images with the same height
+            long[] order = new long[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = ((long)(Integer.MAX_VALUE - sizes[i * 2 + 1]) << 32) | i;
+            }
+            Arrays.sort(order);
+
+            // Grow the atlas until every image fits
+            int[] rects = new int[count * 4];
+            int atlasWidth = 256;
+            int atlasHeight = 256;
+            while (!place(order, sizes, rects, atlasWidth, atlasHeight)) {
+                if (atlasWidth <= atlasHeight) {
+                    atlasWidth *= 2;
+                } else {
+                    atlasHeight *= 2;
+                }
+                if (atlasWidth > MAX_SIZE || atlasHeight > MAX_SIZE) {
+                    throw new IOException("Images do not fit in a " + MAX_SIZE + "x" + MAX_SIZE + " atlas.");
+                }
+            }
+
+            // Copy each image row by row into the atlas, all in native memory
+            ByteBuffer atlasPixels = MemoryUtil.memCalloc(atlasWidth * atlasHeight * 4);
+            long atlasAddress = MemoryUtil.memAddress(atlasPixels);
+            for (int i = 0; i < count; i++) {
+                long imageAddress = MemoryUtil.memAddress(images[i]);
+                int x = rects[i * 4], y = rects[i * 4 + 1], w = rects[i * 4 + 2], h = rects[i * 4 + 3];
+                for (int row = 0; row < h; row++) {
+                    MemoryUtil.memCopy(imageAddress + (long)row * w * 4,
+                            atlasAddress + ((long)(y + row) * atlasWidth + x) * 4, (long)w * 4);
+                }
+            }
+
+            String[] names = new String[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = files.get(i).getFileName().toString();
+            }
+            return new TextureAtlas(atlasWidth, atlasHeight, names, rects, atlasPixels, true);
+        } finally {
+            for (ByteBuffer image : images) {
+                if (image != null) stbi_image_free(image);
+            }
+        }
+    }
+
+    /**
+     * Place every image on an atlas of the given size.
+     * @return false if they do not fit.
+     * */
+    private static boolean place(long[] order, int[] sizes, int[] rects, int atlasWidth, int atlasHeight) {
+        AtlasPacker packer = new AtlasPacker(atlasWidth, atlasHeight);
+        int[] position = new int[2];
+        for (long key : order) {
+            int i = (int)key;
+            if (!packer.pack(sizes[i * 2] + PADDING, sizes[i * 2 + 1] + PADDING, position)) return false;
+            rects[i * 4] = position[0];
+            rects[i * 4 + 1] = position[1];
+            rects[i * 4 + 2] = sizes[i * 2];
+            rects[i * 4 + 3] = sizes[i * 2 + 1];
+        }
+        return true;
+    }
+
+    /**
+     * Load an atlas from the cache, with its pixels memory mapped.
+     * @return the atlas, or null if there is no cache or it is out of date.
+     * */
+    private static TextureAtlas readCache(Path indexFile, Path pixelsFile, long signature) {
+        if (!Files.isRegularFile(indexFile) || !Files.isRegularFile(pixelsFile)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != signature) return null;
+            int atlasWidth = in.readInt();
+            int atlasHeight = in.readInt();
+            int count = in.readInt();
+            String[] names = new String[count];
+            int[] rects = new int[count * 4];
+            for (int i = 0; i < count; i++) {
+                names[i] = in.readUTF();
+                for (int j = 0; j < 4; j++) {
+                    rects[i * 4 + j] = in.readInt();
+                }
+            }
+
+            long size = (long)atlasWidth * atlasHeight * 4;
+            try (FileChannel channel = FileChannel.open(pixelsFile, StandardOpenOption.READ)) {
+                if (channel.size() != size) return null;
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size); // Stays valid after closing
+                return new TextureAtlas(atlasWidth, atlasHeight, names, rects, mapped, false);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read atlas cache '" + indexFile + "', packing again.");
+            return null;
+        }
+    }
+
+    /**
+     * Write the atlas to the cache. Failures are reported but not fatal.
+     * */
+    private void writeCache(Path indexFile, Path pixelsFile, long signature) {
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path tmpPixels = pixelsFile.resolveSibling(pixelsFile.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmpPixels, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer content = pixels.duplicate();
+                while (content.hasRemaining()) {
+                    channel.write(content);
+                }
+            }
+            Path tmpIndex = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpIndex)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(signature);
+                out.writeInt(width);
+                out.writeInt(height);
+                out.writeInt(names.length);
+                for (int i = 0; i < names.length; i++) {
+                    out.writeUTF(names[i]);
+                    for (int j = 0; j < 4; j++) {
+                        out.writeInt(rects[i * 4 + j]);
+                    }
+                }
+            }
+            // Index last, so a complete index always points to complete pixels
+            Files.move(tmpPixels, pixelsFile, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmpIndex, indexFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Could not write atlas cache '" + indexFile + "'.");
+        }
+    }
+
+    /**
+     * Create the atlas texture and release the pixels. Must be called on the OpenGL thread.
+     * */
+    public void create() {
+        texture = new Texture(width, height, pixels);
+        freePixels();
+    }
+
+    /**
+     * Release the atlas pixels (without creating the texture).
+     * */
+    public void freePixels() {
+        if (pixels != null && ownsPixels) {
+            MemoryUtil.memFree(pixels);
+        }
+        pixels = null; // A mapped buffer is unmapped once collected
+        ownsPixels = false;
+    }
+
+    /**
+     * Returns the atlas texture, null before {@link #create()}.
+     * */
+    public Texture getTexture() {
+        return texture;
+    }
+
+    /**
+     * Returns the index of a region by the file name of its image, -1 if not found.
+     * */
+    public int getRegionIndex(String name) {
+        return indexes.get(name, -1);
+    }
+
+    /**
+     * Returns how many regions (images) the atlas has.
+     * */
+    public int getRegionCount() {
+        return names.length;
+    }
+
+    /**
+     * Returns the name (image file name) of a region.
+     * */
+    public String getRegionName(int region) {
+        return names[region];
+    }
+
+    public float getU0(int region) {
+        return uvs[region * 4];
+    }
+
+    public float getV0(int region) {
+        return uvs[region * 4 + 1];
+    }
+
+    public float getU1(int region) {
+        return uvs[region * 4 + 2];
+    }
+
+    public float getV1(int region) {
+        return uvs[region * 4 + 3];
+    }
+
+    /**
+     * Returns the width of a region in pixels.
+     * */
+    public int getRegionWidth(int region) {
+        return rects[region * 4 + 2];
+    }
+
+    /**
+     * Returns the height of a region in pixels.
+     * */
+    public int getRegionHeight(int region) {
+        return rects[region * 4 + 3];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Delete the atlas texture.
+     * */
+    public void delete() {
+        freePixels();
+        if (texture != null) texture.delete();
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Allocation sampler class. It reads how many bytes some threads allocated on
+ * the heap since the previous sample, using the per thread counters of the JVM
+ * (com.sun.management.ThreadMXBean). Reading a counter allocates a few bytes
+ * on the sampling thread, which is measured once and subtracted.
+ * */
+
+package sge;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+public class AllocationSampler {
+    private final com.sun.management.ThreadMXBean threads;
+
+    /**
+     * Stores the sampled threads and their counters on the last sample:
+     * {@link #ids}, {@link #last}
+     * */
+    private long[] ids = new long[4];
+    private long[] last = new long[4];
+    private int count;
+
+    /**
+     * Stores the bytes allocated by reading one counter: {@link #overhead}
+     * */
+    private long overhead;
+
+    public AllocationSampler() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean supported = null;
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            supported = (com.sun.management.ThreadMXBean)bean;
+            if (!supported.isThreadAllocatedMemorySupported()) {
+                supported = null;
+            } else if (!supported.isThreadAllocatedMemoryEnabled()) {
+                supported.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+        threads = supported;
+        if (threads != null) {
+            long id = Thread.currentThread().getId();
+            threads.getThreadAllocatedBytes(id); // Warm up
+            long first = threads.getThreadAllocatedBytes(id);
+            overhead = Math.max(0L, threads.getThreadAllocatedBytes(id) - first);
+        }
+    }
+
+    /**
+     * Returns false if the JVM can not measure the allocations of a thread.
+     * */
+    public boolean isSupported() {
+        return threads != null;
+    }
+
+    /**
+     * Start sampling a thread, from its current allocations (or from its first
+     * sample, if it was not started yet).
+     * */
+    public void track(Thread thread) {
+        long id = thread.getId();
+        for (int i = 0; i < count; i++) {
+            if (ids[i] == id) return;
+        }
+        if (count == ids.length) {
+            ids = Arrays.copyOf(ids, count * 2);
+            last = Arrays.copyOf(last, count * 2);
+        }
+        ids[count] = id;
+        last[count] = (threads != null) ? threads.getThreadAllocatedBytes(id) : 0L;
+        count++;
+    }
+
+    /**
+     * Stop sampling a thread.
+     * */
+    public void untrack(Thread thread) {
+        long id = thread.getId();
+        for (int i = 0; i < count; i++) {
+            if (ids[i] == id) {
+                count--;
+                ids[i] = ids[count];
+                last[i] = last[count];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the bytes allocated by the tracked threads since the previous
+     * sample (or since they were tracked), 0 if unsupported.
+     * */
+    public long sample() {
+        if (threads == null) return 0L;
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            long allocated = threads.getThreadAllocatedBytes(ids[i]);
+            if (allocated < 0) continue; // Thread not started or finished
+            if (last[i] >= 0) total += allocated - last[i]; // Otherwise only take the baseline
+            last[i] = allocated;
+        }
+        return Math.max(0L, total - overhead * count); // The reads allocate on the sampling thread
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Archetype class. It stores every entity with exactly the same set of
+ * components, as struct of arrays: each field of each component is its own
+ * primitive array and row i of every array belongs to entity i of the
+ * archetype. Systems iterate these arrays directly, which is cache friendly
+ * and allocates nothing. Rows are kept packed by swap-remove, so entities
+ * change rows when others are removed.
+ * */
+
+package sge;
+
+import java.util.Arrays;
+
+public final class Archetype {
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Stores the components of the archetype, one bit per component id: {@link #mask}
+     * */
+    private final long mask;
+
+    /**
+     * Stores the columns of each component, by component id and field, null
+     * for components not in the archetype: {@link #floats}, {@link #ints}
+     * */
+    private final float[][][] floats;
+    private final int[][][] ints;
+
+    /**
+     * Stores the entity of each row: {@link #entities}
+     * */
+    private int[] entities;
+    private int size;
+    private int capacity;
+
+    /**
+     * Stores the archetype reached by adding or removing each component,
+     * filled on first use: {@link #addEdges}, {@link #removeEdges}
+     * */
+    final Archetype[] addEdges = new Archetype[World.MAX_COMPONENTS];
+    final Archetype[] removeEdges = new Archetype[World.MAX_COMPONENTS];
+
+    Archetype(long mask, ComponentType[] types) {
+        this.mask = mask;
+        capacity = INITIAL_CAPACITY;
+        entities = new int[capacity];
+        floats = new float[World.MAX_COMPONENTS][][];
+        ints = new int[World.MAX_COMPONENTS][][];
+        for (int id = 0; id < World.MAX_COMPONENTS; id++) {
+            if ((mask & (1L << id)) == 0) continue;
+            floats[id] = new float[types[id].getFloatFields()][capacity];
+            ints[id] = new int[types[id].getIntFields()][capacity];
+        }
+    }
+
+    /**
+     * Returns the column of a float field, one value per row. Only valid until
+     * entities are added to the archetype (the columns may be reallocated).
+     * @param type      component, must be in the archetype.
+     * @param field     index of the float field of the component.
+     * */
+    public float[] getFloats(ComponentType type, int field) {
+        return floats[type.getId()][field];
+    }
+
+    /**
+     * Returns the column of an int field, one value per row. Only valid until
+     * entities are added to the archetype (the columns may be reallocated).
+     * @param type      component, must be in the archetype.
+     * @param field     index of the int field of the component.
+     * */
+    public int[] getInts(ComponentType type, int field) {
+        return ints[type.getId()][field];
+    }
+
+    /**
+     * Returns the entity of each row, only the first {@link #size()} are valid.
+     * */
+    public int[] getEntities() {
+        return entities;
+    }
+
+    /**
+     * Returns how many entities the archetype has.
+     * */
+    public int size() {
+        return size;
+    }
+
+    public long getMask() {
+        return mask;
+    }
+
+    public boolean has(ComponentType type) {
+        return (mask & type.getMask()) != 0;
+    }
+
+    /**
+     * Add an entity at the end, with its components zeroed.
+     * @return the row of the entity.
+     * */
+    int add(int entity) {
+        if (size == capacity) grow();
+        int row = size++;
+        entities[row] = entity;
+        clearRow(row, mask);
+        return row;
+    }
+
+    /**
+     * Remove a row moving the last row into it.
+     * @return the entity moved into the row, or -1 if the removed row was the last one.
+     * */
+    int swapRemove(int row) {
+        int last = --size;
+        if (row == last) return -1;
+        int moved = entities[last];
+        entities[row] = moved;
+        for (int id = 0; id < World.MAX_COMPONENTS; id++) {
+            if (floats[id] == null) continue;
+            for (float[] column : floats[id]) column[row] = column[last];
+            for (int[] column : ints[id]) column[row] = column[last];
+        }
+        return moved;
+    }
+
+    /**
+     * Copy the components of a row shared with another archetype into a row of it.
+     * */
+    void copyRow(int row, Archetype to, int toRow) {
+        long shared = mask & to.mask;
+        while (shared != 0) {
+            int id = Long.numberOfTrailingZeros(shared);
+            shared &= shared - 1;
+            float[][] fromFloats = floats[id], toFloats = to.floats[id];
+            for (int f = 0; f < fromFloats.length; f++) toFloats[f][toRow] = fromFloats[f][row];
+            int[][] fromInts = ints[id], toInts = to.ints[id];
+            for (int f = 0; f < fromInts.length; f++) toInts[f][toRow] = fromInts[f][row];
+        }
+    }
+
+    private void clearRow(int row, long components) {
+        while (components != 0) {
+            int id = Long.numberOfTrailingZeros(components);
+            components &= components - 1;
+            for (float[] column : floats[id]) column[row] = 0f;
+            for (int[] column : ints[id]) column[row] = 0;
+        }
+    }
+
+    private void grow() {
+        capacity *= 2;
+        entities = Arrays.copyOf(entities, capacity);
+        for (int id = 0; id < World.MAX_COMPONENTS; id++) {
+            if (floats[id] == null) continue;
+            for (int f = 0; f < floats[id].length; f++) floats[id][f] = Arrays.copyOf(floats[id][f], capacity);
+            for (int f = 0; f < ints[id].length; f++) ints[id][f] = Arrays.copyOf(ints[id][f], capacity);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ * Chunk action interface. It processes a range of rows of an {@link Archetype},
+ * see {@link EntitySystem#forEachChunk(Query, int, ChunkAction)}. Keep the
+ * action in a field of the system instead of creating a lambda every update,
+ * so running it allocates nothing.
+ * */
+
+package sge;
+
+@FunctionalInterface
+public interface ChunkAction {
+
+    /**
+     * Process the rows from start (inclusive) to end (exclusive). May run on
+     * several threads at the same time for different ranges.
+     * @param archetype     archetype of the rows.
+     * @param start         first row.
+     * @param end           row after the last one.
+     * */
+    void run(Archetype archetype, int start, int end);
+}
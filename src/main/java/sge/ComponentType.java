@@ -0,0 +1,58 @@
+/**
+ * Component type class. It describes a kind of component of the {@link World}:
+ * how many float and int fields it has. Component data is not stored in objects,
+ * each field is a primitive column of an {@link Archetype}. Created with
+ * {@link World#register(String, int, int)}.
+ * */
+
+package sge;
+
+public final class ComponentType {
+
+    /**
+     * Stores the id of the component, its bit in the archetype masks: {@link #id}
+     * */
+    private final int id;
+    private final String name;
+
+    /**
+     * Stores how many float and int fields the component has: {@link #floatFields}, {@link #intFields}
+     * */
+    private final int floatFields;
+    private final int intFields;
+
+    ComponentType(int id, String name, int floatFields, int intFields) {
+        this.id = id;
+        this.name = name;
+        this.floatFields = floatFields;
+        this.intFields = intFields;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the bit of this component in the archetype masks.
+     * */
+    public long getMask() {
+        return 1L << id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getFloatFields() {
+        return floatFields;
+    }
+
+    public int getIntFields() {
+        return intFields;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Engine context class. It holds the state of one running engine that used to
+ * be global: its clock ({@link Time}), its input (listeners, event queue and
+ * snapshot) and its active scene. The context is bound to every thread running
+ * the engine, so the static accessors (e.g. {@link KeyListener#isKeyHeld(int)},
+ * {@link Time#getDeltaTime()}) reach the state of their own engine through a
+ * thread local instead of a synchronized singleton, and several engines (e.g.
+ * headless simulations) can run in parallel in the same JVM, one per thread.
+ * When the scene is updated on its own thread, that thread binds a Time of its
+ * own over the one of the context, advanced by the fixed tick.
+ * */
+
+package sge;
+
+import input.InputEventQueue;
+import input.InputSnapshot;
+import input.KeyListener;
+import input.MouseListener;
+import utils.Time;
+
+public final class EngineContext {
+
+    /**
+     * Stores the context bound to each thread, if any: {@link #CURRENT}
+     * */
+    private static final ThreadLocal<EngineContext> CURRENT = new ThreadLocal<>();
+
+    private final EngineCore engine;
+    private final Time time = new Time();
+    private final KeyListener keys = new KeyListener();
+    private final MouseListener mouse = new MouseListener();
+    private final InputEventQueue inputQueue = new InputEventQueue(1024); // GLFW callbacks to the updating thread
+    private final InputSnapshot input = new InputSnapshot();
+    private volatile Scene scene;
+
+    EngineContext(EngineCore engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Returns the context bound to the calling thread, null if none.
+     * */
+    public static EngineContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Bind this context (its time and input) to the calling thread.
+     * */
+    public void bind() {
+        CURRENT.set(this);
+        Time.bind(time);
+        KeyListener.bind(keys);
+        MouseListener.bind(mouse);
+    }
+
+    /**
+     * Unbind the context of the calling thread, if any.
+     * */
+    public static void unbind() {
+        CURRENT.remove();
+        Time.bind(null);
+        KeyListener.bind(null);
+        MouseListener.bind(null);
+    }
+
+    public EngineCore getEngine() {
+        return engine;
+    }
+
+    public Time getTime() {
+        return time;
+    }
+
+    public KeyListener getKeys() {
+        return keys;
+    }
+
+    public MouseListener getMouse() {
+        return mouse;
+    }
+
+    public InputEventQueue getInputQueue() {
+        return inputQueue;
+    }
+
+    /**
+     * Returns the input of the current frame (or tick). Only valid on the thread updating the scene.
+     * */
+    public InputSnapshot getInput() {
+        return input;
+    }
+
+    public Scene getScene() {
+        return scene;
+    }
+
+    void setScene(Scene scene) {
+        this.scene = scene;
+    }
+}
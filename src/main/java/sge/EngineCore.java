@@ -1,13 +1,30 @@
 package sge;
 
+import asset.AssetManager;
+import input.InputEventQueue;
+import input.InputPlayer;
+import input.InputRecorder;
+import input.InputSnapshot;
 import input.KeyListener;
 import input.MouseListener;
 import org.lwjgl.Version;
 import org.lwjgl.glfw.GLFWErrorCallback;
+import org.lwjgl.glfw.GLFWVidMode;
 import org.lwjgl.opengl.GL;
+import renderer.BufferManager;
+import renderer.GLStateTracker;
+import renderer.RenderQueue;
+import renderer.ResolutionScaler;
 import renderer.Shader;
+import renderer.ShaderLibrary;
+import utils.FrameArena;
+import utils.FrameLimiter;
 import utils.Time;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
+
 import static org.lwjgl.glfw.Callbacks.glfwFreeCallbacks;
 import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.glfw.GLFW.glfwWindowHint;
@@ -16,25 +33,65 @@ import static org.lwjgl.system.MemoryUtil.NULL;
 import test.TestScene;
 
 public class EngineCore {
-    private static EngineCore engineCore = null;
+    private static final double IDLE_WAIT_SECONDS = 0.1; // Longest wait for events while idle
     private long gameWindow;
+    private int framebufferWidth; // Window size in pixels, updated when it is resized
+    private int framebufferHeight;
+    private boolean focused = true; // Updated by the window callbacks
+    private boolean iconified;
+    private boolean windowChanged; // Resized, focused or restored since the last frame
+    private volatile boolean redrawRequested;
+    private long nextBackgroundFrame; // When the next frame starts while throttled in the background
+    private long idleNanos; // Time spent throttled since the loop started
+    private long loopStartNanos;
     private GameWindowConfig windowConfig;
+    private GameLoopConfig loopConfig;
     private boolean showFPS;
     private boolean vSync;
     private Scene activeScene;
-
-    private EngineCore() {
+    private final EngineContext context = new EngineContext(this); // Time, input and scene of this engine
+    private Scene startScene; // Scene run by the engine, the TestScene if null
+    private volatile boolean stopRequested;
+    private volatile boolean updateRunning;
+    private volatile long lastTickNanos; // Time represented by the last published tick
+    private volatile RuntimeException updateError;
+    private FrameProfiler profiler;
+    private long nextTitleUpdate; // When the FPS on the window title is refreshed next
+    private FrameLimiter frameLimiter; // Only used without v-sync
+    private ShaderLibrary shaderLibrary;
+    private AssetManager assetManager;
+    private final RenderQueue renderQueue = new RenderQueue(); // Draw commands of the frame, sorted by state
+    private final GLStateTracker glState = new GLStateTracker();
+    private final BufferManager bufferManager = new BufferManager(); // Pooled and streamed geometry buffers
+    private ResolutionScaler resolutionScaler; // Only with dynamic resolution
+    private final FrameArena frameArena = new FrameArena(1 << 20); // Transient native memory, reset every iteration
+    private InputRecorder inputRecorder; // Only while recording
+    private InputPlayer inputPlayer; // Only while replaying
+
+    /**
+     * Create an engine. Several engines can run in the same process, each on its
+     * own thread (only one of them with a window, GLFW being single threaded).
+     * */
+    public EngineCore() {
         windowConfig = new GameWindowConfig(800, 600, 1, "Game");
+        loopConfig = new GameLoopConfig(false, 60, 5); // Default to variable time step
         showFPS = false; // Default value for displaying FPS on window title
         vSync = true; // Default value for vSync
+        profiler = new FrameProfiler(600); // Last 600 frames
+        shaderLibrary = new ShaderLibrary();
+        assetManager = new AssetManager(shaderLibrary);
     }
 
-    public static synchronized EngineCore get() {
-        if (engineCore == null) {
-            engineCore = new EngineCore();
-        }
+    /**
+     * Returns the default engine, created on first use. The scenes should reach
+     * their own engine through {@link EngineContext#current()} instead.
+     * */
+    public static EngineCore get() {
+        return DefaultHolder.ENGINE;
+    }
 
-        return engineCore;
+    private static final class DefaultHolder {
+        static final EngineCore ENGINE = new EngineCore();
     }
 
     public void setScreenConfig(int width, int height, int scale, String title) {
@@ -50,12 +107,318 @@ public class EngineCore {
         this.vSync = vSync;
     }
 
+    /**
+     * Render the scene offscreen at a resolution that scales with the frame time,
+     * lowering it when frames take longer than the refresh interval (or the frame
+     * cap) and raising it back when there is time to spare, then upscale it to the
+     * window. Scale 1 is the width and height given to {@link #setScreenConfig},
+     * so a pixel art game with a window scale of 4 renders at its native resolution.
+     * @param minScale      lowest scale (e.g. 0.5), the same as maxScale for a fixed resolution.
+     * @param maxScale      highest scale (e.g. 1).
+     * @param linear        true to upscale with linear filtering, false for nearest (sharp pixels).
+     * */
+    public void setDynamicResolution(float minScale, float maxScale, boolean linear) {
+        if (minScale <= 0.0f || maxScale < minScale) {
+            throw new IllegalArgumentException("Resolution scales must be positive, the minimum not above the maximum.");
+        }
+        windowConfig.dynamicResolution = true;
+        windowConfig.minResolutionScale = minScale;
+        windowConfig.maxResolutionScale = maxScale;
+        windowConfig.linearUpscale = linear;
+    }
+
+    /**
+     * Update the scene with a fixed time step, running as many ticks as needed to
+     * keep up with the real time and rendering with an interpolation factor between ticks.
+     * @param tickRate              simulation ticks per second.
+     * @param maxTicksPerFrame      maximum catch up ticks in a single frame, the
+     *                              remaining time is dropped to avoid a death spiral.
+     * */
+    public void setFixedTimeStep(int tickRate, int maxTicksPerFrame) {
+        if (tickRate <= 0 || maxTicksPerFrame <= 0) {
+            throw new IllegalArgumentException("Tick rate and max ticks per frame must be positive.");
+        }
+        loopConfig.fixedTimeStep = true;
+        loopConfig.tickRate = tickRate;
+        loopConfig.maxTicksPerFrame = maxTicksPerFrame;
+    }
+
+    /**
+     * Update the scene once per frame using the measured frame time (default).
+     * */
+    public void setVariableTimeStep() {
+        loopConfig.fixedTimeStep = false;
+    }
+
+    /**
+     * Update the scene on a separate thread at the configured tick rate (see
+     * {@link #setFixedTimeStep(int, int)}), while the main thread polls the window
+     * events and renders the latest state published by the scene.
+     * @param multiThreaded     true to use an update thread, false to update and
+     *                          render on the main thread (default).
+     * */
+    public void setMultiThreaded(boolean multiThreaded) {
+        loopConfig.multiThreaded = multiThreaded;
+    }
+
+    /**
+     * Limit the frame rate while the window is not focused, sleeping between
+     * frames (even with v-sync) and waking up early on window events.
+     * @param fps   maximum frames per second in the background, zero to not throttle (default).
+     * */
+    public void setBackgroundFrameCap(int fps) {
+        if (fps < 0) {
+            throw new IllegalArgumentException("Background frame cap must not be negative.");
+        }
+        loopConfig.backgroundFrameCap = fps;
+    }
+
+    /**
+     * Stop running frames while the window is minimized, only waiting for
+     * window events. The time minimized is not counted in the delta time.
+     * */
+    public void setPauseWhenMinimized(boolean pause) {
+        loopConfig.pauseWhenMinimized = pause;
+    }
+
+    /**
+     * Only run a frame when something changed: input, the window, loading assets,
+     * reloaded shaders or {@link #requestRedraw()}. Meant for tools and editors
+     * with static scenes, the time waiting is not counted in the delta time.
+     * Not used when the scene is updated on its own thread.
+     * */
+    public void setRenderOnChange(boolean renderOnChange) {
+        loopConfig.renderOnChange = renderOnChange;
+    }
+
+    /**
+     * Ask for a new frame when rendering on change. Can be called from any thread.
+     * */
+    public void requestRedraw() {
+        redrawRequested = true;
+        if (gameWindow != NULL) glfwPostEmptyEvent(); // Wake the main thread if it is waiting
+    }
+
+    /**
+     * Returns the time (in nanoseconds) the loop spent throttled: in the
+     * background, minimized or waiting for a change.
+     * */
+    public long getIdleNanos() {
+        return idleNanos;
+    }
+
+    /**
+     * Run without window nor OpenGL context, only updating the scene at the tick
+     * rate (see {@link #setFixedTimeStep(int, int)}), for servers, load tests and
+     * benchmarks. Input is fed through {@link #getInputQueue()} or replayed (see
+     * {@link #setInputReplay(String)}). Needs a scene not using OpenGL, see
+     * {@link #setScene(Scene)}.
+     * @param headless              true to run headless.
+     * @param asFastAsPossible      true to run the ticks one after the other
+     *                              instead of at the tick rate (the delta time
+     *                              of each tick is still 1 / tick rate).
+     * */
+    public void setHeadless(boolean headless, boolean asFastAsPossible) {
+        loopConfig.headless = headless;
+        loopConfig.asFastAsPossible = asFastAsPossible;
+    }
+
+    /**
+     * Stop a headless run after a number of ticks.
+     * @param ticks     ticks to run, 0 to run until {@link #stop()}.
+     * */
+    public void setTickLimit(long ticks) {
+        if (ticks < 0) {
+            throw new IllegalArgumentException("The tick limit can not be negative.");
+        }
+        loopConfig.tickLimit = ticks;
+    }
+
+    /**
+     * Set the scene run by the engine, instead of the TestScene.
+     * */
+    public void setScene(Scene scene) {
+        startScene = scene;
+    }
+
+    /**
+     * Ask the engine to stop after the current frame (or tick). Can be called from any thread.
+     * */
+    public void stop() {
+        stopRequested = true;
+        if (gameWindow != NULL) {
+            glfwSetWindowShouldClose(gameWindow, true);
+            glfwPostEmptyEvent(); // Wake the main thread if it is waiting for events
+        }
+    }
+
+    /**
+     * Returns the queue the input events are applied from, to feed input
+     * programmatically (e.g. when headless). Only one thread may offer events.
+     * */
+    public InputEventQueue getInputQueue() {
+        return context.getInputQueue();
+    }
+
+    /**
+     * Returns the context holding the time, input and scene of this engine.
+     * */
+    public EngineContext getContext() {
+        return context;
+    }
+
+    /**
+     * Returns the profiler measuring each phase of the main loop.
+     * */
+    public FrameProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Print the frame profile periodically on the standard output.
+     * @param intervalSeconds   seconds between reports, zero to disable them.
+     * */
+    public void setProfilerReport(double intervalSeconds) {
+        profiler.setReportInterval(intervalSeconds);
+    }
+
+    /**
+     * Sample the bytes the engine threads allocate on every frame and count the
+     * frames allocating more than a threshold (shown on the profiler report and
+     * flagged on the Flight Recorder frame events).
+     * @param bytesPerFrame     the threshold, zero to only sample while a Flight
+     *                          Recorder recording is running (default).
+     * */
+    public void setAllocationThreshold(long bytesPerFrame) {
+        profiler.setAllocationThreshold(bytesPerFrame);
+    }
+
+    /**
+     * Limit the frame rate when v-sync is disabled.
+     * @param fps   maximum frames per second, zero to run uncapped (default).
+     * */
+    public void setFrameCap(int fps) {
+        if (fps < 0) {
+            throw new IllegalArgumentException("Frame cap must not be negative.");
+        }
+        loopConfig.frameCap = fps;
+    }
+
+    /**
+     * Returns the library with every shader loaded by the scenes.
+     * */
+    public ShaderLibrary getShaderLibrary() {
+        return shaderLibrary;
+    }
+
+    /**
+     * Reload shaders while the engine runs when their files change.
+     * @param hotReload     true to watch the shader files.
+     * */
+    public void setShaderHotReload(boolean hotReload) {
+        loopConfig.shaderHotReload = hotReload;
+    }
+
+    /**
+     * Record the input of every frame (or tick), with its delta time, to a file
+     * that can be replayed with {@link #setInputReplay(String)}.
+     * @param file  the file to write, null to not record.
+     * */
+    public void setInputRecording(String file) {
+        loopConfig.recordInput = file;
+    }
+
+    /**
+     * Replay a recorded input file instead of the live input, using the recorded
+     * delta times so every frame runs as it did when recorded. The window is
+     * closed when the recording ends.
+     * @param file  the file to replay, null to use the live input.
+     * */
+    public void setInputReplay(String file) {
+        loopConfig.replayInput = file;
+    }
+
+    /**
+     * Returns the manager loading assets in the background.
+     * */
+    public AssetManager getAssetManager() {
+        return assetManager;
+    }
+
+    /**
+     * Returns the queue the scene submits its draw commands to, drawn sorted
+     * by state after {@link Scene#render(float)} returns.
+     * */
+    public RenderQueue getRenderQueue() {
+        return renderQueue;
+    }
+
+    /**
+     * Returns the manager of the geometry buffers: pooled ranges for static
+     * geometry and stream buffers, advanced every frame, for dynamic geometry.
+     * */
+    public BufferManager getBufferManager() {
+        return bufferManager;
+    }
+
+    /**
+     * Returns the arena for transient native memory of the thread running the
+     * engine, reset at the end of every loop iteration. It is the one returned by
+     * {@link FrameArena#local()} on that thread.
+     * */
+    public FrameArena getFrameArena() {
+        return frameArena;
+    }
+
+    /**
+     * Returns the tracker of the OpenGL bindings, to bind through it and count
+     * the binds issued and elided on each frame.
+     * */
+    public GLStateTracker getGLState() {
+        return glState;
+    }
+
+    /**
+     * Returns the input of the current frame (or tick, when updating on
+     * its own thread). Only valid on the thread updating the scene.
+     * */
+    public InputSnapshot getInput() {
+        return context.getInput();
+    }
+
+    /**
+     * Run the engine on the calling thread until it is stopped (or its window closed).
+     * */
     public void run() {
+        context.bind();
+        FrameArena.bind(frameArena);
+        profiler.trackThread(Thread.currentThread());
+        try {
+            if (loopConfig.headless) {
+                runHeadless();
+            } else {
+                runWindowed();
+            }
+        } finally {
+            profiler.untrackThread(Thread.currentThread());
+            FrameArena.bind(null);
+            frameArena.free();
+            EngineContext.unbind();
+        }
+    }
+
+    private void runWindowed() {
         System.out.println("Initializing LWJGL " + Version.getVersion() + "...");
 
         init();
         loop();
 
+        closeInputFiles();
+        assetManager.shutdown();
+        shaderLibrary.delete();
+        bufferManager.delete();
+        if (resolutionScaler != null) resolutionScaler.delete();
+
         // Free the window callbacks and destroy the window
         glfwFreeCallbacks(gameWindow);
         glfwDestroyWindow(gameWindow);
@@ -86,6 +449,12 @@ public class EngineCore {
             throw new IllegalStateException("Failed to create the GLFW window!");
         }
 
+        int[] width = new int[1];
+        int[] height = new int[1];
+        glfwGetFramebufferSize(gameWindow, width, height);
+        framebufferWidth = width[0];
+        framebufferHeight = height[0];
+
         // Set all Call backs needed
         callBacks();
 
@@ -114,6 +483,20 @@ public class EngineCore {
         glfwSetMouseButtonCallback(gameWindow, MouseListener::buttonCallback);
         glfwSetScrollCallback(gameWindow, MouseListener::scrollCallback);
         glfwSetKeyCallback(gameWindow, KeyListener::keyCallback);
+        glfwSetFramebufferSizeCallback(gameWindow, (window, width, height) -> {
+            framebufferWidth = width;
+            framebufferHeight = height;
+            windowChanged = true;
+            glViewport(0, 0, width, height);
+        });
+        glfwSetWindowFocusCallback(gameWindow, (window, focus) -> {
+            focused = focus;
+            windowChanged = true;
+        });
+        glfwSetWindowIconifyCallback(gameWindow, (window, iconify) -> {
+            iconified = iconify;
+            windowChanged = true;
+        });
     }
 
     public void loop() {
@@ -122,35 +505,509 @@ public class EngineCore {
         // Set the clear color
         glClearColor(1.0f, 0.0f, 0.0f, 0.0f);
 
-        float frameStart = Time.getTotalElapsedTime();
-        float frameEnd = Time.getTotalElapsedTime();
-
-        this.activeScene = new TestScene();
+        this.activeScene = (startScene != null) ? startScene : new TestScene();
+        context.setScene(activeScene);
         activeScene.init();
 
+        if (loopConfig.shaderHotReload) {
+            shaderLibrary.startWatching();
+        }
+
+        frameLimiter = (!vSync && loopConfig.frameCap > 0) ? new FrameLimiter(loopConfig.frameCap) : null;
+        loopStartNanos = System.nanoTime();
+        idleNanos = 0;
+        if (windowConfig.dynamicResolution) {
+            resolutionScaler = new ResolutionScaler(windowConfig.minResolutionScale, windowConfig.maxResolutionScale,
+                    windowConfig.linearUpscale, targetFrameNanos());
+        }
+        long frameStart = Time.getTotalElapsedNanos();
+        long frameEnd;
+        long paused;
+        long accumulator = 0; // Time (in nanoseconds) not yet consumed by fixed ticks
+
+        // Input events are always queued, and applied by the thread updating the scene
+        KeyListener.setHandoffQueue(context.getInputQueue());
+        MouseListener.setHandoffQueue(context.getInputQueue());
+        openInputFiles();
+
+        if (loopConfig.multiThreaded) {
+            loopMultiThreaded();
+            return;
+        }
+
         // Run the rendering loop until the user has attempted to close
         // the window or has pressed the ESCAPE key.
         while ( !glfwWindowShouldClose(gameWindow) ) {
+            profiler.beginFrame();
+
+            shaderLibrary.applyReloads(); // Swap shaders changed on disk, between frames
+            assetManager.processUploads(); // Create loaded assets, within the per frame budget
+            profiler.mark(FrameProfiler.UPLOAD);
+
             glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT); // clear the framebuffer
+            profiler.mark(FrameProfiler.CLEAR);
 
-            onUpdate(); // Execute custom code
+            if (loopConfig.fixedTimeStep) {
+                accumulator = updateFixed(accumulator); // Polls the input on every tick
+            } else {
+                pollInput(0L); // Events polled on the previous frame
+                onUpdate(); // Execute custom code
+                profiler.mark(FrameProfiler.ON_UPDATE);
 
-            resetListeners();
+                activeScene.update((float)Time.getDeltaTime());
+                activeScene.commit();
+                profiler.mark(FrameProfiler.SCENE_UPDATE);
 
-            activeScene.update(Time.getDeltaTime());
+                resetListeners(); // The scene saw the presses and releases of this frame
+                profiler.mark(FrameProfiler.RESET_LISTENERS);
+
+                renderScene(1.0f);
+                profiler.mark(FrameProfiler.RENDER);
+            }
 
             glfwSwapBuffers(gameWindow); // swap the color buffers
+            profiler.mark(FrameProfiler.SWAP);
 
             // Poll for window events. The key callback above will only be
             // invoked during this call.
             glfwPollEvents();
+            profiler.mark(FrameProfiler.POLL);
+
+            paused = throttle(loopConfig.renderOnChange && inputPlayer == null); // Or wait for the next frame
 
-            frameEnd = Time.getTotalElapsedTime();
-            Time.setDeltaTime(frameEnd - frameStart); // Calculate delta time (time per frame)
+            frameEnd = Time.getTotalElapsedNanos();
+            Time.setDeltaNanos(frameEnd - frameStart - paused); // Calculate delta time (time per frame)
             frameStart = frameEnd;
 
-            if (showFPS) glfwSetWindowTitle(gameWindow, windowConfig.title + " " + (1/Time.getDeltaTime())); // Show FPS on window title
+            profiler.endFrame();
+            report();
+            frameArena.reset(); // Transient buffers of this iteration are no longer used
+        }
+
+        KeyListener.setHandoffQueue(null);
+        MouseListener.setHandoffQueue(null);
+    }
+
+    /**
+     * Run the scene without window nor OpenGL context.
+     * */
+    private void runHeadless() {
+        if (startScene == null) {
+            throw new IllegalStateException("Headless mode needs a scene without OpenGL, see setScene.");
+        }
+        System.out.println("Starting headless at " + loopConfig.tickRate + " ticks per second"
+                + (loopConfig.asFastAsPossible ? " (as fast as possible)..." : "..."));
+
+        activeScene = startScene;
+        context.setScene(activeScene);
+        activeScene.init();
+        KeyListener.setHandoffQueue(context.getInputQueue());
+        MouseListener.setHandoffQueue(context.getInputQueue());
+        openInputFiles();
+
+        loopHeadless();
+
+        KeyListener.setHandoffQueue(null);
+        MouseListener.setHandoffQueue(null);
+        closeInputFiles();
+        assetManager.shutdown();
+    }
+
+    /**
+     * Headless loop. Runs fixed ticks, paced at the tick rate or one after the
+     * other, until stopped or the tick limit is reached.
+     * @return how many ticks ran.
+     * */
+    private long loopHeadless() {
+        long tickNanos = 1_000_000_000L / loopConfig.tickRate;
+        long start = System.nanoTime();
+        long nextTick = start;
+        long ticks = 0;
+
+        while (!stopRequested && (loopConfig.tickLimit == 0 || ticks < loopConfig.tickLimit)) {
+            if (!loopConfig.asFastAsPossible) {
+                long now = System.nanoTime();
+                if (now < nextTick) {
+                    LockSupport.parkNanos(nextTick - now);
+                    continue;
+                }
+                // Too far behind, drop the backlog instead of trying to catch up
+                nextTick = (now - nextTick > tickNanos * loopConfig.maxTicksPerFrame) ? now + tickNanos : nextTick + tickNanos;
+            }
+            profiler.beginFrame();
+
+            Time.setDeltaNanos(tickNanos);
+            pollInput(0L); // Replays use the recorded delta time
+            onUpdate(); // Execute custom code
+            profiler.mark(FrameProfiler.ON_UPDATE);
+
+            activeScene.update((float)Time.getDeltaTime());
+            activeScene.commit();
+            profiler.mark(FrameProfiler.SCENE_UPDATE);
+
+            resetListeners(); // The scene saw the presses and releases of this tick
+            profiler.mark(FrameProfiler.RESET_LISTENERS);
+
+            profiler.endFrame();
+            report();
+            frameArena.reset();
+            ticks++;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Headless run finished: %d ticks in %.3f s (%.1f ticks per second).%n",
+                ticks, seconds, ticks / Math.max(seconds, 1e-9));
+        return ticks;
+    }
+
+    /**
+     * Main thread loop when the scene is updated on its own thread. It only renders
+     * the latest published state and polls events, which are handed off to the
+     * update thread through an {@link InputEventQueue}.
+     * */
+    private void loopMultiThreaded() {
+        long tickNanos = 1_000_000_000L / loopConfig.tickRate;
+        lastTickNanos = System.nanoTime();
+        updateRunning = true;
+        Thread updateThread = new Thread(this::updateLoop, "SGE Update");
+        updateThread.start();
+        profiler.trackThread(updateThread); // Its allocations count in the frame allocations, once started
+
+        long frameStart = Time.getTotalElapsedNanos();
+        long frameEnd;
+        long paused;
+
+        while ( !glfwWindowShouldClose(gameWindow) ) {
+            profiler.beginFrame(); // Only the main thread phases are measured
+
+            shaderLibrary.applyReloads(); // Swap shaders changed on disk, between frames
+            assetManager.processUploads(); // Create loaded assets, within the per frame budget
+            profiler.mark(FrameProfiler.UPLOAD);
+
+            glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT); // clear the framebuffer
+            profiler.mark(FrameProfiler.CLEAR);
+
+            float alpha = Math.min(1.0f, (System.nanoTime() - lastTickNanos) / (float)tickNanos);
+            renderScene(alpha);
+            profiler.mark(FrameProfiler.RENDER);
+
+            glfwSwapBuffers(gameWindow); // swap the color buffers
+            profiler.mark(FrameProfiler.SWAP);
+
+            glfwPollEvents(); // Callbacks only queue the events for the update thread
+            profiler.mark(FrameProfiler.POLL);
+
+            paused = throttle(false); // The update thread keeps publishing, there is always a change
+
+            frameEnd = Time.getTotalElapsedNanos();
+            Time.setDeltaNanos(frameEnd - frameStart - paused); // Calculate delta time (time per frame)
+            frameStart = frameEnd;
+
+            profiler.endFrame();
+            report();
+            frameArena.reset();
+        }
+
+        updateRunning = false;
+        try {
+            updateThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        profiler.untrackThread(updateThread);
+        KeyListener.setHandoffQueue(null);
+        MouseListener.setHandoffQueue(null);
+
+        if (updateError != null) {
+            throw new IllegalStateException("Scene update thread failed.", updateError);
+        }
+    }
+
+    /**
+     * Update thread loop. Runs fixed ticks, publishing the scene state after each one,
+     * and parks the thread until the next tick is due.
+     * */
+    private void updateLoop() {
+        context.bind(); // The update thread shares the input of this engine
+        Time.bind(new Time()); // But not the clock, the main thread sets its delta every frame
+        long tickNanos = 1_000_000_000L / loopConfig.tickRate;
+        float tickTime = 1.0f / loopConfig.tickRate;
+        long nextTick = System.nanoTime();
+
+        try {
+            while (updateRunning) {
+                long now = System.nanoTime();
+                if (now < nextTick) {
+                    LockSupport.parkNanos(nextTick - now);
+                    continue;
+                }
+
+                int ticks = 0;
+                while (now >= nextTick && ticks < loopConfig.maxTicksPerFrame) {
+                    Time.setDeltaNanos(tickNanos);
+                    pollInput(tickNanos);
+                    onUpdate();
+                    activeScene.update(tickTime);
+                    activeScene.commit();
+                    resetListeners(); // The scene saw the presses and releases of this tick
+                    FrameArena.local().reset(); // The update thread has an arena of its own
+                    lastTickNanos = nextTick;
+                    nextTick += tickNanos;
+                    ticks++;
+                }
+
+                // Too far behind, drop the backlog instead of trying to catch up
+                if (now >= nextTick) {
+                    nextTick = now + tickNanos;
+                }
+            }
+        } catch (RuntimeException e) {
+            updateError = e;
+            glfwSetWindowShouldClose(gameWindow, true); // Safe to call from any thread
+        } finally {
+            FrameArena.local().free();
+            EngineContext.unbind();
+        }
+    }
+
+    /**
+     * Run the fixed ticks that fit in the accumulated time and render the scene
+     * interpolated between the last two ticks. The input is polled on every
+     * tick, so events wait in the queue through frames without ticks, and each
+     * press or release is seen by one tick only.
+     * @param accumulator   time (in nanoseconds) not consumed by previous ticks.
+     * @return the time left in the accumulator after this frame.
+     * */
+    private long updateFixed(long accumulator) {
+        long tickNanos = 1_000_000_000L / loopConfig.tickRate;
+        float tickTime = 1.0f / loopConfig.tickRate;
+        accumulator += Time.getDeltaNanos();
+
+        int ticks = 0;
+        while (accumulator >= tickNanos && ticks < loopConfig.maxTicksPerFrame) {
+            pollInput(tickNanos);
+            onUpdate(); // Execute custom code
+            profiler.mark(FrameProfiler.ON_UPDATE);
+
+            activeScene.update(tickTime);
+            activeScene.commit();
+            profiler.mark(FrameProfiler.SCENE_UPDATE);
+
+            resetListeners(); // The scene saw the presses and releases of this tick
+            profiler.mark(FrameProfiler.RESET_LISTENERS);
+            accumulator -= tickNanos;
+            ticks++;
+        }
+
+        // Too far behind, drop the backlog instead of trying to catch up on the next frames
+        if (accumulator >= tickNanos) {
+            accumulator %= tickNanos;
+        }
+
+        renderScene((float)((double)accumulator / tickNanos));
+        profiler.mark(FrameProfiler.RENDER);
+        return accumulator;
+    }
+
+    /**
+     * Render the scene, then draw the commands it submitted to the render queue.
+     * */
+    private void renderScene(float alpha) {
+        renderQueue.clear();
+        glState.resetStats();
+        bufferManager.beginFrame(); // Waits only if the GPU still reads the stream segment of this frame
+        if (resolutionScaler != null) {
+            // CPU time of the last frame, without waiting on v-sync or the frame cap
+            resolutionScaler.update(profiler.getLast(FrameProfiler.FRAME) - profiler.getLast(FrameProfiler.SWAP)
+                    - profiler.getLast(FrameProfiler.LIMIT) - profiler.getLast(FrameProfiler.IDLE));
+            resolutionScaler.begin(Math.max(1, framebufferWidth / windowConfig.scale),
+                    Math.max(1, framebufferHeight / windowConfig.scale));
+        }
+        activeScene.acquire(); // Latest state published by the update
+        activeScene.render(alpha);
+        renderQueue.flush(glState);
+        if (resolutionScaler != null) resolutionScaler.end(framebufferWidth, framebufferHeight);
+        bufferManager.endFrame();
+    }
+
+    /**
+     * Wait at the end of a frame: until restored while minimized (when pausing),
+     * until the next background frame while not focused (when capped), or on the
+     * frame limiter otherwise; then, when rendering on change, until something changed.
+     * @param onChange  true to wait for a change.
+     * @return the time (in nanoseconds) paused, not to be counted in the delta time.
+     * */
+    private long throttle(boolean onChange) {
+        long start = System.nanoTime();
+        long paused = 0;
+        if (iconified && loopConfig.pauseWhenMinimized) {
+            while (iconified && !glfwWindowShouldClose(gameWindow)) {
+                glfwWaitEventsTimeout(IDLE_WAIT_SECONDS); // Callbacks run here, restoring clears iconified
+            }
+            paused = System.nanoTime() - start;
+        } else if (!focused && loopConfig.backgroundFrameCap > 0) {
+            waitBackgroundFrame();
+        } else {
+            nextBackgroundFrame = 0;
+            if (frameLimiter != null) {
+                frameLimiter.sync(); // Wait for the next frame
+                profiler.mark(FrameProfiler.LIMIT);
+                start = System.nanoTime();
+            }
+        }
+
+        if (onChange) {
+            long waitStart = System.nanoTime();
+            while (!hasChanged() && !glfwWindowShouldClose(gameWindow)) {
+                glfwWaitEventsTimeout(IDLE_WAIT_SECONDS); // Wakes on window events, or to check the rest
+            }
+            paused += System.nanoTime() - waitStart;
+            redrawRequested = false;
+            windowChanged = false;
+        }
+
+        idleNanos += System.nanoTime() - start;
+        profiler.mark(FrameProfiler.IDLE);
+        return paused;
+    }
+
+    /**
+     * Sleep until the next background frame, waking up early on window events
+     * (e.g. when the window gets the focus back).
+     * */
+    private void waitBackgroundFrame() {
+        long frameNanos = 1_000_000_000L / loopConfig.backgroundFrameCap;
+        long now = System.nanoTime();
+        if (nextBackgroundFrame == 0 || now - nextBackgroundFrame > frameNanos) {
+            nextBackgroundFrame = now + frameNanos; // Just lost the focus or too late, restart the grid
+        }
+        long remaining;
+        while (!focused && (remaining = nextBackgroundFrame - System.nanoTime()) > 0 && !glfwWindowShouldClose(gameWindow)) {
+            glfwWaitEventsTimeout(remaining / 1e9);
+        }
+        nextBackgroundFrame += frameNanos;
+    }
+
+    /**
+     * Returns true if a frame is needed when rendering on change.
+     * */
+    private boolean hasChanged() {
+        return redrawRequested || windowChanged || !context.getInputQueue().isEmpty()
+                || assetManager.getPendingCount() > 0 || shaderLibrary.hasPendingReloads();
+    }
+
+    /**
+     * Returns the time a frame should take: the refresh interval of the monitor
+     * with v-sync, the frame cap without it, 60 frames per second otherwise.
+     * */
+    private long targetFrameNanos() {
+        int fps = 60;
+        if (vSync) {
+            GLFWVidMode mode = glfwGetVideoMode(glfwGetPrimaryMonitor());
+            if (mode != null && mode.refreshRate() > 0) fps = mode.refreshRate();
+        } else if (loopConfig.frameCap > 0) {
+            fps = loopConfig.frameCap;
+        }
+        return 1_000_000_000L / fps;
+    }
+
+    /**
+     * Show the FPS on the window title (once per second) and print the
+     * frame profile (and the render stats) when due. Allocates only when something is shown.
+     * */
+    private void report() {
+        if (showFPS && gameWindow != NULL) {
+            long now = System.nanoTime();
+            if (now >= nextTitleUpdate && profiler.getFrameCount() > 0) {
+                nextTitleUpdate = now + 1_000_000_000L;
+                double frameTime = profiler.getAverage(FrameProfiler.FRAME);
+                glfwSetWindowTitle(gameWindow, windowConfig.title + " " + Math.round(1e9 / frameTime) + " FPS"); // Show FPS on window title
+            }
+        }
+        if (profiler.isReportDue()) {
+            profiler.report(System.out);
+            if (gameWindow != NULL && idleNanos > 0) {
+                System.out.printf("Idle: %.3f s of %.3f s running.%n", idleNanos / 1e9, (System.nanoTime() - loopStartNanos) / 1e9);
+            }
+            if (gameWindow != NULL) {
+                System.out.println("Render (last frame): " + renderQueue.getDrawCalls() + " draw calls, "
+                        + glState.getBindsIssued() + " binds issued, " + glState.getBindsElided() + " binds elided, "
+                        + bufferManager.getBytesUploaded() + " bytes uploaded, " + bufferManager.getStalls() + " stalls ("
+                        + bufferManager.getTotalStalls() + " total), " + bufferManager.getWastedBytes() + " of "
+                        + bufferManager.getCapacity() + " buffer bytes unused"
+                        + ((resolutionScaler != null) ? ", resolution " + resolutionScaler.getRenderWidth() + "x"
+                        + resolutionScaler.getRenderHeight() + " (GPU " + resolutionScaler.getGpuNanos() / 1000 + " us)" : ""));
+            }
+        }
+    }
+
+    /**
+     * Apply the input of this frame (or tick): the queued events, or the next
+     * recorded frame when replaying. Records it when recording.
+     * @param tickNanos     duration of the tick when updating by fixed ticks,
+     *                      0 to use (and replay) the frame delta time.
+     * */
+    private void pollInput(long tickNanos) {
+        InputEventQueue inputQueue = context.getInputQueue();
+        InputSnapshot input = context.getInput();
+        if (inputPlayer != null) {
+            inputQueue.clear(); // Live input is ignored while replaying
+            try {
+                if (inputPlayer.playFrame(input)) {
+                    if (tickNanos == 0L) Time.setDeltaNanos(inputPlayer.getDeltaNanos());
+                } else {
+                    System.out.println("Input replay finished after " + inputPlayer.getFrameCount() + " frames.");
+                    closeInputPlayer();
+                    stop();
+                }
+            } catch (IOException e) {
+                System.err.println("ERROR: Could not read the input replay: " + e.getMessage());
+                closeInputPlayer();
+            }
+        } else {
+            inputQueue.drain(input);
+        }
+
+        if (inputRecorder != null) {
+            try {
+                inputRecorder.recordFrame((tickNanos == 0L) ? Time.getDeltaNanos() : tickNanos, input);
+            } catch (IOException e) {
+                System.err.println("ERROR: Could not write the input recording: " + e.getMessage());
+                closeInputFiles();
+            }
+        }
+    }
+
+    private void openInputFiles() {
+        try {
+            if (loopConfig.replayInput != null) {
+                inputPlayer = new InputPlayer(Paths.get(loopConfig.replayInput));
+            }
+            if (loopConfig.recordInput != null) {
+                inputRecorder = new InputRecorder(Paths.get(loopConfig.recordInput));
+            }
+        } catch (IOException e) {
+            System.err.println("ERROR: Could not open the input file: " + e.getMessage());
+        }
+    }
+
+    private void closeInputPlayer() {
+        try {
+            if (inputPlayer != null) inputPlayer.close();
+        } catch (IOException e) {
+            System.err.println("ERROR: Could not close the input replay: " + e.getMessage());
+        }
+        inputPlayer = null;
+    }
+
+    private void closeInputFiles() {
+        closeInputPlayer();
+        try {
+            if (inputRecorder != null) inputRecorder.close();
+        } catch (IOException e) {
+            System.err.println("ERROR: Could not close the input recording: " + e.getMessage());
         }
+        inputRecorder = null;
     }
 
     private void resetListeners() {
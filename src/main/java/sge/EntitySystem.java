@@ -0,0 +1,100 @@
+/**
+ * Entity system class. It will be the class extended by every system of the
+ * game. Systems hold the logic and the {@link World} holds the data: a system
+ * usually creates its {@link Query} on {@link #init(World)} and iterates its
+ * archetypes on {@link #update(World, float)}.
+ * */
+
+package sge;
+
+public abstract class EntitySystem {
+    private static final long ALL = -1L;
+
+    /**
+     * Stores the components read and written by the system. Until the system
+     * declares them it conflicts with every other system: {@link #readMask}, {@link #writeMask}
+     * */
+    private long readMask = ALL;
+    private long writeMask = ALL;
+    private boolean declared;
+
+    /**
+     * Stores the scheduler running the system, null if none: {@link #scheduler}
+     * */
+    SystemScheduler scheduler;
+
+    /**
+     * Stores the job used by {@link #forEachChunk(Query, int, ChunkAction)}: {@link #chunkJob}
+     * */
+    private SystemScheduler.ChunkJob chunkJob;
+
+    /**
+     * Init method, called once when the system is added to a scene.
+     * @param world     the world of the scene.
+     * */
+    public void init(World world) {
+
+    }
+
+    /**
+     * Update method to be implemented in every system.
+     * @param world         the world of the scene.
+     * @param deltaTime     the Delta Time of the update.
+     * */
+    public abstract void update(World world, float deltaTime);
+
+    /**
+     * Declare components the system reads, call it on the constructor or on
+     * {@link #init(World)}. Systems that create or destroy entities, or change
+     * their components, must not declare anything so they never run in parallel.
+     * */
+    protected final void reads(ComponentType... types) {
+        declare();
+        readMask |= World.mask(types);
+    }
+
+    /**
+     * Declare components the system writes, see {@link #reads(ComponentType...)}.
+     * */
+    protected final void writes(ComponentType... types) {
+        declare();
+        writeMask |= World.mask(types);
+    }
+
+    private void declare() {
+        if (!declared) {
+            readMask = 0L;
+            writeMask = 0L;
+            declared = true;
+        }
+    }
+
+    /**
+     * Run an action over every entity of a query, splitting big archetypes
+     * into chunks run in parallel when the scheduler is parallel. Returns when
+     * every chunk finished.
+     * @param query         the entities to process.
+     * @param chunkSize     maximum rows per chunk, positive.
+     * @param action        the action, run once per chunk.
+     * */
+    protected void forEachChunk(Query query, int chunkSize, ChunkAction action) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("Invalid chunk size " + chunkSize + ".");
+        if (scheduler == null || !scheduler.isParallel()) {
+            for (int a = 0; a < query.getArchetypeCount(); a++) {
+                Archetype archetype = query.getArchetype(a);
+                if (archetype.size() > 0) action.run(archetype, 0, archetype.size());
+            }
+            return;
+        }
+        if (chunkJob == null) chunkJob = new SystemScheduler.ChunkJob();
+        chunkJob.run(scheduler.getPool(), query, chunkSize, action);
+    }
+
+    public long getReadMask() {
+        return readMask;
+    }
+
+    public long getWriteMask() {
+        return writeMask;
+    }
+}
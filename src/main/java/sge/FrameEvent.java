@@ -0,0 +1,34 @@
+/**
+ * Frame event class. JDK Flight Recorder event covering one iteration of the
+ * main loop, with the bytes allocated by the engine threads during it, so slow
+ * frames can be lined up with garbage collections in a recording.
+ * */
+
+package sge;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("sge.Frame")
+@Label("Frame")
+@Category("SGE")
+@Description("One iteration of the engine main loop.")
+@StackTrace(false)
+final class FrameEvent extends jdk.jfr.Event {
+
+    @Label("Frame")
+    long frame;
+
+    @Label("Allocated")
+    @Description("Bytes allocated during the frame by the threads running the engine.")
+    @DataAmount
+    long allocatedBytes;
+
+    @Label("Allocation Spike")
+    @Description("The frame allocated more than the configured threshold.")
+    boolean allocationSpike;
+}
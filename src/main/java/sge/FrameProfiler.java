@@ -0,0 +1,386 @@
+/**
+ * Frame profiler class. It measures how long each phase of the main loop takes
+ * on every frame, keeping the last frames in preallocated ring buffers, so
+ * measuring a frame never allocates. Percentiles are computed on demand over
+ * the stored frames.
+ * It can also sample the bytes allocated on each frame by the tracked threads
+ * (see {@link AllocationSampler}), counting the frames above a threshold, and
+ * emits JDK Flight Recorder events for every frame ({@link FrameEvent}) and
+ * phase ({@link PhaseEvent}) while a recording enables them. Both only
+ * allocate when enabled.
+ * */
+
+package sge;
+
+import jdk.jfr.EventType;
+
+import java.io.PrintStream;
+
+public class FrameProfiler {
+    public static final int UPLOAD = 0; // Asset uploads and shader reloads
+    public static final int CLEAR = 1;
+    public static final int ON_UPDATE = 2;
+    public static final int RESET_LISTENERS = 3;
+    public static final int SCENE_UPDATE = 4;
+    public static final int RENDER = 5;
+    public static final int SWAP = 6;
+    public static final int POLL = 7;
+    public static final int LIMIT = 8; // Waiting on the frame limiter
+    public static final int IDLE = 9; // Throttled in the background, minimized or waiting for a change
+    public static final int FRAME = 10; // Whole frame, from beginFrame() to endFrame()
+    public static final int PHASE_COUNT = 11;
+
+    private static final EventType FRAME_EVENT = EventType.getEventType(FrameEvent.class);
+    private static final EventType PHASE_EVENT = EventType.getEventType(PhaseEvent.class);
+
+    private static final String[] PHASE_NAMES = {
+            "upload", "clear", "onUpdate", "resetListeners", "update", "render", "swap", "poll", "limit", "idle", "frame"
+    };
+
+    /**
+     * Stores the duration (in nanoseconds) of each phase for the last frames,
+     * indexed by phase and then by frame: {@link #samples}
+     * */
+    private final long[][] samples;
+
+    /**
+     * Stores the duration of each phase on the current frame: {@link #current}
+     * */
+    private final long[] current;
+
+    /**
+     * Stores a copy of the samples used to compute percentiles: {@link #scratch}
+     * */
+    private final long[] scratch;
+
+    /**
+     * Stores the next frame slot to be written on the ring buffers: {@link #cursor}
+     * */
+    private int cursor;
+
+    /**
+     * Stores how many frames are stored, up to the capacity: {@link #count}
+     * */
+    private int count;
+
+    /**
+     * Stores when the current frame started: {@link #frameStart}
+     * */
+    private long frameStart;
+
+    /**
+     * Stores when the last phase ended: {@link #lastMark}
+     * */
+    private long lastMark;
+
+    /**
+     * Stores the number of the current frame, counted from 1: {@link #frameNumber}
+     * */
+    private long frameNumber;
+
+    /**
+     * Stores the events of the current frame and phase while a recording
+     * enables them, null otherwise: {@link #frameEvent}, {@link #phaseEvent}
+     * */
+    private FrameEvent frameEvent;
+    private PhaseEvent phaseEvent;
+
+    /**
+     * Stores the sampler of the tracked threads and the bytes allocated on the
+     * last frames: {@link #allocationSampler}, {@link #allocations}
+     * */
+    private final AllocationSampler allocationSampler = new AllocationSampler();
+    private final long[] allocations;
+    private boolean sampledLastFrame; // False when the counters must be read again before measuring
+
+    /**
+     * Stores the bytes per frame above which a frame counts as an allocation
+     * spike, zero to not sample unless recording: {@link #allocationThreshold}
+     * */
+    private long allocationThreshold;
+    private long allocationSpikes;
+
+    /**
+     * Stores the interval between reports, zero if disabled: {@link #reportInterval}
+     * */
+    private long reportInterval;
+
+    /**
+     * Stores when the next report is due: {@link #nextReport}
+     * */
+    private long nextReport;
+
+    /**
+     * Constructor for the FrameProfiler.
+     * @param capacity      amount of frames kept for the statistics.
+     * */
+    public FrameProfiler(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Profiler capacity must be positive.");
+        }
+        samples = new long[PHASE_COUNT][capacity];
+        current = new long[PHASE_COUNT];
+        scratch = new long[capacity];
+        allocations = new long[capacity];
+    }
+
+    /**
+     * Start measuring a new frame.
+     * */
+    public void beginFrame() {
+        frameNumber++;
+        if (FRAME_EVENT.isEnabled()) {
+            frameEvent = new FrameEvent();
+            frameEvent.begin();
+        }
+        if (PHASE_EVENT.isEnabled()) {
+            phaseEvent = new PhaseEvent();
+            phaseEvent.begin();
+        }
+        frameStart = System.nanoTime();
+        lastMark = frameStart;
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            current[i] = 0;
+        }
+    }
+
+    /**
+     * Add the time since the previous mark (or the beginning of the frame) to a phase.
+     * @param phase     the phase that just finished.
+     * */
+    public void mark(int phase) {
+        long now = System.nanoTime();
+        current[phase] += now - lastMark;
+        lastMark = now;
+
+        if (phaseEvent != null) {
+            phaseEvent.end();
+            phaseEvent.frame = frameNumber;
+            phaseEvent.phase = PHASE_NAMES[phase];
+            phaseEvent.commit();
+            phaseEvent = PHASE_EVENT.isEnabled() ? new PhaseEvent() : null;
+            if (phaseEvent != null) phaseEvent.begin();
+        }
+    }
+
+    /**
+     * Finish measuring the current frame and store it in the ring buffers.
+     * */
+    public void endFrame() {
+        current[FRAME] = System.nanoTime() - frameStart;
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            samples[i][cursor] = current[i];
+        }
+
+        long allocated = 0;
+        boolean sampling = allocationThreshold > 0 || frameEvent != null;
+        if (sampling) {
+            allocated = allocationSampler.sample();
+            if (!sampledLastFrame) allocated = 0; // Counters read again, the bytes are not from this frame only
+        }
+        sampledLastFrame = sampling;
+        boolean spike = allocationThreshold > 0 && allocated > allocationThreshold;
+        if (spike) allocationSpikes++;
+        allocations[cursor] = allocated;
+
+        phaseEvent = null; // Time after the last mark is not part of any phase
+        if (frameEvent != null) {
+            frameEvent.end();
+            frameEvent.frame = frameNumber;
+            frameEvent.allocatedBytes = allocated;
+            frameEvent.allocationSpike = spike;
+            frameEvent.commit();
+            frameEvent = null;
+        }
+
+        cursor = (cursor + 1) % scratch.length;
+        if (count < scratch.length) count++;
+    }
+
+    /**
+     * Returns how many frames are available for the statistics.
+     * */
+    public int getFrameCount() {
+        return count;
+    }
+
+    /**
+     * Returns the duration (in nanoseconds) of a phase on the last stored frame.
+     * */
+    public long getLast(int phase) {
+        if (count == 0) return 0;
+        return samples[phase][(cursor + scratch.length - 1) % scratch.length];
+    }
+
+    /**
+     * Returns the average duration (in nanoseconds) of a phase over the stored frames.
+     * */
+    public double getAverage(int phase) {
+        if (count == 0) return 0.0;
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += samples[phase][i];
+        }
+        return (double)sum / count;
+    }
+
+    /**
+     * Returns the longest duration (in nanoseconds) of a phase over the stored frames.
+     * */
+    public long getMax(int phase) {
+        long max = 0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, samples[phase][i]);
+        }
+        return max;
+    }
+
+    /**
+     * Returns the duration (in nanoseconds) below which the given percentage of
+     * the stored frames fall for a phase.
+     * @param phase         the phase to be measured.
+     * @param percentile    from 0 to 100, e.g. 99 for the p99.
+     * */
+    public long getPercentile(int phase, double percentile) {
+        return percentile(samples[phase], percentile);
+    }
+
+    /**
+     * Returns the bytes allocated below which the given percentage of the stored
+     * frames fall, 0 for frames that were not sampled.
+     * @param percentile    from 0 to 100, e.g. 99 for the p99.
+     * */
+    public long getAllocationPercentile(double percentile) {
+        return percentile(allocations, percentile);
+    }
+
+    private long percentile(long[] values, double percentile) {
+        if (count == 0) return 0;
+        System.arraycopy(values, 0, scratch, 0, count);
+        int k = (int)Math.ceil(percentile / 100.0 * count) - 1;
+        return select(scratch, count, Math.max(0, Math.min(count - 1, k)));
+    }
+
+    /**
+     * Returns the bytes allocated by the tracked threads on the last stored frame.
+     * */
+    public long getLastAllocated() {
+        if (count == 0) return 0;
+        return allocations[(cursor + scratch.length - 1) % scratch.length];
+    }
+
+    /**
+     * Sample the bytes allocated on every frame, counting the frames above a threshold.
+     * @param bytesPerFrame     the threshold, zero to only sample while a Flight
+     *                          Recorder recording enables the frame events.
+     * */
+    public void setAllocationThreshold(long bytesPerFrame) {
+        if (bytesPerFrame < 0) {
+            throw new IllegalArgumentException("Allocation threshold must not be negative.");
+        }
+        allocationThreshold = bytesPerFrame;
+    }
+
+    /**
+     * Returns how many frames allocated more than the threshold.
+     * */
+    public long getAllocationSpikes() {
+        return allocationSpikes;
+    }
+
+    /**
+     * Sample the allocations of a thread (e.g. the main or the update thread).
+     * */
+    public void trackThread(Thread thread) {
+        allocationSampler.track(thread);
+    }
+
+    public void untrackThread(Thread thread) {
+        allocationSampler.untrack(thread);
+    }
+
+    /**
+     * Enable a periodic report of the statistics, see {@link #reportIfDue(PrintStream)}.
+     * @param intervalSeconds   seconds between reports, zero to disable them.
+     * */
+    public void setReportInterval(double intervalSeconds) {
+        reportInterval = (long)(intervalSeconds * 1e9);
+        nextReport = System.nanoTime() + reportInterval;
+    }
+
+    /**
+     * Returns true (once per interval) when the periodic report is due.
+     * */
+    public boolean isReportDue() {
+        if (reportInterval <= 0) return false;
+        long now = System.nanoTime();
+        if (now < nextReport) return false;
+        nextReport = now + reportInterval;
+        return true;
+    }
+
+    /**
+     * Print the statistics if the periodic report is due. Only allocates when
+     * the report is actually printed.
+     * */
+    public void reportIfDue(PrintStream out) {
+        if (isReportDue()) report(out);
+    }
+
+    /**
+     * Print p50/p95/p99/max (in milliseconds) for each phase over the stored frames.
+     * */
+    public void report(PrintStream out) {
+        StringBuilder builder = new StringBuilder("Frame profile (" + count + " frames, ms):");
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            builder.append(String.format("%n  %-15s p50 %7.3f  p95 %7.3f  p99 %7.3f  max %7.3f", PHASE_NAMES[i],
+                    getPercentile(i, 50) * 1e-6, getPercentile(i, 95) * 1e-6,
+                    getPercentile(i, 99) * 1e-6, getMax(i) * 1e-6));
+        }
+        if (allocationThreshold > 0) {
+            builder.append(String.format("%n  %-15s p50 %7.1f  p95 %7.1f  p99 %7.1f  (KiB, %d frames above %d KiB)",
+                    "allocated", getAllocationPercentile(50) / 1024.0, getAllocationPercentile(95) / 1024.0,
+                    getAllocationPercentile(99) / 1024.0, allocationSpikes, allocationThreshold / 1024));
+        }
+        out.println(builder);
+    }
+
+    /**
+     * Returns the name of a phase.
+     * */
+    public static String getPhaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    /**
+     * In place quick select, returns the k-th smallest of the first n values.
+     * */
+    private static long select(long[] values, int n, int k) {
+        int left = 0;
+        int right = n - 1;
+        while (left < right) {
+            long pivot = values[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) i++;
+                while (values[j] > pivot) j--;
+                if (i <= j) {
+                    long aux = values[i];
+                    values[i] = values[j];
+                    values[j] = aux;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return values[k];
+            }
+        }
+        return values[k];
+    }
+}
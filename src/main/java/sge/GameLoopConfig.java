@@ -0,0 +1,104 @@
+/**
+ * Game loop configuration class. It stores how the main loop of the
+ * {@link EngineCore} advances the active {@link Scene} on each frame.
+ * */
+
+package sge;
+
+public class GameLoopConfig {
+
+    /**
+     * Stores if the scene is updated with a fixed time step instead of the
+     * measured frame time: {@link #fixedTimeStep}
+     * */
+    public boolean fixedTimeStep;
+
+    /**
+     * Stores how many simulation ticks run per second when using a fixed
+     * time step: {@link #tickRate}
+     * */
+    public int tickRate;
+
+    /**
+     * Stores the maximum amount of ticks that can run in a single frame to
+     * catch up with a slow frame: {@link #maxTicksPerFrame}
+     * */
+    public int maxTicksPerFrame;
+
+    /**
+     * Stores if the scene is updated on its own thread while the main thread
+     * only polls events and renders: {@link #multiThreaded}
+     * */
+    public boolean multiThreaded;
+
+    /**
+     * Stores the maximum frames per second when v-sync is disabled, zero
+     * for no limit: {@link #frameCap}
+     * */
+    public int frameCap;
+
+    /**
+     * Stores if shaders are reloaded when their files change: {@link #shaderHotReload}
+     * */
+    public boolean shaderHotReload;
+
+    /**
+     * Stores the file the input is recorded to, null to not record: {@link #recordInput}
+     * */
+    public String recordInput;
+
+    /**
+     * Stores the recorded input file replayed instead of the live input,
+     * null to use the live input: {@link #replayInput}
+     * */
+    public String replayInput;
+
+    /**
+     * Stores if the engine runs without window nor OpenGL, only updating the
+     * scene: {@link #headless}
+     * */
+    public boolean headless;
+
+    /**
+     * Stores if headless ticks run one after the other instead of at the
+     * tick rate: {@link #asFastAsPossible}
+     * */
+    public boolean asFastAsPossible;
+
+    /**
+     * Stores after how many ticks a headless run stops, 0 to never stop: {@link #tickLimit}
+     * */
+    public long tickLimit;
+
+    /**
+     * Stores the maximum frames per second while the window is not focused,
+     * zero to keep the normal rate: {@link #backgroundFrameCap}
+     * */
+    public int backgroundFrameCap;
+
+    /**
+     * Stores if the loop stops, only waiting for events, while the window is
+     * minimized: {@link #pauseWhenMinimized}
+     * */
+    public boolean pauseWhenMinimized;
+
+    /**
+     * Stores if a frame only runs when something changed (input, window, assets,
+     * shaders or {@link EngineCore#requestRedraw()}): {@link #renderOnChange}
+     * */
+    public boolean renderOnChange;
+
+    GameLoopConfig(boolean fixedTimeStep, int tickRate, int maxTicksPerFrame) {
+        this.fixedTimeStep = fixedTimeStep;
+        this.tickRate = tickRate;
+        this.maxTicksPerFrame = maxTicksPerFrame;
+        this.multiThreaded = false;
+        this.frameCap = 0;
+        this.shaderHotReload = false;
+        this.recordInput = null;
+        this.replayInput = null;
+        this.headless = false;
+        this.asFastAsPossible = false;
+        this.tickLimit = 0L;
+    }
+}
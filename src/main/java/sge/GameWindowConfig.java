@@ -5,6 +5,10 @@ public class GameWindowConfig {
     public int height;
     public int scale;
     public String title;
+    public boolean dynamicResolution; // Render offscreen at a scale following the frame time
+    public float minResolutionScale; // Scales of width x height, the window size divided by its scale
+    public float maxResolutionScale;
+    public boolean linearUpscale; // Linear filtering when copying to the window, nearest otherwise
 
     GameWindowConfig(int width, int height, int scale, String title) {
         this.width = width;
@@ -0,0 +1,26 @@
+/**
+ * Phase event class. JDK Flight Recorder event covering one phase of a frame
+ * (see {@link FrameProfiler}), such as the scene update or the buffer swap.
+ * */
+
+package sge;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("sge.Phase")
+@Label("Frame Phase")
+@Category("SGE")
+@Description("One phase of an iteration of the engine main loop.")
+@StackTrace(false)
+final class PhaseEvent extends jdk.jfr.Event {
+
+    @Label("Frame")
+    long frame;
+
+    @Label("Phase")
+    String phase;
+}
@@ -0,0 +1,70 @@
+/**
+ * Query class. It caches the archetypes having all the included components and
+ * none of the excluded ones. The {@link World} adds new matching archetypes as
+ * they are created, so iterating a query never searches or allocates:
+ * <pre>
+ * for (int a = 0; a &lt; query.getArchetypeCount(); a++) {
+ *     Archetype archetype = query.getArchetype(a);
+ *     float[] x = archetype.getFloats(position, 0);
+ *     float[] vx = archetype.getFloats(velocity, 0);
+ *     for (int i = 0; i &lt; archetype.size(); i++) x[i] += vx[i] * deltaTime;
+ * }
+ * </pre>
+ * */
+
+package sge;
+
+import java.util.Arrays;
+
+public final class Query {
+    private final long include;
+    private final long exclude;
+
+    /**
+     * Stores the matching archetypes: {@link #archetypes}
+     * */
+    private Archetype[] archetypes = new Archetype[8];
+    private int count;
+
+    Query(long include, long exclude) {
+        this.include = include;
+        this.exclude = exclude;
+    }
+
+    boolean matches(long mask) {
+        return (mask & include) == include && (mask & exclude) == 0;
+    }
+
+    void addArchetype(Archetype archetype) {
+        if (count == archetypes.length) archetypes = Arrays.copyOf(archetypes, count * 2);
+        archetypes[count++] = archetype;
+    }
+
+    /**
+     * Returns how many archetypes match, some may be empty.
+     * */
+    public int getArchetypeCount() {
+        return count;
+    }
+
+    public Archetype getArchetype(int index) {
+        return archetypes[index];
+    }
+
+    /**
+     * Returns how many entities match.
+     * */
+    public int getEntityCount() {
+        int entities = 0;
+        for (int i = 0; i < count; i++) entities += archetypes[i].size();
+        return entities;
+    }
+
+    public long getInclude() {
+        return include;
+    }
+
+    public long getExclude() {
+        return exclude;
+    }
+}
@@ -4,9 +4,27 @@
 
 package sge;
 
+import java.util.function.Supplier;
+
 public abstract class Scene {
     private boolean isActive = false;
 
+    /**
+     * Stores the entities and components of the scene: {@link #world}
+     * */
+    protected final World world = new World();
+
+    /**
+     * Stores the systems run on every update: {@link #systems}
+     * */
+    private final SystemScheduler systems = new SystemScheduler();
+
+    /**
+     * Stores the snapshots of the state drawn by {@link #render(float)}, if
+     * the scene uses them: {@link #snapshots}
+     * */
+    private TripleBuffer<?> snapshots;
+
     /**
      * Default constructor for the Scene.
      * */
@@ -20,25 +38,104 @@ public abstract class Scene {
     public abstract void init();
 
     /**
-     * Update method to be implemented in every scene.
+     * Update method, runs every system of the scene. Scenes overriding it
+     * should call super.update(deltaTime) to keep running their systems.
      * @param deltaTime    the Delta Time, needed for controlling the speed
      *              of the animation independently of the Hardware used.
      * */
-    public abstract void update(float deltaTime);
+    public void update(float deltaTime) {
+        systems.run(world, deltaTime);
+    }
+
+    /**
+     * Add a system. It runs after the systems already added that conflict
+     * with it, see {@link EntitySystem#reads(ComponentType...)}.
+     * @param system    the system, initialized here.
+     * */
+    public void addSystem(EntitySystem system) {
+        systems.add(system, world);
+    }
+
+    /**
+     * Set if the systems run in parallel, or serially in the order they were
+     * added (deterministic, for debugging).
+     * */
+    public void setParallelSystems(boolean parallel) {
+        systems.setParallel(parallel);
+    }
+
+    /**
+     * Remove a system.
+     * */
+    public void removeSystem(EntitySystem system) {
+        systems.remove(system);
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Publish method, called after every update. When the engine runs the update
+     * and the rendering on different threads, the scene should copy here the state
+     * needed by {@link #render(float)} into the write buffer of its snapshots
+     * (see {@link #createSnapshots(Supplier)}), as both methods may run at the same time.
+     * */
+    public void publish() {
+
+    }
+
+    /**
+     * Create the snapshots shared by the update and the rendering, call it on
+     * {@link #init()}. The scene fills {@link TripleBuffer#getWriteBuffer()} on
+     * {@link #publish()} and draws {@link TripleBuffer#getReadBuffer()} on
+     * {@link #render(float)}: the engine publishes the snapshot after every
+     * publish and acquires the latest one before every render.
+     * @param factory   creates each one of the three snapshot instances.
+     * */
+    protected final <T> TripleBuffer<T> createSnapshots(Supplier<T> factory) {
+        TripleBuffer<T> buffer = new TripleBuffer<>(factory);
+        snapshots = buffer;
+        return buffer;
+    }
+
+    /**
+     * Publish the state after an update, on the updating thread.
+     * */
+    void commit() {
+        publish();
+        if (snapshots != null) snapshots.publish();
+    }
+
+    /**
+     * Take the latest published state before rendering, on the OpenGL thread.
+     * */
+    void acquire() {
+        if (snapshots != null) snapshots.acquire();
+    }
+
+    /**
+     * Render method, called once per frame after the scene was updated.
+     * @param alpha     interpolation factor (from 0 to 1) between the last two
+     *              updates when using a fixed time step, always 1 otherwise.
+     * */
+    public void render(float alpha) {
+
+    }
 
     /**
-     * Set the scene as the active scene.
+     * Mark the scene as the active scene. It only sets the flag: the engine
+     * updates and renders the scene it runs, and the entities stay in the world.
      * */
-    public void start() { // When game objects are implemented remember to render
-        // then and update the JavaDoc for this method
+    public void start() {
         isActive = true;
     }
 
     /**
-     * Set the scene as inactive scene.
+     * Mark the scene as inactive. The world and its systems are kept, so the
+     * scene can be started again as it was.
      * */
-    public void stop() {// When game objects are implemented remember to delete
-        // then from the screen and update the JavaDoc for this method
+    public void stop() {
         isActive = false;
     }
 }
@@ -0,0 +1,345 @@
+/**
+ * System scheduler class. It runs the systems of a scene on a work stealing
+ * {@link ForkJoinPool}. Each system declares which components it reads and
+ * writes, and every frame the systems are run following a dependency graph:
+ * a system only waits for the systems added before it that conflict with it
+ * (one writes what the other reads or writes), the rest run in parallel.
+ * The tasks are created when the systems change and reused every frame.
+ * In serial mode the systems run one after the other on the calling thread,
+ * in the order they were added, which is deterministic (for debugging).
+ * */
+
+package sge;
+
+import utils.Time;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class SystemScheduler {
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+
+    private final ForkJoinPool pool;
+    private final List<EntitySystem> systems = new ArrayList<>();
+    private boolean parallel;
+
+    /**
+     * Stores if the systems changed since the graph was built: {@link #dirty}
+     * */
+    private boolean dirty = true;
+
+    /**
+     * Stores the dependency graph: the systems waiting for each system, and how
+     * many systems each one waits for: {@link #successors}, {@link #dependencies}
+     * */
+    private int[][] successors;
+    private int[] dependencies;
+
+    /**
+     * Stores how many dependencies of each system are still running this frame: {@link #remaining}
+     * */
+    private AtomicIntegerArray remaining;
+
+    private EntitySystem[] ordered;
+    private SystemTask[] tasks;
+    private RootTask root;
+
+    /**
+     * Stores the arguments of the systems for the current frame: {@link #world}, {@link #deltaTime}
+     * */
+    private World world;
+    private float deltaTime;
+    private EngineContext context; // Bound to the pool threads while they run a system
+    private Time time; // Bound with it, the thread updating may have a Time of its own
+
+    /**
+     * Default constructor for the SystemScheduler, using the common pool.
+     * */
+    public SystemScheduler() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for the SystemScheduler.
+     * @param pool  the pool running the systems.
+     * */
+    public SystemScheduler(ForkJoinPool pool) {
+        this.pool = pool;
+        parallel = pool.getParallelism() > 1;
+    }
+
+    /**
+     * Add a system, initializing it.
+     * @param system    the system.
+     * @param world     the world it will update.
+     * */
+    public void add(EntitySystem system, World world) {
+        if (system.scheduler != null) {
+            throw new IllegalStateException("The system was already added to a scheduler.");
+        }
+        system.init(world);
+        system.scheduler = this;
+        systems.add(system);
+        dirty = true;
+    }
+
+    /**
+     * Remove a system.
+     * */
+    public void remove(EntitySystem system) {
+        if (systems.remove(system)) {
+            system.scheduler = null;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Run every system once, returning when all of them finished.
+     * @param world         the world being updated.
+     * @param deltaTime     the Delta Time of the update.
+     * */
+    public void run(World world, float deltaTime) {
+        if (!parallel) {
+            for (int i = 0; i < systems.size(); i++) {
+                systems.get(i).update(world, deltaTime);
+            }
+            return;
+        }
+        if (dirty) build();
+        int count = ordered.length;
+        if (count == 0) return;
+
+        this.world = world;
+        this.deltaTime = deltaTime;
+        this.context = EngineContext.current();
+        this.time = Time.current();
+        for (int i = 0; i < count; i++) {
+            remaining.set(i, dependencies[i]);
+            tasks[i].reinitialize();
+            tasks[i].setPendingCount(0);
+        }
+        root.reinitialize();
+        root.setPendingCount(count);
+        pool.invoke(root);
+        this.world = null;
+        this.context = null;
+        this.time = null;
+    }
+
+    /**
+     * Set if the systems (and their chunks) run in parallel, or serially on the
+     * calling thread in the order they were added.
+     * */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Build the dependency graph. Systems only depend on conflicting systems
+     * added before them, so the graph has no cycles.
+     * */
+    private void build() {
+        int count = systems.size();
+        ordered = systems.toArray(new EntitySystem[0]);
+        successors = new int[count][];
+        dependencies = new int[count];
+        remaining = new AtomicIntegerArray(count);
+        root = new RootTask();
+        tasks = new SystemTask[count];
+        int[] buffer = new int[count];
+        for (int i = 0; i < count; i++) {
+            int found = 0;
+            for (int j = i + 1; j < count; j++) {
+                if (conflict(ordered[i], ordered[j])) {
+                    buffer[found++] = j;
+                    dependencies[j]++;
+                }
+            }
+            successors[i] = Arrays.copyOf(buffer, found);
+            tasks[i] = new SystemTask(root, i);
+        }
+        dirty = false;
+    }
+
+    private static boolean conflict(EntitySystem a, EntitySystem b) {
+        return (a.getWriteMask() & (b.getReadMask() | b.getWriteMask())) != 0
+                || (b.getWriteMask() & a.getReadMask()) != 0;
+    }
+
+    /**
+     * Task completing when every system finished.
+     * */
+    @SuppressWarnings("serial") // Never serialized
+    private final class RootTask extends CountedCompleter<Void> {
+        @Override
+        public void compute() {
+            for (int i = 0; i < tasks.length; i++) {
+                if (dependencies[i] == 0) tasks[i].fork();
+            }
+            tryComplete();
+        }
+    }
+
+    /**
+     * Task running a system, then the systems that were only waiting for it.
+     * */
+    @SuppressWarnings("serial") // Never serialized
+    private final class SystemTask extends CountedCompleter<Void> {
+        private final int index;
+
+        SystemTask(RootTask root, int index) {
+            super(root);
+            this.index = index;
+        }
+
+        @Override
+        public void compute() {
+            EngineContext previous = EngineContext.current();
+            Time previousTime = Time.current();
+            enter(context, time);
+            try {
+                ordered[index].update(world, deltaTime);
+            } finally {
+                exit(context, previous, previousTime);
+            }
+            for (int next : successors[index]) {
+                if (remaining.decrementAndGet(next) == 0) tasks[next].fork();
+            }
+            tryComplete();
+        }
+    }
+
+    /**
+     * Bind the context and Time of the thread running the scheduler to the
+     * calling (pool) thread, does nothing without a context.
+     * */
+    private static void enter(EngineContext context, Time time) {
+        if (context == null) return;
+        if (EngineContext.current() != context) context.bind();
+        Time.bind(time);
+    }
+
+    /**
+     * Restore the context and Time bound to the calling thread before {@link #enter(EngineContext, Time)}.
+     * */
+    private static void exit(EngineContext context, EngineContext previous, Time previousTime) {
+        if (context == null) return;
+        if (previous == null) {
+            EngineContext.unbind();
+        } else if (previous != context) {
+            previous.bind();
+        }
+        if (previousTime != Time.current()) Time.bind(previousTime);
+    }
+
+    /**
+     * Job splitting the archetypes of a query into chunks run in parallel.
+     * Each system has its own, reused every update.
+     * */
+    @SuppressWarnings("serial") // Never serialized
+    static final class ChunkJob extends CountedCompleter<Void> {
+        private Archetype[] archetypes = new Archetype[16];
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private ChunkTask[] chunks = new ChunkTask[0];
+        private int count;
+        private ChunkAction action;
+        private EngineContext context; // Of the system splitting the job, bound to the threads running chunks
+        private Time time;
+
+        void run(ForkJoinPool pool, Query query, int chunkSize, ChunkAction action) {
+            count = 0;
+            for (int a = 0; a < query.getArchetypeCount(); a++) {
+                Archetype archetype = query.getArchetype(a);
+                for (int start = 0; start < archetype.size(); start += chunkSize) {
+                    addChunk(archetype, start, Math.min(archetype.size(), start + chunkSize));
+                }
+            }
+            if (count <= 1) { // Not worth splitting
+                if (count == 1) action.run(archetypes[0], starts[0], ends[0]);
+                return;
+            }
+            this.action = action;
+            this.context = EngineContext.current();
+            this.time = Time.current();
+            for (int i = 0; i < count; i++) {
+                chunks[i].reinitialize();
+                chunks[i].setPendingCount(0);
+            }
+            reinitialize();
+            setPendingCount(count);
+            if (ForkJoinTask.inForkJoinPool()) {
+                invoke(); // Helps running the chunks while waiting
+            } else {
+                pool.invoke(this);
+            }
+            this.action = null;
+            this.context = null;
+            this.time = null;
+        }
+
+        private void addChunk(Archetype archetype, int start, int end) {
+            if (count == archetypes.length) {
+                archetypes = Arrays.copyOf(archetypes, count * 2);
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            if (count == chunks.length) {
+                chunks = Arrays.copyOf(chunks, Math.max(16, count * 2));
+                for (int i = count; i < chunks.length; i++) chunks[i] = new ChunkTask(this, i);
+            }
+            archetypes[count] = archetype;
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+        }
+
+        @Override
+        public void compute() {
+            for (int i = 1; i < count; i++) chunks[i].fork();
+            chunks[0].compute(); // Run one chunk on this thread
+            tryComplete();
+        }
+    }
+
+    /**
+     * Task running the action on one chunk.
+     * */
+    @SuppressWarnings("serial") // Never serialized
+    private static final class ChunkTask extends CountedCompleter<Void> {
+        private final ChunkJob job;
+        private final int index;
+
+        ChunkTask(ChunkJob job, int index) {
+            super(job);
+            this.job = job;
+            this.index = index;
+        }
+
+        @Override
+        public void compute() {
+            EngineContext previous = EngineContext.current();
+            Time previousTime = Time.current();
+            enter(job.context, job.time);
+            try {
+                job.action.run(job.archetypes[index], job.starts[index], job.ends[index]);
+            } finally {
+                exit(job.context, previous, previousTime);
+            }
+            tryComplete();
+        }
+    }
+}
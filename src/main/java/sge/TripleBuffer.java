@@ -0,0 +1,90 @@
+/**
+ * Triple buffer class. It shares the latest snapshot of a scene state between
+ * the update thread (writer) and the render thread (reader) without locks.
+ * The writer fills {@link #getWriteBuffer()} and calls {@link #publish()} once
+ * per tick, the reader calls {@link #acquire()} once per frame and always gets
+ * the most recent complete snapshot, never one that is still being written.
+ * Scenes get one from {@link Scene#createSnapshots(java.util.function.Supplier)},
+ * and the engine publishes and acquires it around their update and render.
+ * @param <T>   the type of the snapshot, all three instances are reused.
+ * */
+
+package sge;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class TripleBuffer<T> {
+    private static final int INDEX_MASK = 0b11;
+    private static final int DIRTY = 0b100;
+
+    /**
+     * Stores the three snapshot instances: {@link #buffers}
+     * */
+    private final Object[] buffers;
+
+    /**
+     * Stores the index of the snapshot shared between both threads, with the
+     * {@link #DIRTY} bit set if it holds a snapshot the reader has not seen: {@link #shared}
+     * */
+    private final AtomicInteger shared;
+
+    /**
+     * Stores the index of the snapshot owned by the writer: {@link #writeIndex}
+     * */
+    private int writeIndex;
+
+    /**
+     * Stores the index of the snapshot owned by the reader: {@link #readIndex}
+     * */
+    private int readIndex;
+
+    /**
+     * Constructor for the TripleBuffer.
+     * @param factory   creates each one of the three snapshot instances.
+     * */
+    public TripleBuffer(Supplier<T> factory) {
+        buffers = new Object[] {factory.get(), factory.get(), factory.get()};
+        writeIndex = 0;
+        shared = new AtomicInteger(1);
+        readIndex = 2;
+    }
+
+    /**
+     * Returns the snapshot the writer should fill, only valid until the
+     * next call to {@link #publish()}.
+     * */
+    @SuppressWarnings("unchecked")
+    public T getWriteBuffer() {
+        return (T)buffers[writeIndex];
+    }
+
+    /**
+     * Make the written snapshot available to the reader and take the
+     * shared one to be written next. Called from the writer thread.
+     * */
+    public void publish() {
+        writeIndex = shared.getAndSet(writeIndex | DIRTY) & INDEX_MASK;
+    }
+
+    /**
+     * Returns the latest published snapshot, which stays valid until the next
+     * call to this method. Called from the reader thread.
+     * */
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        if ((shared.get() & DIRTY) != 0) {
+            readIndex = shared.getAndSet(readIndex) & INDEX_MASK;
+        }
+        return (T)buffers[readIndex];
+    }
+
+    /**
+     * Returns the snapshot returned by the last call to {@link #acquire()}.
+     * Called from the reader thread.
+     * */
+    @SuppressWarnings("unchecked")
+    public T getReadBuffer() {
+        return (T)buffers[readIndex];
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * World class. It holds every entity of a scene and their components, grouped
+ * by {@link Archetype} (set of components). An entity is only an int: the index
+ * of its slot plus a generation, so an id of a destroyed entity is never taken
+ * for the entity reusing its slot. Adding and removing entities or components is
+ * O(1) (swap-remove) and, once the archetypes involved exist, allocation free.
+ * Entities must not be created, destroyed or change components while iterating
+ * a {@link Query}, as that moves rows of the archetypes being iterated.
+ * */
+
+package sge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class World {
+    public static final int MAX_COMPONENTS = 64;
+
+    private static final int INDEX_BITS = 24;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = 0x7F; // Keeps the ids positive
+
+    /**
+     * Stores the registered components, by id: {@link #types}
+     * */
+    private final ComponentType[] types = new ComponentType[MAX_COMPONENTS];
+    private int typeCount;
+
+    private final List<Archetype> archetypes = new ArrayList<>();
+    private final List<Query> queries = new ArrayList<>();
+    private final Archetype emptyArchetype;
+
+    /**
+     * Stores the archetype, the row and the generation of each entity slot:
+     * {@link #entityArchetypes}, {@link #entityRows}, {@link #generations}
+     * */
+    private Archetype[] entityArchetypes = new Archetype[1024];
+    private int[] entityRows = new int[1024];
+    private int[] generations = new int[1024];
+
+    /**
+     * Stores how many slots were ever used: {@link #slotCount}
+     * */
+    private int slotCount;
+
+    /**
+     * Stores the slots of destroyed entities, reused first: {@link #freeSlots}
+     * */
+    private int[] freeSlots = new int[64];
+    private int freeCount;
+
+    /**
+     * Default constructor for the World.
+     * */
+    public World() {
+        emptyArchetype = new Archetype(0L, types);
+        archetypes.add(emptyArchetype);
+    }
+
+    /**
+     * Register a component.
+     * @param name          name of the component, for debugging.
+     * @param floatFields   how many float fields it has.
+     * @param intFields     how many int fields it has.
+     * */
+    public ComponentType register(String name, int floatFields, int intFields) {
+        if (typeCount == MAX_COMPONENTS) {
+            throw new IllegalStateException("No more than " + MAX_COMPONENTS + " components can be registered.");
+        }
+        if (floatFields < 0 || intFields < 0) {
+            throw new IllegalArgumentException("Invalid field count for component '" + name + "'.");
+        }
+        ComponentType type = new ComponentType(typeCount, name, floatFields, intFields);
+        types[typeCount++] = type;
+        return type;
+    }
+
+    /**
+     * Returns the archetype mask of a set of components.
+     * */
+    public static long mask(ComponentType... components) {
+        long mask = 0L;
+        for (ComponentType component : components) mask |= component.getMask();
+        return mask;
+    }
+
+    /**
+     * Create an entity without components.
+     * */
+    public int create() {
+        return create(0L);
+    }
+
+    /**
+     * Create an entity with a set of components, all their fields zeroed.
+     * @param mask  components of the entity, see {@link #mask(ComponentType...)}.
+     * */
+    public int create(long mask) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slotCount > INDEX_MASK) throw new IllegalStateException("Too many entities.");
+            if (slotCount == entityRows.length) growSlots();
+            slot = slotCount++;
+        }
+        int entity = (generations[slot] << INDEX_BITS) | slot;
+        Archetype archetype = getOrCreateArchetype(mask);
+        entityArchetypes[slot] = archetype;
+        entityRows[slot] = archetype.add(entity);
+        return entity;
+    }
+
+    /**
+     * Destroy an entity. Its id stops being alive and its slot is reused.
+     * */
+    public void destroy(int entity) {
+        int slot = checkAlive(entity);
+        removeRow(entityArchetypes[slot], entityRows[slot]);
+        entityArchetypes[slot] = null;
+        generations[slot] = (generations[slot] + 1) & GENERATION_MASK;
+        if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Returns if an entity was created and not destroyed yet.
+     * */
+    public boolean isAlive(int entity) {
+        int slot = entity & INDEX_MASK;
+        return entity >= 0 && slot < slotCount && entityArchetypes[slot] != null
+                && generations[slot] == (entity >>> INDEX_BITS);
+    }
+
+    /**
+     * Add a component to an entity, with its fields zeroed. Does nothing if the
+     * entity already has it.
+     * */
+    public void add(int entity, ComponentType type) {
+        int slot = checkAlive(entity);
+        Archetype from = entityArchetypes[slot];
+        if (from.has(type)) return;
+        Archetype to = from.addEdges[type.getId()];
+        if (to == null) {
+            to = getOrCreateArchetype(from.getMask() | type.getMask());
+            from.addEdges[type.getId()] = to;
+        }
+        move(slot, from, to);
+    }
+
+    /**
+     * Remove a component from an entity. Does nothing if the entity does not have it.
+     * */
+    public void remove(int entity, ComponentType type) {
+        int slot = checkAlive(entity);
+        Archetype from = entityArchetypes[slot];
+        if (!from.has(type)) return;
+        Archetype to = from.removeEdges[type.getId()];
+        if (to == null) {
+            to = getOrCreateArchetype(from.getMask() & ~type.getMask());
+            from.removeEdges[type.getId()] = to;
+        }
+        move(slot, from, to);
+    }
+
+    public boolean has(int entity, ComponentType type) {
+        return entityArchetypes[checkAlive(entity)].has(type);
+    }
+
+    /**
+     * Returns the archetype of an entity.
+     * */
+    public Archetype getArchetype(int entity) {
+        return entityArchetypes[checkAlive(entity)];
+    }
+
+    /**
+     * Returns the row of an entity in its archetype.
+     * */
+    public int getRow(int entity) {
+        return entityRows[checkAlive(entity)];
+    }
+
+    public float getFloat(int entity, ComponentType type, int field) {
+        int slot = checkAlive(entity);
+        return entityArchetypes[slot].getFloats(type, field)[entityRows[slot]];
+    }
+
+    public void setFloat(int entity, ComponentType type, int field, float value) {
+        int slot = checkAlive(entity);
+        entityArchetypes[slot].getFloats(type, field)[entityRows[slot]] = value;
+    }
+
+    public int getInt(int entity, ComponentType type, int field) {
+        int slot = checkAlive(entity);
+        return entityArchetypes[slot].getInts(type, field)[entityRows[slot]];
+    }
+
+    public void setInt(int entity, ComponentType type, int field, int value) {
+        int slot = checkAlive(entity);
+        entityArchetypes[slot].getInts(type, field)[entityRows[slot]] = value;
+    }
+
+    /**
+     * Returns a query of the entities having every one of the components.
+     * Queries are cached, create them once (e.g. on {@link EntitySystem#init(World)}).
+     * */
+    public Query query(ComponentType... with) {
+        return query(mask(with), 0L);
+    }
+
+    /**
+     * Returns a query of the entities having every included component and none
+     * of the excluded ones.
+     * @param include   mask of the required components.
+     * @param exclude   mask of the forbidden components.
+     * */
+    public Query query(long include, long exclude) {
+        for (Query query : queries) {
+            if (query.getInclude() == include && query.getExclude() == exclude) return query;
+        }
+        Query query = new Query(include, exclude);
+        for (Archetype archetype : archetypes) {
+            if (query.matches(archetype.getMask())) query.addArchetype(archetype);
+        }
+        queries.add(query);
+        return query;
+    }
+
+    /**
+     * Returns how many entities are alive.
+     * */
+    public int getEntityCount() {
+        return slotCount - freeCount;
+    }
+
+    public int getArchetypeCount() {
+        return archetypes.size();
+    }
+
+    private int checkAlive(int entity) {
+        if (!isAlive(entity)) {
+            throw new IllegalArgumentException("Entity " + entity + " is not alive.");
+        }
+        return entity & INDEX_MASK;
+    }
+
+    private void move(int slot, Archetype from, Archetype to) {
+        int row = entityRows[slot];
+        int toRow = to.add(from.getEntities()[row]);
+        from.copyRow(row, to, toRow);
+        removeRow(from, row);
+        entityArchetypes[slot] = to;
+        entityRows[slot] = toRow;
+    }
+
+    private void removeRow(Archetype archetype, int row) {
+        int moved = archetype.swapRemove(row);
+        if (moved != -1) entityRows[moved & INDEX_MASK] = row;
+    }
+
+    private Archetype getOrCreateArchetype(long mask) {
+        if (mask == 0L) return emptyArchetype;
+        if (typeCount < MAX_COMPONENTS && (mask >>> typeCount) != 0) {
+            throw new IllegalArgumentException("Mask uses components that are not registered.");
+        }
+        for (Archetype archetype : archetypes) {
+            if (archetype.getMask() == mask) return archetype;
+        }
+        Archetype archetype = new Archetype(mask, types);
+        archetypes.add(archetype);
+        for (Query query : queries) {
+            if (query.matches(mask)) query.addArchetype(archetype);
+        }
+        return archetype;
+    }
+
+    private void growSlots() {
+        int capacity = entityRows.length * 2;
+        entityArchetypes = Arrays.copyOf(entityArchetypes, capacity);
+        entityRows = Arrays.copyOf(entityRows, capacity);
+        generations = Arrays.copyOf(generations, capacity);
+    }
+}
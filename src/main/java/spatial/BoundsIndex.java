@@ -0,0 +1,223 @@
+/**
+ * Bounds index class. It holds what every {@link SpatialIndex} needs: the bounds
+ * of each object (struct of arrays, by id), the exact tests of the queries, and
+ * marks to report objects stored in several places only once.
+ * */
+
+package spatial;
+
+import java.util.Arrays;
+
+abstract class BoundsIndex implements SpatialIndex {
+    static final int AABB = 0;
+    static final int RADIUS = 1;
+    static final int RAY = 2;
+
+    /**
+     * Stores the bounds of each object, by id: {@link #minX}, {@link #minY}, {@link #maxX}, {@link #maxY}
+     * */
+    float[] minX;
+    float[] minY;
+    float[] maxX;
+    float[] maxY;
+    boolean[] present;
+    int size;
+
+    /**
+     * Stores the last query that reported each object: {@link #marks}
+     * */
+    private int[] marks;
+    private int mark;
+
+    /**
+     * Stores the current query: its kind, its bounding box and its shape:
+     * {@link #queryMode}, {@link #queryMinX}, {@link #queryX}...
+     * */
+    int queryMode;
+    float queryMinX, queryMinY, queryMaxX, queryMaxY;
+    float queryX, queryY, queryRadius2;
+    float queryDx, queryDy, queryLength;
+
+    BoundsIndex() {
+        resize(256);
+    }
+
+    /**
+     * Resize the arrays indexed by id, subclasses with more of them override it.
+     * */
+    void resize(int capacity) {
+        int old = (minX == null) ? 0 : minX.length;
+        minX = (old == 0) ? new float[capacity] : Arrays.copyOf(minX, capacity);
+        minY = (old == 0) ? new float[capacity] : Arrays.copyOf(minY, capacity);
+        maxX = (old == 0) ? new float[capacity] : Arrays.copyOf(maxX, capacity);
+        maxY = (old == 0) ? new float[capacity] : Arrays.copyOf(maxY, capacity);
+        present = (old == 0) ? new boolean[capacity] : Arrays.copyOf(present, capacity);
+        marks = (old == 0) ? new int[capacity] : Arrays.copyOf(marks, capacity);
+    }
+
+    /**
+     * Store the bounds of a new object.
+     * */
+    void add(int id, float x0, float y0, float x1, float y1) {
+        if (id < 0) throw new IllegalArgumentException("Invalid id " + id + ".");
+        if (id >= minX.length) resize(Math.max(id + 1, minX.length * 2));
+        if (present[id]) throw new IllegalArgumentException("Object " + id + " is already in the index.");
+        present[id] = true;
+        size++;
+        set(id, x0, y0, x1, y1);
+    }
+
+    void set(int id, float x0, float y0, float x1, float y1) {
+        minX[id] = Math.min(x0, x1);
+        minY[id] = Math.min(y0, y1);
+        maxX[id] = Math.max(x0, x1);
+        maxY[id] = Math.max(y0, y1);
+    }
+
+    void checkPresent(int id) {
+        if (!contains(id)) throw new IllegalArgumentException("Object " + id + " is not in the index.");
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return id >= 0 && id < present.length && present[id];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(present, false);
+        size = 0;
+    }
+
+    @Override
+    public int queryAabb(float x0, float y0, float x1, float y1, int[] results) {
+        queryMode = AABB;
+        queryMinX = Math.min(x0, x1);
+        queryMinY = Math.min(y0, y1);
+        queryMaxX = Math.max(x0, x1);
+        queryMaxY = Math.max(y0, y1);
+        return search(results);
+    }
+
+    @Override
+    public int queryRadius(float x, float y, float radius, int[] results) {
+        queryMode = RADIUS;
+        queryX = x;
+        queryY = y;
+        queryRadius2 = radius * radius;
+        queryMinX = x - radius;
+        queryMinY = y - radius;
+        queryMaxX = x + radius;
+        queryMaxY = y + radius;
+        return search(results);
+    }
+
+    @Override
+    public int queryRay(float originX, float originY, float directionX, float directionY, float maxDistance, int[] results) {
+        if (!Float.isFinite(maxDistance) || maxDistance < 0f) {
+            throw new IllegalArgumentException("Invalid ray length " + maxDistance + ".");
+        }
+        float length = (float)Math.sqrt(directionX * directionX + directionY * directionY);
+        if (length == 0f) return 0;
+        queryMode = RAY;
+        queryX = originX;
+        queryY = originY;
+        queryDx = directionX / length;
+        queryDy = directionY / length;
+        queryLength = maxDistance;
+        float endX = originX + queryDx * maxDistance;
+        float endY = originY + queryDy * maxDistance;
+        queryMinX = Math.min(originX, endX);
+        queryMinY = Math.min(originY, endY);
+        queryMaxX = Math.max(originX, endX);
+        queryMaxY = Math.max(originY, endY);
+        return search(results);
+    }
+
+    /**
+     * Run the current query.
+     * @return how many ids were written to results.
+     * */
+    abstract int search(int[] results);
+
+    /**
+     * Returns if a box is hit by the current query.
+     * */
+    final boolean test(float x0, float y0, float x1, float y1) {
+        if (x0 > queryMaxX || x1 < queryMinX || y0 > queryMaxY || y1 < queryMinY) return false;
+        switch (queryMode) {
+            case RADIUS: {
+                float dx = queryX - Math.max(x0, Math.min(queryX, x1));
+                float dy = queryY - Math.max(y0, Math.min(queryY, y1));
+                return dx * dx + dy * dy <= queryRadius2;
+            }
+            case RAY:
+                return rayEntry(x0, y0, x1, y1) >= 0f;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Returns if an object is hit by the current query.
+     * */
+    final boolean test(int id) {
+        return test(minX[id], minY[id], maxX[id], maxY[id]);
+    }
+
+    /**
+     * Returns the distance along the current ray where it enters a box, or -1 if it misses.
+     * */
+    final float rayEntry(float x0, float y0, float x1, float y1) {
+        float near = 0f;
+        float far = queryLength;
+        if (queryDx == 0f) {
+            if (queryX < x0 || queryX > x1) return -1f;
+        } else {
+            float t0 = (x0 - queryX) / queryDx;
+            float t1 = (x1 - queryX) / queryDx;
+            near = Math.max(near, Math.min(t0, t1));
+            far = Math.min(far, Math.max(t0, t1));
+        }
+        if (queryDy == 0f) {
+            if (queryY < y0 || queryY > y1) return -1f;
+        } else {
+            float t0 = (y0 - queryY) / queryDy;
+            float t1 = (y1 - queryY) / queryDy;
+            near = Math.max(near, Math.min(t0, t1));
+            far = Math.min(far, Math.max(t0, t1));
+        }
+        return (near <= far) ? near : -1f;
+    }
+
+    /**
+     * Returns if two objects overlap.
+     * */
+    final boolean overlap(int a, int b) {
+        return minX[a] <= maxX[b] && maxX[a] >= minX[b] && minY[a] <= maxY[b] && maxY[a] >= minY[b];
+    }
+
+    /**
+     * Start a new query for {@link #visit(int)}.
+     * */
+    final void newMark() {
+        if (++mark == 0) { // Wrapped around, forget every old mark
+            Arrays.fill(marks, 0);
+            mark = 1;
+        }
+    }
+
+    /**
+     * Returns true the first time an object is seen by the current query.
+     * */
+    final boolean visit(int id) {
+        if (marks[id] == mark) return false;
+        marks[id] = mark;
+        return true;
+    }
+}
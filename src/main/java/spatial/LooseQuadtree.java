@@ -0,0 +1,250 @@
+/**
+ * Loose quadtree class. It is a {@link SpatialIndex} over a square area,
+ * storing each object in a single node: the node of its size, at the depth
+ * where the cells are at least as big as the object, containing its center.
+ * Nodes are loose (their bounds are twice the size of their cell), so an
+ * object never needs to be split or pushed up when it moves a bit.
+ * The tree is implicit: every node of every depth is a slot of flat arrays,
+ * found by arithmetic, and subtrees without objects are skipped. Best for
+ * objects of very different sizes or clustered in a few places.
+ * Objects outside the area are kept at the root, always tested.
+ * */
+
+package spatial;
+
+import java.util.Arrays;
+
+public class LooseQuadtree extends BoundsIndex {
+    private static final int MAX_DEPTH = 12;
+
+    /**
+     * Stores the area of the tree: {@link #originX}, {@link #originY}, {@link #areaSize}
+     * */
+    private final float originX;
+    private final float originY;
+    private final float areaSize;
+    private final int maxDepth;
+
+    /**
+     * Stores the first object of each node, -1 if empty, and how many objects
+     * are in the subtree of each node: {@link #heads}, {@link #counts}
+     * */
+    private final int[] heads;
+    private final int[] counts;
+
+    /**
+     * Stores the node of each object and its neighbours in the node, by id:
+     * {@link #nodes}, {@link #next}, {@link #previous}
+     * */
+    private int[] nodes;
+    private int[] next;
+    private int[] previous;
+
+    /**
+     * Stores the nodes still to visit by a search: {@link #stackDepth}, {@link #stackX}, {@link #stackY}
+     * */
+    private final int[] stackDepth;
+    private final int[] stackX;
+    private final int[] stackY;
+
+    /**
+     * Constructor for the LooseQuadtree.
+     * @param originX   x of the corner of the area.
+     * @param originY   y of the corner of the area.
+     * @param size      size of the (square) area.
+     * @param maxDepth  depth of the smallest nodes, from 0 to 12.
+     * */
+    public LooseQuadtree(float originX, float originY, float size, int maxDepth) {
+        if (!(size > 0f)) throw new IllegalArgumentException("Invalid size " + size + ".");
+        if (maxDepth < 0 || maxDepth > MAX_DEPTH) {
+            throw new IllegalArgumentException("The depth must be between 0 and " + MAX_DEPTH + ".");
+        }
+        this.originX = originX;
+        this.originY = originY;
+        this.areaSize = size;
+        this.maxDepth = maxDepth;
+        int nodeCount = offset(maxDepth + 1);
+        heads = new int[nodeCount];
+        counts = new int[nodeCount];
+        Arrays.fill(heads, -1);
+        stackDepth = new int[4 * (maxDepth + 1)];
+        stackX = new int[stackDepth.length];
+        stackY = new int[stackDepth.length];
+    }
+
+    @Override
+    void resize(int capacity) {
+        super.resize(capacity);
+        int old = (nodes == null) ? 0 : nodes.length;
+        nodes = (old == 0) ? new int[capacity] : Arrays.copyOf(nodes, capacity);
+        next = (old == 0) ? new int[capacity] : Arrays.copyOf(next, capacity);
+        previous = (old == 0) ? new int[capacity] : Arrays.copyOf(previous, capacity);
+    }
+
+    @Override
+    public void insert(int id, float minX, float minY, float maxX, float maxY) {
+        add(id, minX, minY, maxX, maxY);
+        link(id, place(id));
+    }
+
+    @Override
+    public void move(int id, float minX, float minY, float maxX, float maxY) {
+        checkPresent(id);
+        set(id, minX, minY, maxX, maxY);
+        int node = place(id);
+        if (node == nodes[id]) return; // Still fits its loose node
+        unlink(id);
+        link(id, node);
+    }
+
+    @Override
+    public void remove(int id) {
+        if (!contains(id)) return;
+        unlink(id);
+        present[id] = false;
+        size--;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        Arrays.fill(heads, -1);
+        Arrays.fill(counts, 0);
+    }
+
+    @Override
+    int search(int[] results) {
+        int found = 0;
+        int top = push(0, 0, 0, 0);
+        while (top > 0 && found < results.length) {
+            top--;
+            int depth = stackDepth[top], x = stackX[top], y = stackY[top];
+            int node = offset(depth) + (y << depth) + x;
+            if (counts[node] == 0) continue;
+            if (depth > 0) {
+                float cell = areaSize / (1 << depth);
+                float x0 = originX + x * cell - cell * 0.5f;
+                float y0 = originY + y * cell - cell * 0.5f;
+                if (!test(x0, y0, x0 + cell * 2f, y0 + cell * 2f)) continue; // Loose bounds missed
+            }
+            for (int id = heads[node]; id != -1 && found < results.length; id = next[id]) {
+                if (test(id)) results[found++] = id;
+            }
+            if (depth < maxDepth) top = pushChildren(top, depth, x, y);
+        }
+        return found;
+    }
+
+    @Override
+    public void forEachPair(PairConsumer consumer) {
+        for (int node = 0; node < heads.length; node++) {
+            for (int a = heads[node]; a != -1; a = next[a]) {
+                pairsOf(a, consumer);
+            }
+        }
+    }
+
+    /**
+     * Report the pairs between an object and the objects after it, ordered by
+     * node and then by position in the node, so each pair is reported once.
+     * */
+    private void pairsOf(int id, PairConsumer consumer) {
+        queryMode = AABB;
+        queryMinX = minX[id];
+        queryMinY = minY[id];
+        queryMaxX = maxX[id];
+        queryMaxY = maxY[id];
+        for (int other = next[id]; other != -1; other = next[other]) {
+            if (overlap(id, other)) consumer.accept(id, other);
+        }
+        int top = push(0, 0, 0, 0);
+        while (top > 0) {
+            top--;
+            int depth = stackDepth[top], x = stackX[top], y = stackY[top];
+            int node = offset(depth) + (y << depth) + x;
+            if (counts[node] == 0) continue;
+            if (depth > 0) {
+                float cell = areaSize / (1 << depth);
+                float x0 = originX + x * cell - cell * 0.5f;
+                float y0 = originY + y * cell - cell * 0.5f;
+                if (!test(x0, y0, x0 + cell * 2f, y0 + cell * 2f)) continue;
+            }
+            if (node > nodes[id]) {
+                for (int other = heads[node]; other != -1; other = next[other]) {
+                    if (overlap(id, other)) consumer.accept(id, other);
+                }
+            }
+            if (depth < maxDepth) top = pushChildren(top, depth, x, y);
+        }
+    }
+
+    private int push(int top, int depth, int x, int y) {
+        stackDepth[top] = depth;
+        stackX[top] = x;
+        stackY[top] = y;
+        return top + 1;
+    }
+
+    private int pushChildren(int top, int depth, int x, int y) {
+        top = push(top, depth + 1, x * 2, y * 2);
+        top = push(top, depth + 1, x * 2 + 1, y * 2);
+        top = push(top, depth + 1, x * 2, y * 2 + 1);
+        return push(top, depth + 1, x * 2 + 1, y * 2 + 1);
+    }
+
+    /**
+     * Returns the node an object belongs to.
+     * */
+    private int place(int id) {
+        float centerX = (minX[id] + maxX[id]) * 0.5f - originX;
+        float centerY = (minY[id] + maxY[id]) * 0.5f - originY;
+        if (centerX < 0f || centerY < 0f || centerX > areaSize || centerY > areaSize) return 0; // Outside, at the root
+        float extent = Math.max(maxX[id] - minX[id], maxY[id] - minY[id]);
+        int depth = maxDepth;
+        while (depth > 0 && extent > areaSize / (1 << depth)) depth--;
+        int side = 1 << depth;
+        int x = Math.min(side - 1, (int)(centerX / areaSize * side));
+        int y = Math.min(side - 1, (int)(centerY / areaSize * side));
+        return offset(depth) + (y << depth) + x;
+    }
+
+    private void link(int id, int node) {
+        nodes[id] = node;
+        previous[id] = -1;
+        next[id] = heads[node];
+        if (heads[node] != -1) previous[heads[node]] = id;
+        heads[node] = id;
+        count(node, 1);
+    }
+
+    private void unlink(int id) {
+        int node = nodes[id];
+        if (previous[id] == -1) {
+            heads[node] = next[id];
+        } else {
+            next[previous[id]] = next[id];
+        }
+        if (next[id] != -1) previous[next[id]] = previous[id];
+        count(node, -1);
+    }
+
+    /**
+     * Update the object count of a node and every node above it.
+     * */
+    private void count(int node, int change) {
+        int depth = 0;
+        while (offset(depth + 1) <= node) depth++;
+        int index = node - offset(depth);
+        int x = index & ((1 << depth) - 1), y = index >> depth;
+        for (; depth >= 0; depth--, x >>= 1, y >>= 1) {
+            counts[offset(depth) + (y << depth) + x] += change;
+        }
+    }
+
+    /**
+     * Returns the index of the first node of a depth.
+     * */
+    private static int offset(int depth) {
+        return ((1 << (2 * depth)) - 1) / 3;
+    }
+}
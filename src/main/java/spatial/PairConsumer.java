@@ -0,0 +1,17 @@
+/**
+ * Pair consumer interface. It receives the pairs of objects found by
+ * {@link SpatialIndex#forEachPair(PairConsumer)}.
+ * */
+
+package spatial;
+
+@FunctionalInterface
+public interface PairConsumer {
+
+    /**
+     * Receive a pair of objects whose bounds overlap, each pair only once.
+     * @param a     id of one object.
+     * @param b     id of the other object.
+     * */
+    void accept(int a, int b);
+}
@@ -0,0 +1,103 @@
+/**
+ * Spatial index interface. It finds objects by position without testing every
+ * one of them (broadphase), for collisions, picking and culling. Objects are
+ * axis aligned boxes identified by int ids chosen by the caller; ids index
+ * arrays, so they should be small and dense (e.g. entity slots).
+ * Queries write the ids found into an array given by the caller and never
+ * allocate. Indexes are not thread safe, not even for concurrent queries.
+ * */
+
+package spatial;
+
+import utils.Vect2D;
+
+public interface SpatialIndex {
+
+    /**
+     * Add an object.
+     * @param id    id of the object, not already in the index.
+     * */
+    void insert(int id, float minX, float minY, float maxX, float maxY);
+
+    /**
+     * Update the bounds of an object already in the index. Cheap when the
+     * object stays in the same cells or nodes.
+     * */
+    void move(int id, float minX, float minY, float maxX, float maxY);
+
+    /**
+     * Remove an object, does nothing if it is not in the index.
+     * */
+    void remove(int id);
+
+    boolean contains(int id);
+
+    /**
+     * Returns how many objects are in the index.
+     * */
+    int size();
+
+    /**
+     * Remove every object.
+     * */
+    void clear();
+
+    /**
+     * Find the objects overlapping a box.
+     * @param results   receives the ids found, the query stops when it is full.
+     * @return how many ids were written to results.
+     * */
+    int queryAabb(float minX, float minY, float maxX, float maxY, int[] results);
+
+    /**
+     * Find the objects overlapping a circle.
+     * @param results   receives the ids found, the query stops when it is full.
+     * @return how many ids were written to results.
+     * */
+    int queryRadius(float x, float y, float radius, int[] results);
+
+    /**
+     * Find the objects hit by a ray.
+     * @param directionX    x of the direction, does not need to be normalized.
+     * @param directionY    y of the direction.
+     * @param maxDistance   length of the ray, must be finite.
+     * @param results       receives the ids found, the query stops when it is full.
+     * @return how many ids were written to results.
+     * */
+    int queryRay(float originX, float originY, float directionX, float directionY, float maxDistance, int[] results);
+
+    /**
+     * Find every pair of objects whose bounds overlap.
+     * @param consumer  receives each pair once.
+     * */
+    void forEachPair(PairConsumer consumer);
+
+    /**
+     * Add an object from its corners.
+     * */
+    default void insert(int id, Vect2D min, Vect2D max) {
+        insert(id, (float)min.x, (float)min.y, (float)max.x, (float)max.y);
+    }
+
+    /**
+     * Update the bounds of an object from its corners.
+     * */
+    default void move(int id, Vect2D min, Vect2D max) {
+        move(id, (float)min.x, (float)min.y, (float)max.x, (float)max.y);
+    }
+
+    /**
+     * Find the objects overlapping a circle.
+     * */
+    default int queryRadius(Vect2D center, double radius, int[] results) {
+        return queryRadius((float)center.x, (float)center.y, (float)radius, results);
+    }
+
+    /**
+     * Find the objects hit by a ray.
+     * */
+    default int queryRay(Vect2D origin, Vect2D direction, double maxDistance, int[] results) {
+        return queryRay((float)origin.x, (float)origin.y, (float)direction.x, (float)direction.y,
+                (float)maxDistance, results);
+    }
+}
@@ -0,0 +1,337 @@
+/**
+ * Uniform grid class. It is a {@link SpatialIndex} dividing the plane in square
+ * cells of a fixed size, each object stored in every cell its bounds touch.
+ * Cells are hashed into a fixed table of buckets, so the grid is unbounded and
+ * its memory does not depend on the area covered. Best for many objects of
+ * similar size, spread evenly: use a cell size about the size of the objects.
+ * Objects covering more cells than there are buckets are kept in a list tested
+ * by every query instead, and cell coordinates are clamped to a range wide
+ * enough for any sensible world, so huge or infinite bounds stay cheap.
+ * */
+
+package spatial;
+
+import java.util.Arrays;
+
+public class UniformGrid extends BoundsIndex {
+    private static final int MAX_CELL = 1 << 29; // Cell coordinates stay in [-MAX_CELL, MAX_CELL]
+
+    private final float cellSize;
+    private final float inverseCellSize;
+
+    /**
+     * Stores the first node of each bucket, -1 if empty: {@link #heads}
+     * */
+    private final int[] heads;
+    private final int bucketMask;
+
+    /**
+     * Stores the nodes (an object in a cell), linked per bucket:
+     * {@link #nodeObject}, {@link #nodeNext}, {@link #nodeCellX}, {@link #nodeCellY}
+     * */
+    private int[] nodeObject = new int[1024];
+    private int[] nodeNext = new int[1024];
+    private int[] nodeCellX = new int[1024];
+    private int[] nodeCellY = new int[1024];
+    private int nodeCount;
+    private int freeNode = -1;
+
+    /**
+     * Stores the cells covered by each object, by id:
+     * {@link #cellMinX}, {@link #cellMinY}, {@link #cellMaxX}, {@link #cellMaxY}
+     * */
+    private int[] cellMinX;
+    private int[] cellMinY;
+    private int[] cellMaxX;
+    private int[] cellMaxY;
+
+    /**
+     * Stores the objects covering too many cells to be linked, and the index
+     * of each object in that list, -1 if linked: {@link #large}, {@link #largeSlot}
+     * */
+    private int[] large = new int[16];
+    private int largeCount;
+    private int[] largeSlot;
+
+    /**
+     * Constructor for the UniformGrid, with 4096 buckets.
+     * @param cellSize  size of the cells.
+     * */
+    public UniformGrid(float cellSize) {
+        this(cellSize, 4096);
+    }
+
+    /**
+     * Constructor for the UniformGrid.
+     * @param cellSize  size of the cells.
+     * @param buckets   size of the hash table, rounded up to a power of two.
+     * */
+    public UniformGrid(float cellSize, int buckets) {
+        if (!(cellSize > 0f)) throw new IllegalArgumentException("Invalid cell size " + cellSize + ".");
+        this.cellSize = cellSize;
+        inverseCellSize = 1f / cellSize;
+        int size = Integer.highestOneBit(Math.max(16, buckets - 1)) << 1;
+        heads = new int[size];
+        bucketMask = size - 1;
+        Arrays.fill(heads, -1);
+    }
+
+    @Override
+    void resize(int capacity) {
+        super.resize(capacity);
+        int old = (cellMinX == null) ? 0 : cellMinX.length;
+        cellMinX = (old == 0) ? new int[capacity] : Arrays.copyOf(cellMinX, capacity);
+        cellMinY = (old == 0) ? new int[capacity] : Arrays.copyOf(cellMinY, capacity);
+        cellMaxX = (old == 0) ? new int[capacity] : Arrays.copyOf(cellMaxX, capacity);
+        cellMaxY = (old == 0) ? new int[capacity] : Arrays.copyOf(cellMaxY, capacity);
+        largeSlot = (old == 0) ? new int[capacity] : Arrays.copyOf(largeSlot, capacity);
+        Arrays.fill(largeSlot, old, capacity, -1);
+    }
+
+    @Override
+    public void insert(int id, float minX, float minY, float maxX, float maxY) {
+        add(id, minX, minY, maxX, maxY);
+        updateCells(id);
+        link(id);
+    }
+
+    @Override
+    public void move(int id, float minX, float minY, float maxX, float maxY) {
+        checkPresent(id);
+        set(id, minX, minY, maxX, maxY);
+        int x0 = cell(this.minX[id]), y0 = cell(this.minY[id]);
+        int x1 = cell(this.maxX[id]), y1 = cell(this.maxY[id]);
+        if (x0 == cellMinX[id] && y0 == cellMinY[id] && x1 == cellMaxX[id] && y1 == cellMaxY[id]) {
+            return; // Same cells, the new bounds are enough
+        }
+        unlink(id);
+        updateCells(id);
+        link(id);
+    }
+
+    @Override
+    public void remove(int id) {
+        if (!contains(id)) return;
+        unlink(id);
+        present[id] = false;
+        size--;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        Arrays.fill(heads, -1);
+        nodeCount = 0;
+        freeNode = -1;
+        for (int i = 0; i < largeCount; i++) {
+            largeSlot[large[i]] = -1;
+        }
+        largeCount = 0;
+    }
+
+    @Override
+    int search(int[] results) {
+        newMark();
+        int found = 0;
+        if (queryMode == RAY) return searchRay(results);
+
+        int x0 = cell(queryMinX), y0 = cell(queryMinY);
+        int x1 = cell(queryMaxX), y1 = cell(queryMaxY);
+        if (cellCount(x0, y0, x1, y1) > heads.length) {
+            return searchAll(results); // Covers more cells than there are buckets
+        }
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                found = searchCell(x, y, results, found);
+                if (found == results.length) return found;
+            }
+        }
+        return searchLarge(results, found);
+    }
+
+    /**
+     * Test every object, faster than walking more cells than there are buckets.
+     * */
+    private int searchAll(int[] results) {
+        int found = 0;
+        for (int id = 0; id < present.length && found < results.length; id++) {
+            if (present[id] && test(id)) results[found++] = id;
+        }
+        return found;
+    }
+
+    private int searchLarge(int[] results, int found) {
+        for (int i = 0; i < largeCount && found < results.length; i++) {
+            int id = large[i];
+            if (test(id)) results[found++] = id;
+        }
+        return found;
+    }
+
+    /**
+     * Walk the cells crossed by the current ray, nearest first (Amanatides-Woo).
+     * */
+    private int searchRay(int[] results) {
+        int x = cell(queryX), y = cell(queryY);
+        int endX = cell(queryX + queryDx * queryLength), endY = cell(queryY + queryDy * queryLength);
+        int stepX = (queryDx > 0f) ? 1 : -1;
+        int stepY = (queryDy > 0f) ? 1 : -1;
+        float deltaX = (queryDx == 0f) ? Float.POSITIVE_INFINITY : Math.abs(cellSize / queryDx);
+        float deltaY = (queryDy == 0f) ? Float.POSITIVE_INFINITY : Math.abs(cellSize / queryDy);
+        float nextX = (queryDx == 0f) ? Float.POSITIVE_INFINITY
+                : ((x + (stepX > 0 ? 1 : 0)) * cellSize - queryX) / queryDx;
+        float nextY = (queryDy == 0f) ? Float.POSITIVE_INFINITY
+                : ((y + (stepY > 0 ? 1 : 0)) * cellSize - queryY) / queryDy;
+        long steps = Math.abs((long)endX - x) + Math.abs((long)endY - y);
+        if (steps > heads.length || isClamped(x) || isClamped(y) || isClamped(endX) || isClamped(endY)) {
+            return searchAll(results); // Longer than the buckets, or leaving the range of the cells
+        }
+
+        int found = searchCell(x, y, results, 0);
+        for (int i = 0; i < steps && found < results.length; i++) {
+            if (nextX < nextY) {
+                x += stepX;
+                nextX += deltaX;
+            } else {
+                y += stepY;
+                nextY += deltaY;
+            }
+            found = searchCell(x, y, results, found);
+        }
+        return searchLarge(results, found);
+    }
+
+    private int searchCell(int x, int y, int[] results, int found) {
+        for (int node = heads[bucket(x, y)]; node != -1 && found < results.length; node = nodeNext[node]) {
+            if (nodeCellX[node] != x || nodeCellY[node] != y) continue; // Other cell in the same bucket
+            int id = nodeObject[node];
+            if (visit(id) && test(id)) results[found++] = id;
+        }
+        return found;
+    }
+
+    @Override
+    public void forEachPair(PairConsumer consumer) {
+        for (int head : heads) {
+            for (int a = head; a != -1; a = nodeNext[a]) {
+                int cx = nodeCellX[a], cy = nodeCellY[a];
+                int first = nodeObject[a];
+                for (int b = nodeNext[a]; b != -1; b = nodeNext[b]) {
+                    if (nodeCellX[b] != cx || nodeCellY[b] != cy) continue;
+                    int second = nodeObject[b];
+                    if (!overlap(first, second)) continue;
+                    // Pairs sharing several cells are only reported from the cell
+                    // holding the corner of their intersection
+                    if (cell(Math.max(minX[first], minX[second])) == cx
+                            && cell(Math.max(minY[first], minY[second])) == cy) {
+                        consumer.accept(first, second);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < largeCount; i++) {
+            int first = large[i];
+            for (int second = 0; second < present.length; second++) {
+                if (!present[second] || (largeSlot[second] >= 0 && largeSlot[second] <= i)) continue;
+                if (overlap(first, second)) consumer.accept(first, second);
+            }
+        }
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    private int cell(float coordinate) {
+        float cell = (float)Math.floor(coordinate * inverseCellSize);
+        if (cell >= MAX_CELL) return MAX_CELL;
+        if (cell <= -MAX_CELL) return -MAX_CELL;
+        return (int)cell; // NaN gives 0
+    }
+
+    private static boolean isClamped(int cell) {
+        return cell == MAX_CELL || cell == -MAX_CELL;
+    }
+
+    /**
+     * Returns how many cells a range of cells holds, without overflowing.
+     * */
+    private static long cellCount(int x0, int y0, int x1, int y1) {
+        return ((long)x1 - x0 + 1) * ((long)y1 - y0 + 1);
+    }
+
+    private int bucket(int x, int y) {
+        return ((x * 0x9E3779B1) ^ (y * 0x85EBCA77)) >>> 7 & bucketMask;
+    }
+
+    private void updateCells(int id) {
+        cellMinX[id] = cell(minX[id]);
+        cellMinY[id] = cell(minY[id]);
+        cellMaxX[id] = cell(maxX[id]);
+        cellMaxY[id] = cell(maxY[id]);
+    }
+
+    private void link(int id) {
+        if (cellCount(cellMinX[id], cellMinY[id], cellMaxX[id], cellMaxY[id]) > heads.length) {
+            if (largeCount == large.length) large = Arrays.copyOf(large, largeCount * 2);
+            largeSlot[id] = largeCount;
+            large[largeCount++] = id;
+            return;
+        }
+        for (int y = cellMinY[id]; y <= cellMaxY[id]; y++) {
+            for (int x = cellMinX[id]; x <= cellMaxX[id]; x++) {
+                int node = newNode();
+                int bucket = bucket(x, y);
+                nodeObject[node] = id;
+                nodeCellX[node] = x;
+                nodeCellY[node] = y;
+                nodeNext[node] = heads[bucket];
+                heads[bucket] = node;
+            }
+        }
+    }
+
+    private void unlink(int id) {
+        int slot = largeSlot[id];
+        if (slot >= 0) {
+            int last = large[--largeCount];
+            large[slot] = last;
+            largeSlot[last] = slot;
+            largeSlot[id] = -1;
+            return;
+        }
+        for (int y = cellMinY[id]; y <= cellMaxY[id]; y++) {
+            for (int x = cellMinX[id]; x <= cellMaxX[id]; x++) {
+                int bucket = bucket(x, y);
+                int previous = -1;
+                for (int node = heads[bucket]; node != -1; previous = node, node = nodeNext[node]) {
+                    if (nodeObject[node] != id || nodeCellX[node] != x || nodeCellY[node] != y) continue;
+                    if (previous == -1) {
+                        heads[bucket] = nodeNext[node];
+                    } else {
+                        nodeNext[previous] = nodeNext[node];
+                    }
+                    nodeNext[node] = freeNode;
+                    freeNode = node;
+                    break;
+                }
+            }
+        }
+    }
+
+    private int newNode() {
+        if (freeNode != -1) {
+            int node = freeNode;
+            freeNode = nodeNext[node];
+            return node;
+        }
+        if (nodeCount == nodeObject.length) {
+            int capacity = nodeCount * 2;
+            nodeObject = Arrays.copyOf(nodeObject, capacity);
+            nodeNext = Arrays.copyOf(nodeNext, capacity);
+            nodeCellX = Arrays.copyOf(nodeCellX, capacity);
+            nodeCellY = Arrays.copyOf(nodeCellY, capacity);
+        }
+        return nodeCount++;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Simulation test scene. It only updates entities (no OpenGL), so it can run
+ * headless: many entities moving and bouncing inside an area.
+ * */
+
+package test;
+
+import sge.Archetype;
+import sge.ChunkAction;
+import sge.ComponentType;
+import sge.EntitySystem;
+import sge.Query;
+import sge.Scene;
+import sge.SystemScheduler;
+import sge.World;
+import utils.Vect2FBatch;
+
+import java.util.Random;
+
+public class SimulationTestScene extends Scene {
+    private static final float AREA = 1000.0f;
+
+    private final int entities;
+    private ComponentType position;
+    private ComponentType velocity;
+
+    /**
+     * Constructor for the SimulationTestScene.
+     * @param entities  how many moving entities to create.
+     * */
+    public SimulationTestScene(int entities) {
+        this.entities = entities;
+    }
+
+    @Override
+    public void init() {
+        position = world.register("position", 2, 0);
+        velocity = world.register("velocity", 2, 0);
+
+        Random random = new Random(1);
+        long mask = World.mask(position, velocity);
+        for (int i = 0; i < entities; i++) {
+            int entity = world.create(mask);
+            world.setFloat(entity, position, 0, random.nextFloat() * AREA);
+            world.setFloat(entity, position, 1, random.nextFloat() * AREA);
+            world.setFloat(entity, velocity, 0, random.nextFloat() * 200.0f - 100.0f);
+            world.setFloat(entity, velocity, 1, random.nextFloat() * 200.0f - 100.0f);
+        }
+
+        addSystem(new MoveSystem());
+        addSystem(new BounceSystem());
+    }
+
+    /**
+     * Moves the entities by their velocity.
+     * */
+    private class MoveSystem extends EntitySystem {
+        private Query query;
+        private float deltaTime;
+        private final ChunkAction move = (archetype, start, end) ->
+                Vect2FBatch.addScaled(archetype.getFloats(position, 0), archetype.getFloats(position, 1),
+                        archetype.getFloats(velocity, 0), archetype.getFloats(velocity, 1), deltaTime, start, end - start);
+
+        @Override
+        public void init(World world) {
+            reads(velocity);
+            writes(position);
+            query = world.query(position, velocity);
+        }
+
+        @Override
+        public void update(World world, float deltaTime) {
+            this.deltaTime = deltaTime;
+            forEachChunk(query, SystemScheduler.DEFAULT_CHUNK_SIZE, move);
+        }
+    }
+
+    /**
+     * Bounces the entities on the borders of the area.
+     * */
+    private class BounceSystem extends EntitySystem {
+        private Query query;
+
+        @Override
+        public void init(World world) {
+            writes(position, velocity);
+            query = world.query(position, velocity);
+        }
+
+        @Override
+        public void update(World world, float deltaTime) {
+            for (int a = 0; a < query.getArchetypeCount(); a++) {
+                Archetype archetype = query.getArchetype(a);
+                bounce(archetype.getFloats(position, 0), archetype.getFloats(velocity, 0), archetype.size());
+                bounce(archetype.getFloats(position, 1), archetype.getFloats(velocity, 1), archetype.size());
+            }
+        }
+
+        private void bounce(float[] positions, float[] velocities, int count) {
+            for (int i = 0; i < count; i++) {
+                if (positions[i] < 0.0f || positions[i] > AREA) {
+                    positions[i] = Math.max(0.0f, Math.min(AREA, positions[i]));
+                    velocities[i] = -velocities[i];
+                }
+            }
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package test;
 
-import org.lwjgl.BufferUtils;
+import asset.AssetHandle;
+import renderer.BufferManager;
+import renderer.BufferRange;
+import renderer.RenderQueue;
 import renderer.Shader;
+import sge.EngineContext;
+import sge.EngineCore;
 import sge.Scene;
+import utils.FrameArena;
 
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
@@ -34,10 +40,11 @@ public class TestScene extends Scene {
     };
 
     private int VAOID; // Vertex Array Object
-    private int VBOID; // Vertex Buffer Object
-    private int EBOID; // Element Buffer Object
+    private BufferRange vertexRange; // Vertexes, on a pooled buffer
+    private BufferRange elementRange; // Elements, on a pooled buffer
 
-    private Shader defaultShader;
+    private AssetHandle<Shader> defaultShader; // Loaded in the background
+    private RenderQueue renderQueue;
 
     public TestScene() {
         System.out.println("Testing...");
@@ -45,61 +52,53 @@ public class TestScene extends Scene {
 
     @Override
     public void init() {
-        this.defaultShader = new Shader("assets/shaders/basicShader.glsl");
-        this.defaultShader.create();
+        EngineCore engine = EngineContext.current().getEngine();
+        this.defaultShader = engine.getAssetManager().loadShader("assets/shaders/basicShader.glsl");
+        this.renderQueue = engine.getRenderQueue();
+        BufferManager buffers = engine.getBufferManager();
 
         VAOID = glGenVertexArrays(); // Generate VAO unique ID
         glBindVertexArray(VAOID); // Mark to do things on the object with this ID
 
-        FloatBuffer vertexesBuffer = BufferUtils.createFloatBuffer(vertexes.length); // Create Float Buffer
-        vertexesBuffer.put(vertexes).flip(); // put vertexes and orient it correctly for OpenGL
+        FrameArena arena = FrameArena.local(); // Released by the engine at the end of the frame
+        FloatBuffer vertexesBuffer = arena.floats(vertexes); // Copy the vertexes, oriented for OpenGL
 
-        VBOID = glGenBuffers();
-        glBindBuffer(GL_ARRAY_BUFFER, VBOID); // Set it to use this buffer
-        glBufferData(GL_ARRAY_BUFFER, vertexesBuffer, GL_DYNAMIC_DRAW);
+        vertexRange = buffers.allocate(GL_ARRAY_BUFFER, vertexes.length * Float.BYTES);
+        buffers.upload(vertexRange, vertexesBuffer);
+        glBindBuffer(GL_ARRAY_BUFFER, vertexRange.getBuffer()); // Set it to use this buffer
 
-        IntBuffer elementBuffer = BufferUtils.createIntBuffer(elementArray.length);
-        elementBuffer.put(elementArray).flip(); // put elements and orient it correctly for OpenGL
+        IntBuffer elementBuffer = arena.ints(elementArray); // Copy the elements, oriented for OpenGL
 
-        EBOID = glGenBuffers();
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, EBOID);
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, elementBuffer, GL_DYNAMIC_DRAW);
+        elementRange = buffers.allocate(GL_ELEMENT_ARRAY_BUFFER, elementArray.length * Integer.BYTES);
+        buffers.upload(elementRange, elementBuffer);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, elementRange.getBuffer()); // Kept by the VAO
 
         // Define what part of the vertexes array defines position and which defines color.
         int posSize = 3; // x, y, z
         int colorSize = 4; // R, G, B, A
         int vertexSizeInBytes = (posSize + colorSize) * Float.BYTES;
-        glVertexAttribPointer(0, posSize, GL_FLOAT, false, vertexSizeInBytes, 0); // Location 0
+        long base = vertexRange.getOffset(); // The vertexes start at their range of the pooled buffer
+        glVertexAttribPointer(0, posSize, GL_FLOAT, false, vertexSizeInBytes, base); // Location 0
         // is position on the basicShader;
         glEnableVertexAttribArray(0); // Location 0
 
-        glVertexAttribPointer(1, colorSize, GL_FLOAT, false, vertexSizeInBytes, posSize * Float.BYTES);
+        glVertexAttribPointer(1, colorSize, GL_FLOAT, false, vertexSizeInBytes, base + posSize * Float.BYTES);
         // Location 1 is position on the basicShader;
-        glEnableVertexAttribArray(0); // Location 1
+        glEnableVertexAttribArray(1); // Location 1, the VAO keeps both enabled
+        glBindVertexArray(0);
     }
 
     @Override
     public void update(float deltaTime) {
-        // Bind Shader Program
-        this.defaultShader.use();
-
-        // Bind used VAO
-        glBindVertexArray(VAOID);
-
-        // Enable vertex attributes for position and color
-        glEnableVertexAttribArray(0);
-        glEnableVertexAttribArray(1);
-
-        // Draw on screen
-        glDrawElements(GL_TRIANGLES, elementArray.length, GL_UNSIGNED_INT, 0);
-
-        // Unbind attributes
-        glDisableVertexAttribArray(0);
-        glDisableVertexAttribArray(1);
+        super.update(deltaTime);
+    }
 
-        glBindVertexArray(0);
+    @Override
+    public void render(float alpha) {
+        Shader shader = defaultShader.get();
+        if (shader == null) return; // Still loading, nothing to draw yet
 
-        // Unbind Shader Program
-        defaultShader.detach();
+        // Submit the draw, the engine binds the shader and VAO only if they changed
+        renderQueue.drawElements(0, 0.0f, shader, 0, VAOID, GL_TRIANGLES, elementArray.length, elementRange.getOffset());
     }
 }
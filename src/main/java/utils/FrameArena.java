@@ -0,0 +1,262 @@
+/**
+ * Frame arena class. It hands out native (off-heap) memory for transient data,
+ * such as vertexes and elements on their way to OpenGL, by bumping an offset
+ * into a block allocated once with MemoryUtil.memAlloc. Everything is released
+ * at once by {@link #reset()}, which the engine calls at the end of every loop
+ * iteration, so transient buffers never reach the garbage collector nor churn
+ * the direct memory. When a frame needs more than the block, extra blocks are
+ * chained and the block grows on the next reset to fit the peak usage.
+ * Each thread has its own arena ({@link #local()}): the engine binds its frame
+ * arena to the thread running it, the asset manager lends one to each decode,
+ * and other threads get one of their own, which they must reset (or rewind
+ * with {@link #mark()} and {@link #release(long)}) and free before they end,
+ * as a dying thread does not free it. Memory from an arena must not be used
+ * after it is reset, nor from another thread.
+ * */
+
+package utils;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import static org.lwjgl.system.MemoryUtil.*;
+
+public class FrameArena {
+    public static final int DEFAULT_LOCAL_CAPACITY = 64 * 1024;
+    private static final int ALIGNMENT = 16;
+
+    /**
+     * Stores the arena of each thread: {@link #LOCAL}
+     * */
+    private static final ThreadLocal<FrameArena> LOCAL = ThreadLocal.withInitial(() -> new FrameArena(DEFAULT_LOCAL_CAPACITY, true));
+
+    /**
+     * Stores the address and size of each block, the first one being the main
+     * block: {@link #addresses}, {@link #sizes}
+     * */
+    private long[] addresses = new long[4];
+    private int[] sizes = new int[4];
+    private int blockCount; // The main block is only allocated when first needed
+
+    /**
+     * Stores the size of the main block: {@link #capacity}
+     * */
+    private int capacity;
+
+    /**
+     * Stores the block being filled and the offset of its first free byte:
+     * {@link #current}, {@link #offset}
+     * */
+    private int current;
+    private int offset;
+    private long filled; // Bytes of the blocks before the current one
+    private final boolean threadLocal; // Created by local(), freed when another arena is bound
+
+    /**
+     * Stores the most bytes used between two resets: {@link #peak}
+     * */
+    private long peak;
+
+    /**
+     * Constructor for the FrameArena.
+     * @param capacity      size (in bytes) of the main block.
+     * */
+    public FrameArena(int capacity) {
+        this(capacity, false);
+    }
+
+    private FrameArena(int capacity, boolean threadLocal) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Arena capacity must be positive.");
+        }
+        this.capacity = capacity;
+        this.threadLocal = threadLocal;
+    }
+
+    /**
+     * Returns the arena of the calling thread.
+     * */
+    public static FrameArena local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Make an arena the one of the calling thread, freeing the one it replaces
+     * unless it is the same.
+     * @param arena     the arena, null to go back to a thread local one.
+     * */
+    public static void bind(FrameArena arena) {
+        FrameArena previous = LOCAL.get();
+        if (previous == arena) return;
+        if (arena == null) {
+            LOCAL.remove();
+        } else {
+            LOCAL.set(arena);
+        }
+        if (previous.threadLocal) previous.free();
+    }
+
+    /**
+     * Allocate memory aligned to 16 bytes.
+     * @return the address of the memory.
+     * */
+    public long malloc(int bytes) {
+        return malloc(bytes, ALIGNMENT);
+    }
+
+    /**
+     * Allocate memory.
+     * @param bytes         size of the memory.
+     * @param alignment     alignment of the address, a power of two up to 16.
+     * @return the address of the memory.
+     * */
+    public long malloc(int bytes, int alignment) {
+        if (bytes < 0 || alignment <= 0 || alignment > ALIGNMENT || (alignment & (alignment - 1)) != 0) {
+            throw new IllegalArgumentException("Invalid arena allocation: " + bytes + " bytes aligned to " + alignment + ".");
+        }
+        if (blockCount == 0) addBlock(capacity);
+
+        int start = (offset + alignment - 1) & -alignment;
+        if (start + bytes > sizes[current]) { // Chain a block, the main one grows on the next reset
+            addBlock(Math.max(capacity, bytes));
+            filled += sizes[current];
+            current++;
+            start = 0;
+        }
+        offset = start + bytes;
+        peak = Math.max(peak, filled + offset);
+        return addresses[current] + start;
+    }
+
+    public ByteBuffer bytes(int count) {
+        return memByteBuffer(malloc(count), count);
+    }
+
+    public FloatBuffer floats(int count) {
+        return memFloatBuffer(malloc(count * Float.BYTES), count);
+    }
+
+    public IntBuffer ints(int count) {
+        return memIntBuffer(malloc(count * Integer.BYTES), count);
+    }
+
+    /**
+     * Returns a buffer holding a copy of the values, ready to be read.
+     * */
+    public FloatBuffer floats(float[] values) {
+        FloatBuffer buffer = floats(values.length);
+        buffer.put(values).flip();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer holding a copy of the values, ready to be read.
+     * */
+    public IntBuffer ints(int[] values) {
+        IntBuffer buffer = ints(values.length);
+        buffer.put(values).flip();
+        return buffer;
+    }
+
+    /**
+     * Returns the current position of the arena, to rewind it with {@link #release(long)}.
+     * */
+    public long mark() {
+        return ((long)blockCount << 32) | offset; // The blocks in use are always the first blockCount
+    }
+
+    /**
+     * Release everything allocated after a mark, freeing the blocks allocated
+     * since (even the main block, if the mark was taken before it was).
+     * @param mark  a position returned by {@link #mark()} since the last reset.
+     * */
+    public void release(long mark) {
+        int blocks = (int)(mark >>> 32);
+        int position = (int)mark;
+        if (blocks > blockCount || (blocks == blockCount && position > offset)) {
+            throw new IllegalStateException("The arena mark is ahead of the arena position.");
+        }
+        while (blockCount > blocks) {
+            blockCount--;
+            nmemFree(addresses[blockCount]);
+            if (blockCount > 0) filled -= sizes[blockCount - 1];
+        }
+        current = Math.max(0, blockCount - 1);
+        offset = position;
+    }
+
+    /**
+     * Release everything allocated. If the main block was too small, it is
+     * replaced by one fitting the peak usage.
+     * */
+    public void reset() {
+        if (peak > capacity) {
+            int grown = (int)Math.min(Integer.MAX_VALUE - 8, Math.max(peak, 2L * capacity));
+            free();
+            capacity = grown;
+            addBlock(capacity);
+        }
+        current = 0;
+        offset = 0;
+        filled = 0;
+        peak = 0;
+    }
+
+    /**
+     * Free the native memory. The arena can still be used, allocating it again.
+     * */
+    public void free() {
+        for (int i = 0; i < blockCount; i++) {
+            nmemFree(addresses[i]);
+        }
+        blockCount = 0;
+        current = 0;
+        offset = 0;
+        filled = 0;
+        peak = 0;
+    }
+
+    private void addBlock(int size) {
+        long address = nmemAlloc(size);
+        if (address == NULL) {
+            throw new OutOfMemoryError("Could not allocate " + size + " bytes for the frame arena.");
+        }
+        if (blockCount == addresses.length) {
+            addresses = Arrays.copyOf(addresses, blockCount * 2);
+            sizes = Arrays.copyOf(sizes, blockCount * 2);
+        }
+        addresses[blockCount] = address;
+        sizes[blockCount] = size;
+        blockCount++;
+    }
+
+    /**
+     * Returns how many blocks of native memory the arena holds.
+     * */
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Returns the size (in bytes) of the main block.
+     * */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the bytes allocated since the last reset, including alignment padding.
+     * */
+    public long getUsed() {
+        return filled + offset;
+    }
+
+    /**
+     * Returns the most bytes used at once since the last reset.
+     * */
+    public long getPeak() {
+        return peak;
+    }
+}
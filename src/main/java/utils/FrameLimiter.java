@@ -0,0 +1,81 @@
+/**
+ * Frame limiter class. It keeps the frame rate at a target when v-sync is off,
+ * instead of running as fast as possible. It sleeps for most of the remaining
+ * frame time and spin-waits only the last stretch, as sleeping alone is not
+ * precise enough. Frames are scheduled on a fixed grid, so a late frame does not
+ * push all the following ones.
+ * */
+
+package utils;
+
+import java.util.concurrent.locks.LockSupport;
+
+public class FrameLimiter {
+
+    /**
+     * Stores the time (in nanoseconds) each frame should take: {@link #frameNanos}
+     * */
+    private long frameNanos;
+
+    /**
+     * Stores when (in nanoseconds) the next frame should start: {@link #nextFrame}
+     * */
+    private long nextFrame;
+
+    /**
+     * Stores how long before the deadline sleeping stops and spinning starts,
+     * adjusted by the measured sleep oversleep: {@link #spinThreshold}
+     * */
+    private long spinThreshold;
+
+    /**
+     * Constructor for the FrameLimiter.
+     * @param targetFps     frames per second to be kept.
+     * */
+    public FrameLimiter(int targetFps) {
+        setTargetFps(targetFps);
+        spinThreshold = 2_000_000L; // Start spinning 2ms before the deadline
+    }
+
+    /**
+     * Set the frames per second to be kept.
+     * */
+    public void setTargetFps(int targetFps) {
+        if (targetFps <= 0) {
+            throw new IllegalArgumentException("Target FPS must be positive.");
+        }
+        frameNanos = 1_000_000_000L / targetFps;
+        nextFrame = 0;
+    }
+
+    /**
+     * Wait until the next frame should start. Called once per frame.
+     * */
+    public void sync() {
+        long now = System.nanoTime();
+        if (nextFrame == 0 || now - nextFrame > frameNanos) {
+            nextFrame = now + frameNanos; // First frame or too late, restart the grid
+            return;
+        }
+
+        // Sleep while far from the deadline, learning how much sleeping oversleeps
+        while (nextFrame - now > spinThreshold) {
+            long sleep = nextFrame - now - spinThreshold;
+            LockSupport.parkNanos(sleep);
+            long after = System.nanoTime();
+            long overslept = (after - now) - sleep;
+            if (overslept > spinThreshold) {
+                spinThreshold = Math.min(frameNanos / 2, overslept);
+            } else {
+                spinThreshold = Math.max(500_000L, spinThreshold - 10_000L);
+            }
+            now = after;
+        }
+
+        // Spin the last stretch
+        while (nextFrame - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+        nextFrame += frameNanos;
+    }
+}
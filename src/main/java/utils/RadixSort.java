@@ -0,0 +1,84 @@
+/**
+ * Radix sort class. It sorts 64 bit keys carrying an int value (usually an
+ * index into the sorted data) with a stable LSD radix sort, one byte per pass.
+ * Passes over bytes that are the same for every key are skipped, and the caller
+ * provides the temporary arrays, so sorting never allocates.
+ * */
+
+package utils;
+
+public class RadixSort {
+
+    /**
+     * Stores one histogram per thread, so sorting on different threads is safe: {@link #HISTOGRAM}
+     * */
+    private static final ThreadLocal<int[]> HISTOGRAM = ThreadLocal.withInitial(() -> new int[256]);
+
+    private RadixSort() {
+    }
+
+    /**
+     * Sort the first count keys (as unsigned values) in ascending order, moving
+     * the values along with them. Keys with the same value keep their order.
+     * @param keys          keys to be sorted.
+     * @param values        values moved along with the keys.
+     * @param tmpKeys       temporary array, at least count long.
+     * @param tmpValues     temporary array, at least count long.
+     * @param count         amount of keys to be sorted.
+     * */
+    public static void sort(long[] keys, int[] values, long[] tmpKeys, int[] tmpValues, int count) {
+        if (isSorted(keys, count)) return;
+
+        int[] histogram = HISTOGRAM.get();
+        long[] srcKeys = keys;
+        int[] srcValues = values;
+        long[] dstKeys = tmpKeys;
+        int[] dstValues = tmpValues;
+
+        for (int shift = 0; shift < 64; shift += 8) {
+            for (int i = 0; i < 256; i++) {
+                histogram[i] = 0;
+            }
+            for (int i = 0; i < count; i++) {
+                histogram[(int)(srcKeys[i] >>> shift) & 0xFF]++;
+            }
+            if (histogram[(int)(srcKeys[0] >>> shift) & 0xFF] == count) {
+                continue; // Every key has the same byte, nothing to do on this pass
+            }
+
+            int offset = 0;
+            for (int i = 0; i < 256; i++) {
+                int amount = histogram[i];
+                histogram[i] = offset;
+                offset += amount;
+            }
+            for (int i = 0; i < count; i++) {
+                int position = histogram[(int)(srcKeys[i] >>> shift) & 0xFF]++;
+                dstKeys[position] = srcKeys[i];
+                dstValues[position] = srcValues[i];
+            }
+
+            long[] auxKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = auxKeys;
+            int[] auxValues = srcValues;
+            srcValues = dstValues;
+            dstValues = auxValues;
+        }
+
+        if (srcKeys != keys) { // Odd amount of passes, the result is on the temporary arrays
+            System.arraycopy(srcKeys, 0, keys, 0, count);
+            System.arraycopy(srcValues, 0, values, 0, count);
+        }
+    }
+
+    /**
+     * Returns if the first count keys are already in ascending (unsigned) order.
+     * */
+    private static boolean isSorted(long[] keys, int count) {
+        for (int i = 1; i < count; i++) {
+            if (Long.compareUnsigned(keys[i - 1], keys[i]) > 0) return false;
+        }
+        return true;
+    }
+}
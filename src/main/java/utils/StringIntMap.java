@@ -0,0 +1,132 @@
+/**
+ * String to int map class. It maps String keys to primitive int values with
+ * open addressing (linear probing) on plain arrays, so looking a value up never
+ * boxes or allocates. Used for caches such as shader uniform locations.
+ * */
+
+package utils;
+
+public class StringIntMap {
+
+    /**
+     * Stores the keys, null for empty slots: {@link #keys}
+     * */
+    private String[] keys;
+
+    /**
+     * Stores the value for each key: {@link #values}
+     * */
+    private int[] values;
+
+    /**
+     * Stores how many keys are in the map: {@link #size}
+     * */
+    private int size;
+
+    /**
+     * Default constructor for the StringIntMap.
+     * */
+    public StringIntMap() {
+        this(16);
+    }
+
+    /**
+     * Constructor for the StringIntMap.
+     * @param capacity  expected amount of keys.
+     * */
+    public StringIntMap(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(4, capacity * 2 - 1)) << 1;
+        keys = new String[slots];
+        values = new int[slots];
+    }
+
+    /**
+     * Returns the value mapped to a key.
+     * @param key           the key to look for.
+     * @param missingValue  value returned if the key is not mapped.
+     * */
+    public int get(String key, int missingValue) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            String current = keys[i];
+            if (current == null) return missingValue;
+            if (current == key || current.equals(key)) return values[i];
+        }
+    }
+
+    /**
+     * Returns if a key is mapped.
+     * */
+    public boolean containsKey(String key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            String current = keys[i];
+            if (current == null) return false;
+            if (current == key || current.equals(key)) return true;
+        }
+    }
+
+    /**
+     * Map a key to a value, replacing the previous value if any.
+     * */
+    public void put(String key, int value) {
+        if (key == null) {
+            throw new IllegalArgumentException("StringIntMap keys must not be null.");
+        }
+        if ((size + 1) * 2 > keys.length) grow(); // Keep the load factor under 0.5
+
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            String current = keys[i];
+            if (current == null) {
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                return;
+            }
+            if (current == key || current.equals(key)) {
+                values[i] = value;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove every key.
+     * */
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Returns how many keys are mapped.
+     * */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the first slot to look for a key, spreading the hash bits.
+     * */
+    private static int slot(String key, int mask) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Double the amount of slots, placing every key again.
+     * */
+    private void grow() {
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new String[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) put(oldKeys[i], oldValues[i]);
+        }
+    }
+}
@@ -1,18 +1,173 @@
+/**
+ * Time class. It keeps the engine clock and the time taken by the last frame.
+ * Time is stored as nanoseconds in a long, from a monotonic clock, so it keeps
+ * full precision no matter how long the engine runs; seconds are given as double.
+ * Both the raw delta time and a smoothed one (exponential moving average) are
+ * available, the smoothed one avoids jitter on animations and camera movement.
+ * Each engine has its own Time, bound to the threads running it; the static
+ * methods use the Time bound to the calling thread (a default one if none).
+ * */
+
 package utils;
 
 public class Time {
-    public static float timeStarted = System.nanoTime();
-    private static float deltaTime = 0;
 
-    public static float getTotalElapsedTime() {
-        return (float)((System.nanoTime() - timeStarted) * 1e-9);
+    /**
+     * Stores the Time of the threads without one bound: {@link #DEFAULT}
+     * */
+    private static final Time DEFAULT = new Time();
+
+    /**
+     * Stores the Time bound to each thread: {@link #CURRENT}
+     * */
+    private static final ThreadLocal<Time> CURRENT = ThreadLocal.withInitial(() -> DEFAULT);
+
+    /**
+     * Stores the moment (in nanoseconds) the engine clock started: {@link #timeStarted}
+     * */
+    private final long timeStarted = System.nanoTime();
+
+    /**
+     * Stores the time (in nanoseconds) taken by the last frame: {@link #deltaNanos}
+     * */
+    private long deltaNanos = 0;
+
+    /**
+     * Stores the time (in seconds) taken by the last frame: {@link #deltaTime}
+     * */
+    private double deltaTime = 0.0;
+
+    /**
+     * Stores the exponential moving average of the delta time: {@link #smoothedDeltaTime}
+     * */
+    private double smoothedDeltaTime = 0.0;
+
+    /**
+     * Stores the weight of the last frame on the smoothed delta time, from
+     * 0 (never changes) to 1 (no smoothing): {@link #smoothing}
+     * */
+    private double smoothing = 0.1;
+
+    /**
+     * Returns the Time bound to the calling thread.
+     * */
+    public static Time current() {
+        return CURRENT.get();
     }
 
-    public static void setDeltaTime(float deltaTime) {
-        Time.deltaTime = deltaTime;
+    /**
+     * Bind a Time to the calling thread.
+     * @param time  the Time, null to use the default one.
+     * */
+    public static void bind(Time time) {
+        if (time == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(time);
+        }
     }
 
-    public static float getDeltaTime() {
+    /**
+     * Returns the time (in nanoseconds) since this clock started.
+     * */
+    public long elapsedNanos() {
+        return System.nanoTime() - timeStarted;
+    }
+
+    /**
+     * Set the time taken by the last frame, updating the smoothed delta time.
+     * @param deltaNanos    the frame time in nanoseconds.
+     * */
+    public void updateDelta(long deltaNanos) {
+        this.deltaNanos = deltaNanos;
+        this.deltaTime = deltaNanos * 1e-9;
+        if (smoothedDeltaTime == 0.0) {
+            smoothedDeltaTime = deltaTime; // First frame, nothing to average with
+        } else {
+            smoothedDeltaTime += (deltaTime - smoothedDeltaTime) * smoothing;
+        }
+    }
+
+    /**
+     * Returns the time (in nanoseconds) taken by the last frame.
+     * */
+    public long deltaNanos() {
+        return deltaNanos;
+    }
+
+    /**
+     * Returns the time (in seconds) taken by the last frame.
+     * */
+    public double deltaTime() {
         return deltaTime;
     }
+
+    /**
+     * Returns the exponential moving average (in seconds) of the frame time.
+     * */
+    public double smoothedDeltaTime() {
+        return smoothedDeltaTime;
+    }
+
+    /**
+     * Set how much the last frame weights on the smoothed delta time.
+     * @param smoothing     from 0 (exclusive) to 1, 1 disables smoothing.
+     * */
+    public void smoothing(double smoothing) {
+        if (smoothing <= 0.0 || smoothing > 1.0) {
+            throw new IllegalArgumentException("Smoothing must be in (0, 1].");
+        }
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * Returns the time (in nanoseconds) since the engine clock started.
+     * */
+    public static long getTotalElapsedNanos() {
+        return current().elapsedNanos();
+    }
+
+    /**
+     * Returns the time (in seconds) since the engine clock started.
+     * */
+    public static double getTotalElapsedTime() {
+        return getTotalElapsedNanos() * 1e-9;
+    }
+
+    /**
+     * Set the time taken by the last frame, updating the smoothed delta time.
+     * @param deltaNanos    the frame time in nanoseconds.
+     * */
+    public static void setDeltaNanos(long deltaNanos) {
+        current().updateDelta(deltaNanos);
+    }
+
+    /**
+     * Returns the time (in nanoseconds) taken by the last frame.
+     * */
+    public static long getDeltaNanos() {
+        return current().deltaNanos;
+    }
+
+    /**
+     * Returns the time (in seconds) taken by the last frame.
+     * */
+    public static double getDeltaTime() {
+        return current().deltaTime;
+    }
+
+    /**
+     * Returns the exponential moving average (in seconds) of the frame time.
+     * */
+    public static double getSmoothedDeltaTime() {
+        return current().smoothedDeltaTime;
+    }
+
+    /**
+     * Set how much the last frame weights on the smoothed delta time.
+     * @param smoothing     from 0 (exclusive) to 1, 1 disables smoothing.
+     * */
+    public static void setSmoothing(double smoothing) {
+        current().smoothing(smoothing);
+    }
 }
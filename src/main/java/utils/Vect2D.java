@@ -85,11 +85,12 @@ public class Vect2D {
      * */
     public static void swapByBiggerX(Vect2D p1, Vect2D p2) {
         if (p1.x > p2.x) {
-            Vect2D aux = new Vect2D(p1.x, p1.y);
+            double auxX = p1.x;
+            double auxY = p1.y;
             p1.x = p2.x;
             p1.y = p2.y;
-            p2.x = aux.x;
-            p2.y = aux.y;
+            p2.x = auxX;
+            p2.y = auxY;
         }
     }
 
@@ -102,11 +103,12 @@ public class Vect2D {
      * */
     public static void swapByBiggerY(Vect2D p1, Vect2D p2) {
         if (p1.y > p2.y) {
-            Vect2D aux = new Vect2D(p1.x, p1.y);
+            double auxX = p1.x;
+            double auxY = p1.y;
             p1.x = p2.x;
             p1.y = p2.y;
-            p2.x = aux.x;
-            p2.y = aux.y;
+            p2.x = auxX;
+            p2.y = auxY;
         }
     }
 
@@ -0,0 +1,186 @@
+/**
+ * Vect2F is a float two dimensional vector, for math done every frame. It is
+ * mutable and every operation changes this vector and returns it, so operations
+ * can be chained without allocating: v.set(a).sub(b).normalize().scale(speed).
+ * For many points at once use {@link Vect2FBatch}.
+ * */
+
+package utils;
+
+public class Vect2F {
+
+    /**
+     * This variable stores the position in the X-axis: {@link #x}
+     * */
+    public float x;
+
+    /**
+     * This variable stores the position in the Y-axis: {@link #y}
+     * */
+    public float y;
+
+    /**
+     * Constructor for Vect2F.
+     * @param x     value to be stored as the X-axis value.
+     * @param y     value to be stored as the Y-axis value.
+     * */
+    public Vect2F(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Constructor for Vect2F initializing values as zero.
+     * */
+    public Vect2F() {
+        this(0f, 0f);
+    }
+
+    public Vect2F set(float x, float y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    public Vect2F set(Vect2F v) {
+        return set(v.x, v.y);
+    }
+
+    public Vect2F set(Vect2D v) {
+        return set((float)v.x, (float)v.y);
+    }
+
+    public Vect2F zero() {
+        return set(0f, 0f);
+    }
+
+    public Vect2F add(float x, float y) {
+        this.x += x;
+        this.y += y;
+        return this;
+    }
+
+    public Vect2F add(Vect2F v) {
+        return add(v.x, v.y);
+    }
+
+    /**
+     * Add a vector multiplied by a scalar, e.g. position.addScaled(velocity, deltaTime).
+     * */
+    public Vect2F addScaled(Vect2F v, float scale) {
+        return add(v.x * scale, v.y * scale);
+    }
+
+    public Vect2F sub(float x, float y) {
+        this.x -= x;
+        this.y -= y;
+        return this;
+    }
+
+    public Vect2F sub(Vect2F v) {
+        return sub(v.x, v.y);
+    }
+
+    public Vect2F scale(float scale) {
+        x *= scale;
+        y *= scale;
+        return this;
+    }
+
+    public Vect2F scale(float scaleX, float scaleY) {
+        x *= scaleX;
+        y *= scaleY;
+        return this;
+    }
+
+    /**
+     * Multiply component by component.
+     * */
+    public Vect2F mul(Vect2F v) {
+        return scale(v.x, v.y);
+    }
+
+    public Vect2F negate() {
+        return set(-x, -y);
+    }
+
+    /**
+     * Scale to length 1. A zero vector stays zero.
+     * */
+    public Vect2F normalize() {
+        float lengthSquared = lengthSquared();
+        if (lengthSquared == 0f) return this;
+        return scale(1f / (float)Math.sqrt(lengthSquared));
+    }
+
+    /**
+     * Move towards another vector.
+     * @param v     the target.
+     * @param t     0 keeps this vector, 1 gives v.
+     * */
+    public Vect2F lerp(Vect2F v, float t) {
+        return set(x + (v.x - x) * t, y + (v.y - y) * t);
+    }
+
+    /**
+     * Rotate counterclockwise.
+     * @param radians   the angle.
+     * */
+    public Vect2F rotate(float radians) {
+        float cos = (float)Math.cos(radians);
+        float sin = (float)Math.sin(radians);
+        return set(x * cos - y * sin, x * sin + y * cos);
+    }
+
+    /**
+     * Rotate 90 degrees counterclockwise.
+     * */
+    public Vect2F perpendicular() {
+        return set(-y, x);
+    }
+
+    public Vect2F min(Vect2F v) {
+        return set(Math.min(x, v.x), Math.min(y, v.y));
+    }
+
+    public Vect2F max(Vect2F v) {
+        return set(Math.max(x, v.x), Math.max(y, v.y));
+    }
+
+    public float dot(Vect2F v) {
+        return x * v.x + y * v.y;
+    }
+
+    /**
+     * Returns the z of the cross product, positive if v is counterclockwise from this vector.
+     * */
+    public float cross(Vect2F v) {
+        return x * v.y - y * v.x;
+    }
+
+    public float length() {
+        return (float)Math.sqrt(lengthSquared());
+    }
+
+    public float lengthSquared() {
+        return x * x + y * y;
+    }
+
+    public float distance(Vect2F v) {
+        return (float)Math.sqrt(distanceSquared(v));
+    }
+
+    public float distanceSquared(Vect2F v) {
+        float dx = v.x - x;
+        float dy = v.y - y;
+        return dx * dx + dy * dy;
+    }
+
+    @Override
+    public String toString() {
+        return "Vect2F{" +
+                "x=" + x +
+                ", y=" + y +
+                '}';
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Vect2FBatch has operations over many two dimensional points at once, stored
+ * as struct of arrays (one array of x and one of y, like the ECS columns) or
+ * interleaved (x, y, x, y... like vertex data). Every loop is a plain counted
+ * loop over float arrays without branches or calls, written so that C2 can
+ * auto-vectorize it (process several points per SIMD instruction). Each
+ * operation works on a range of the arrays (offset and count), or from index 0.
+ * */
+
+package utils;
+
+import org.joml.Matrix3x2fc;
+
+public final class Vect2FBatch {
+
+    private Vect2FBatch() {
+
+    }
+
+    /**
+     * Add the same offset to every point.
+     * @param xs        x of the points.
+     * @param ys        y of the points.
+     * @param count     how many points, from index 0.
+     * */
+    public static void translate(float[] xs, float[] ys, int count, float dx, float dy) {
+        translate(xs, ys, 0, count, dx, dy);
+    }
+
+    /**
+     * Add the same offset to a range of points.
+     * @param offset    index of the first point.
+     * @param count     how many points.
+     * */
+    public static void translate(float[] xs, float[] ys, int offset, int count, float dx, float dy) {
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            xs[i] += dx;
+        }
+        for (int i = offset; i < end; i++) {
+            ys[i] += dy;
+        }
+    }
+
+    /**
+     * Scale every point around the origin.
+     * */
+    public static void scale(float[] xs, float[] ys, int count, float scaleX, float scaleY) {
+        scale(xs, ys, 0, count, scaleX, scaleY);
+    }
+
+    public static void scale(float[] xs, float[] ys, int offset, int count, float scaleX, float scaleY) {
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            xs[i] *= scaleX;
+        }
+        for (int i = offset; i < end; i++) {
+            ys[i] *= scaleY;
+        }
+    }
+
+    /**
+     * Add vectors multiplied by a scalar to the points, e.g. positions += velocities * deltaTime.
+     * @param xs        x of the points, changed.
+     * @param ys        y of the points, changed.
+     * @param addXs     x of the vectors added.
+     * @param addYs     y of the vectors added.
+     * @param scale     the scalar.
+     * @param count     how many points, from index 0.
+     * */
+    public static void addScaled(float[] xs, float[] ys, float[] addXs, float[] addYs, float scale, int count) {
+        addScaled(xs, ys, addXs, addYs, scale, 0, count);
+    }
+
+    /**
+     * Add vectors multiplied by a scalar to a range of points, e.g. the rows of a chunk.
+     * @param offset    index of the first point (and vector).
+     * @param count     how many points.
+     * */
+    public static void addScaled(float[] xs, float[] ys, float[] addXs, float[] addYs, float scale, int offset, int count) {
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            xs[i] += addXs[i] * scale;
+        }
+        for (int i = offset; i < end; i++) {
+            ys[i] += addYs[i] * scale;
+        }
+    }
+
+    /**
+     * Transform points by an affine matrix (rotation, scale and translation).
+     * The source and destination arrays may be the same.
+     * @param matrix    the transform.
+     * @param xs        x of the points.
+     * @param ys        y of the points.
+     * @param destXs    receives the x of the transformed points.
+     * @param destYs    receives the y of the transformed points.
+     * @param count     how many points, from index 0.
+     * */
+    public static void transform(Matrix3x2fc matrix, float[] xs, float[] ys, float[] destXs, float[] destYs, int count) {
+        transform(matrix, xs, ys, destXs, destYs, 0, count);
+    }
+
+    /**
+     * Transform a range of points by an affine matrix, written to the same range of the destination.
+     * @param offset    index of the first point.
+     * @param count     how many points.
+     * */
+    public static void transform(Matrix3x2fc matrix, float[] xs, float[] ys, float[] destXs, float[] destYs, int offset, int count) {
+        float m00 = matrix.m00(), m01 = matrix.m01();
+        float m10 = matrix.m10(), m11 = matrix.m11();
+        float m20 = matrix.m20(), m21 = matrix.m21();
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            float x = xs[i];
+            float y = ys[i];
+            destXs[i] = m00 * x + m10 * y + m20;
+            destYs[i] = m01 * x + m11 * y + m21;
+        }
+    }
+
+    /**
+     * Transform interleaved points (x, y, x, y...) by an affine matrix, in place.
+     * @param matrix    the transform.
+     * @param xy        the points.
+     * @param offset    index of the x of the first point.
+     * @param count     how many points.
+     * */
+    public static void transform(Matrix3x2fc matrix, float[] xy, int offset, int count) {
+        float m00 = matrix.m00(), m01 = matrix.m01();
+        float m10 = matrix.m10(), m11 = matrix.m11();
+        float m20 = matrix.m20(), m21 = matrix.m21();
+        int end = offset + count * 2;
+        for (int i = offset; i < end; i += 2) {
+            float x = xy[i];
+            float y = xy[i + 1];
+            xy[i] = m00 * x + m10 * y + m20;
+            xy[i + 1] = m01 * x + m11 * y + m21;
+        }
+    }
+
+    /**
+     * Move every point towards its target.
+     * @param t     0 keeps the points, 1 gives the targets.
+     * */
+    public static void lerp(float[] xs, float[] ys, float[] targetXs, float[] targetYs, float t, int count) {
+        lerp(xs, ys, targetXs, targetYs, t, 0, count);
+    }
+
+    public static void lerp(float[] xs, float[] ys, float[] targetXs, float[] targetYs, float t, int offset, int count) {
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            xs[i] += (targetXs[i] - xs[i]) * t;
+        }
+        for (int i = offset; i < end; i++) {
+            ys[i] += (targetYs[i] - ys[i]) * t;
+        }
+    }
+
+    /**
+     * Write the dot product of each pair of vectors.
+     * */
+    public static void dot(float[] xs, float[] ys, float[] otherXs, float[] otherYs, float[] dest, int count) {
+        dot(xs, ys, otherXs, otherYs, dest, 0, count);
+    }
+
+    public static void dot(float[] xs, float[] ys, float[] otherXs, float[] otherYs, float[] dest, int offset, int count) {
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            dest[i] = xs[i] * otherXs[i] + ys[i] * otherYs[i];
+        }
+    }
+
+    /**
+     * Compute the bounds of the points.
+     * @param dest  receives min x, min y, max x and max y.
+     * */
+    public static void bounds(float[] xs, float[] ys, int count, float[] dest) {
+        bounds(xs, ys, 0, count, dest);
+    }
+
+    /**
+     * Compute the bounds of a range of points.
+     * @param offset    index of the first point.
+     * @param count     how many points.
+     * @param dest      receives min x, min y, max x and max y.
+     * */
+    public static void bounds(float[] xs, float[] ys, int offset, int count, float[] dest) {
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+        }
+        for (int i = offset; i < end; i++) {
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        dest[0] = minX;
+        dest[1] = minY;
+        dest[2] = maxX;
+        dest[3] = maxY;
+    }
+}
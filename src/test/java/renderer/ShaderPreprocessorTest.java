@@ -0,0 +1,53 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShaderPreprocessorTest {
+
+    private static Path write(Path directory, String name, String content) throws IOException {
+        return Files.write(directory.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void includesKeepTheLinesOfTheirFiles() throws IOException {
+        Path directory = Files.createTempDirectory("shaders");
+        write(directory, "common.glsl", "float twice(float x) {\n    return x * 2.0;\n}\n");
+        Path shader = write(directory, "test.glsl", String.join("\n",
+                "#type vertex",
+                "#version 330 core",
+                "#include \"common.glsl\"",
+                "void main() {",
+                "}",
+                ""));
+
+        ShaderSource source = ShaderPreprocessor.process(shader);
+        assertEquals(String.join("\n",
+                "#version 330 core",
+                "#line 3",
+                "#line 1 1",
+                "float twice(float x) {",
+                "    return x * 2.0;",
+                "}",
+                "#line 4 0",
+                "void main() {",
+                "}",
+                ""), source.getStageSource(0));
+        assertEquals(1, source.getDependencies().size());
+    }
+
+    @Test
+    void definesKeepTheLinesOfTheFile() throws IOException {
+        Path directory = Files.createTempDirectory("shaders");
+        Path shader = write(directory, "test.glsl", "#type fragment\r\n#version 330 core\r\nvoid main() {}\r\n");
+
+        ShaderSource source = ShaderPreprocessor.process(shader, "FOG");
+        assertEquals("#version 330 core\n#define FOG\n#line 3\nvoid main() {}\n", source.getStageSource(0));
+    }
+}
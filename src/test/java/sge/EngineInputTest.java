@@ -0,0 +1,61 @@
+package sge;
+
+import input.KeyListener;
+import input.MouseListener;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.lwjgl.glfw.GLFW.*;
+
+class EngineInputTest {
+
+    /**
+     * Records what the input reads during each update.
+     * */
+    private static final class InputScene extends Scene {
+        final boolean[] keyDown = new boolean[3];
+        final boolean[] keyHeld = new boolean[3];
+        final boolean[] keyUp = new boolean[3];
+        final boolean[] buttonDown = new boolean[3];
+        final double[] scroll = new double[3];
+        private int tick;
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public void update(float deltaTime) {
+            keyDown[tick] = KeyListener.isKeyDown(GLFW_KEY_A);
+            keyHeld[tick] = KeyListener.isKeyHeld(GLFW_KEY_A);
+            keyUp[tick] = KeyListener.isKeyUp(GLFW_KEY_A);
+            buttonDown[tick] = MouseListener.isButtonDown(GLFW_MOUSE_BUTTON_LEFT);
+            scroll[tick] = MouseListener.getYScroll();
+            if (tick == 0) { // Released during this tick, seen by the next one
+                EngineContext.current().getInputQueue().offerKey(GLFW_KEY_A, GLFW_RELEASE, 0);
+            }
+            tick++;
+        }
+    }
+
+    @Test
+    void pressesAreSeenByTheUpdateOfTheirTick() {
+        EngineCore engine = new EngineCore();
+        InputScene scene = new InputScene();
+        engine.setHeadless(true, true);
+        engine.setTickLimit(3);
+        engine.setScene(scene);
+
+        engine.getInputQueue().offerKey(GLFW_KEY_A, GLFW_PRESS, 0);
+        engine.getInputQueue().offerButton(GLFW_MOUSE_BUTTON_LEFT, GLFW_PRESS, 0);
+        engine.getInputQueue().offerScroll(0.0, 2.0);
+        engine.run();
+
+        assertArrayEquals(new boolean[] {true, false, false}, scene.keyDown);
+        assertArrayEquals(new boolean[] {true, false, false}, scene.keyHeld);
+        assertArrayEquals(new boolean[] {false, true, false}, scene.keyUp);
+        assertArrayEquals(new boolean[] {true, false, false}, scene.buttonDown);
+        assertEquals(2.0, scene.scroll[0]);
+        assertEquals(0.0, scene.scroll[1]);
+    }
+}
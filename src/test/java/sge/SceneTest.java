@@ -0,0 +1,84 @@
+package sge;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SceneTest {
+
+    /**
+     * Publishes how many updates ran, and renders the published count.
+     * */
+    private static final class CountingScene extends Scene {
+        private TripleBuffer<int[]> snapshots;
+        private int updates;
+        private int rendered = -1;
+
+        @Override
+        public void init() {
+            snapshots = createSnapshots(() -> new int[1]);
+        }
+
+        @Override
+        public void update(float deltaTime) {
+            updates++;
+        }
+
+        @Override
+        public void publish() {
+            snapshots.getWriteBuffer()[0] = updates;
+        }
+
+        @Override
+        public void render(float alpha) {
+            rendered = snapshots.getReadBuffer()[0];
+        }
+    }
+
+    @Test
+    void renderSeesTheLatestPublishedState() {
+        CountingScene scene = new CountingScene();
+        scene.init();
+
+        scene.acquire();
+        scene.render(1.0f);
+        assertEquals(0, scene.rendered); // Nothing published yet
+
+        for (int tick = 0; tick < 3; tick++) {
+            scene.update(0.016f);
+            scene.commit();
+        }
+        scene.acquire();
+        scene.render(1.0f);
+        assertEquals(3, scene.rendered);
+
+        scene.update(0.016f); // Not published, the render keeps the last snapshot
+        scene.acquire();
+        scene.render(1.0f);
+        assertEquals(3, scene.rendered);
+    }
+
+    @Test
+    void readerNeverSeesAPartialSnapshot() throws InterruptedException {
+        TripleBuffer<int[]> buffer = new TripleBuffer<>(() -> new int[2]);
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= 200_000; i++) {
+                int[] snapshot = buffer.getWriteBuffer();
+                snapshot[0] = i;
+                snapshot[1] = -i;
+                buffer.publish();
+            }
+        });
+        writer.start();
+        int last = 0;
+        boolean torn = false;
+        while (writer.isAlive()) {
+            int[] snapshot = buffer.acquire(); // Owned by this thread until the next acquire
+            torn |= snapshot[0] != -snapshot[1] || snapshot[0] < last;
+            last = snapshot[0];
+        }
+        writer.join();
+        assertFalse(torn);
+        assertEquals(200_000, buffer.acquire()[0]);
+    }
+}
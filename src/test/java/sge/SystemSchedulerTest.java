@@ -0,0 +1,124 @@
+package sge;
+
+import org.junit.jupiter.api.Test;
+import utils.Time;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SystemSchedulerTest {
+
+    /**
+     * Runs its query in small chunks, counting the chunks that did not see the context and Time.
+     * */
+    private static final class ContextSystem extends EntitySystem {
+        private final ComponentType position;
+        private final EngineContext expected;
+        private final Time expectedTime;
+        private final AtomicInteger chunks = new AtomicInteger();
+        private final AtomicInteger mismatches = new AtomicInteger();
+        private Query query;
+
+        ContextSystem(ComponentType position, EngineContext expected, Time expectedTime) {
+            this.position = position;
+            this.expected = expected;
+            this.expectedTime = expectedTime;
+        }
+
+        @Override
+        public void init(World world) {
+            writes(position);
+            query = world.query(position);
+        }
+
+        @Override
+        public void update(World world, float deltaTime) {
+            forEachChunk(query, 64, (archetype, start, end) -> {
+                chunks.incrementAndGet();
+                if (EngineContext.current() != expected || Time.current() != expectedTime) {
+                    mismatches.incrementAndGet();
+                }
+                try {
+                    Thread.sleep(1); // Leave time for other threads to steal chunks
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+    }
+
+    @Test
+    void chunksSeeTheContextOfTheirSystem() {
+        World world = new World();
+        ComponentType position = world.register("position", 2, 0);
+        for (int i = 0; i < 64 * 32; i++) {
+            world.create(position.getMask());
+        }
+        EngineContext context = new EngineContext(null);
+        Time tickTime = new Time(); // Like the update thread, with a Time of its own
+        ContextSystem system = new ContextSystem(position, context, tickTime);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        SystemScheduler scheduler = new SystemScheduler(pool);
+        scheduler.add(system, world);
+
+        context.bind();
+        Time.bind(tickTime);
+        try {
+            for (int frame = 0; frame < 3; frame++) {
+                scheduler.run(world, 0.016f);
+            }
+            assertSame(context, EngineContext.current());
+            assertSame(tickTime, Time.current());
+        } finally {
+            EngineContext.unbind();
+            pool.shutdown();
+        }
+        assertEquals(3 * 32, system.chunks.get());
+        assertEquals(0, system.mismatches.get());
+    }
+
+    @Test
+    void chunksRestoreThePoolThreads() throws Exception {
+        World world = new World();
+        ComponentType position = world.register("position", 2, 0);
+        for (int i = 0; i < 64 * 8; i++) {
+            world.create(position.getMask());
+        }
+        EngineContext context = new EngineContext(null);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        SystemScheduler scheduler = new SystemScheduler(pool);
+        scheduler.add(new ContextSystem(position, context, context.getTime()), world);
+
+        context.bind();
+        try {
+            scheduler.run(world, 0.016f);
+        } finally {
+            EngineContext.unbind();
+        }
+        AtomicInteger bound = new AtomicInteger();
+        for (int i = 0; i < 16; i++) {
+            pool.submit(() -> {
+                if (EngineContext.current() != null || Time.current() == context.getTime()) bound.incrementAndGet();
+            }).get();
+        }
+        pool.shutdown();
+        assertEquals(0, bound.get());
+    }
+
+    @Test
+    void forEachChunkRejectsEmptyChunks() {
+        World world = new World();
+        ComponentType position = world.register("position", 2, 0);
+        world.create(position.getMask());
+        Query query = world.query(position);
+        EntitySystem system = new EntitySystem() {
+            @Override
+            public void update(World world, float deltaTime) {
+                forEachChunk(query, 0, (archetype, start, end) -> { });
+            }
+        };
+        assertThrows(IllegalArgumentException.class, () -> system.update(world, 0.016f));
+    }
+}
@@ -0,0 +1,159 @@
+package spatial;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LooseQuadtreeTest {
+    private static final float AREA = 256f; // Leaves of 16 at depth 4
+    private static final int OBJECTS = 400;
+
+    private final int[] results = new int[OBJECTS];
+    private final float[][] boxes = new float[OBJECTS][];
+    private final Random random = new Random(7);
+
+    /**
+     * Returns a random box: small, larger than a leaf, or partly or fully outside the area.
+     * */
+    private float[] randomBox(int i) {
+        float size = (i % 7 == 0) ? 20f + random.nextFloat() * 100f : random.nextFloat() * 8f;
+        float x = random.nextFloat() * (AREA + 100f) - 50f;
+        float y = random.nextFloat() * (AREA + 100f) - 50f;
+        if (i % 13 == 0) x += AREA * 2f; // Far outside
+        return new float[] {x, y, x + size, y + size * (0.5f + random.nextFloat())};
+    }
+
+    private LooseQuadtree fill() {
+        LooseQuadtree tree = new LooseQuadtree(0f, 0f, AREA, 4);
+        for (int i = 0; i < OBJECTS; i++) {
+            boxes[i] = randomBox(i);
+            tree.insert(i, boxes[i][0], boxes[i][1], boxes[i][2], boxes[i][3]);
+        }
+        return tree;
+    }
+
+    private int[] sorted(int found) {
+        int[] ids = Arrays.copyOf(results, found);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private int[] expectAabb(float x0, float y0, float x1, float y1) {
+        return Arrays.stream(ids()).filter(i -> boxes[i][0] <= x1 && boxes[i][2] >= x0
+                && boxes[i][1] <= y1 && boxes[i][3] >= y0).toArray();
+    }
+
+    private int[] expectRadius(float x, float y, float radius) {
+        return Arrays.stream(ids()).filter(i -> {
+            float dx = x - Math.max(boxes[i][0], Math.min(x, boxes[i][2]));
+            float dy = y - Math.max(boxes[i][1], Math.min(y, boxes[i][3]));
+            return dx * dx + dy * dy <= radius * radius;
+        }).toArray();
+    }
+
+    private int[] expectRay(float x, float y, float dx, float dy, float length) {
+        return Arrays.stream(ids()).filter(i -> {
+            float near = 0f, far = length;
+            float tx0 = (boxes[i][0] - x) / dx, tx1 = (boxes[i][2] - x) / dx;
+            float ty0 = (boxes[i][1] - y) / dy, ty1 = (boxes[i][3] - y) / dy;
+            near = Math.max(near, Math.max(Math.min(tx0, tx1), Math.min(ty0, ty1)));
+            far = Math.min(far, Math.min(Math.max(tx0, tx1), Math.max(ty0, ty1)));
+            return near <= far;
+        }).toArray();
+    }
+
+    private int[] ids() {
+        return IntStream.range(0, OBJECTS).filter(i -> boxes[i] != null).toArray();
+    }
+
+    private void checkQueries(LooseQuadtree tree) {
+        for (int q = 0; q < 200; q++) {
+            float x = random.nextFloat() * (AREA + 200f) - 100f;
+            float y = random.nextFloat() * (AREA + 200f) - 100f;
+            float size = random.nextFloat() * ((q % 5 == 0) ? 200f : 20f);
+            assertArrayEquals(expectAabb(x, y, x + size, y + size), sorted(tree.queryAabb(x, y, x + size, y + size, results)));
+            assertArrayEquals(expectRadius(x, y, size), sorted(tree.queryRadius(x, y, size, results)));
+
+            float angle = random.nextFloat() * 6.2831855f;
+            float dx = (float)Math.cos(angle), dy = (float)Math.sin(angle);
+            assertArrayEquals(expectRay(x, y, dx, dy, size * 2f), sorted(tree.queryRay(x, y, dx, dy, size * 2f, results)));
+        }
+    }
+
+    private void checkPairs(LooseQuadtree tree) {
+        Set<Long> pairs = new HashSet<>();
+        int[] reported = new int[1];
+        tree.forEachPair((a, b) -> {
+            reported[0]++;
+            pairs.add(((long)Math.min(a, b) << 32) | Math.max(a, b));
+        });
+        int expected = 0;
+        int[] ids = ids();
+        for (int a = 0; a < ids.length; a++) {
+            for (int b = a + 1; b < ids.length; b++) {
+                float[] p = boxes[ids[a]], o = boxes[ids[b]];
+                if (p[0] <= o[2] && p[2] >= o[0] && p[1] <= o[3] && p[3] >= o[1]) {
+                    expected++;
+                    assertTrue(pairs.contains(((long)ids[a] << 32) | ids[b]));
+                }
+            }
+        }
+        assertEquals(expected, reported[0]); // Each pair once
+        assertEquals(expected, pairs.size());
+    }
+
+    @Test
+    void queriesMatchBruteForce() {
+        checkQueries(fill());
+    }
+
+    @Test
+    void pairsMatchBruteForce() {
+        checkPairs(fill());
+    }
+
+    @Test
+    void movesAcrossNodesAndRemoves() {
+        LooseQuadtree tree = fill();
+        for (int i = 0; i < OBJECTS; i += 2) { // Other nodes, depths, and in and out of the area
+            boxes[i] = randomBox(i + 1);
+            tree.move(i, boxes[i][0], boxes[i][1], boxes[i][2], boxes[i][3]);
+        }
+        for (int i = 0; i < OBJECTS; i += 3) {
+            boxes[i] = null;
+            tree.remove(i);
+        }
+        assertEquals(ids().length, tree.size());
+        checkQueries(tree);
+        checkPairs(tree);
+
+        for (int i : ids()) {
+            tree.remove(i);
+            boxes[i] = null;
+        }
+        assertEquals(0, tree.size());
+        assertEquals(0, tree.queryAabb(-1000f, -1000f, 1000f, 1000f, results));
+    }
+
+    @Test
+    void objectsOutsideTheAreaAreFound() {
+        LooseQuadtree tree = new LooseQuadtree(0f, 0f, AREA, 4);
+        tree.insert(0, -500f, -500f, -490f, -490f);
+        tree.insert(1, 1000f, 10f, 1001f, 11f);
+        tree.insert(2, 10f, 10f, 11f, 11f);
+
+        assertArrayEquals(new int[] {0}, sorted(tree.queryAabb(-495f, -495f, -494f, -494f, results)));
+        assertArrayEquals(new int[] {1}, sorted(tree.queryRadius(1000.5f, 10.5f, 1f, results)));
+        assertArrayEquals(new int[] {1, 2}, sorted(tree.queryRay(0f, 10.5f, 1f, 0f, 2000f, results)));
+
+        tree.move(1, 10.5f, 10.5f, 12f, 12f); // Into the area
+        assertArrayEquals(new int[] {1, 2}, sorted(tree.queryAabb(10f, 10f, 11f, 11f, results)));
+        assertArrayEquals(new int[0], sorted(tree.queryRadius(1000.5f, 10.5f, 1f, results)));
+    }
+}
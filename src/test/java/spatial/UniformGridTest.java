@@ -0,0 +1,85 @@
+package spatial;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Timeout(5)
+class UniformGridTest {
+    private final int[] results = new int[16];
+
+    private UniformGrid grid() {
+        UniformGrid grid = new UniformGrid(1f);
+        grid.insert(0, 0f, 0f, 1f, 1f);
+        grid.insert(1, 10f, 10f, 11f, 11f);
+        grid.insert(2, -1000f, -1000f, -999f, -999f);
+        return grid;
+    }
+
+    private int[] sorted(int found) {
+        int[] ids = Arrays.copyOf(results, found);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    @Test
+    void queryAabbWithHugeBounds() {
+        UniformGrid grid = grid();
+        int found = grid.queryAabb(-Float.MAX_VALUE, -Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, results);
+        assertArrayEquals(new int[] {0, 1, 2}, sorted(found));
+    }
+
+    @Test
+    void queryAabbWithInfiniteBounds() {
+        UniformGrid grid = grid();
+        int found = grid.queryAabb(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY,
+                Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, results);
+        assertArrayEquals(new int[] {0, 1, 2}, sorted(found));
+
+        found = grid.queryAabb(5f, 5f, Float.POSITIVE_INFINITY, 12f, results);
+        assertArrayEquals(new int[] {1}, sorted(found));
+    }
+
+    @Test
+    void queryRadiusWithHugeRadius() {
+        UniformGrid grid = grid();
+        int found = grid.queryRadius(0f, 0f, Float.MAX_VALUE, results);
+        assertArrayEquals(new int[] {0, 1, 2}, sorted(found));
+
+        found = grid.queryRadius(0f, 0f, Float.POSITIVE_INFINITY, results);
+        assertArrayEquals(new int[] {0, 1, 2}, sorted(found));
+    }
+
+    @Test
+    void queryRayWithHugeDistance() {
+        UniformGrid grid = grid();
+        int found = grid.queryRay(0.5f, 0.5f, 1f, 1f, Float.MAX_VALUE, results);
+        assertArrayEquals(new int[] {0, 1}, sorted(found));
+    }
+
+    @Test
+    void objectsWithHugeAndInfiniteBounds() {
+        UniformGrid grid = grid();
+        grid.insert(3, -Float.MAX_VALUE, -Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE);
+        grid.insert(4, 0f, Float.NEGATIVE_INFINITY, 0.5f, Float.POSITIVE_INFINITY);
+
+        assertArrayEquals(new int[] {0, 3, 4}, sorted(grid.queryAabb(0f, 0f, 0.5f, 0.5f, results)));
+        assertArrayEquals(new int[] {1, 3}, sorted(grid.queryRadius(10.5f, 10.5f, 0.1f, results)));
+        assertArrayEquals(new int[] {0, 3, 4}, sorted(grid.queryRay(0.25f, -5f, 0f, 1f, 6f, results)));
+
+        int[] pairs = new int[1];
+        grid.forEachPair((a, b) -> pairs[0]++);
+        assertEquals(5, pairs[0]); // 3 with 0, 1, 2 and 4, then 4 with 0
+
+        grid.move(3, 10f, 10f, 10.5f, 10.5f);
+        assertArrayEquals(new int[] {0, 4}, sorted(grid.queryAabb(0f, 0f, 0.5f, 0.5f, results)));
+        assertArrayEquals(new int[] {1, 3}, sorted(grid.queryRadius(10.5f, 10.5f, 0.1f, results)));
+
+        grid.remove(4);
+        assertArrayEquals(new int[] {0}, sorted(grid.queryAabb(0f, 0f, 0.5f, 0.5f, results)));
+        assertEquals(4, grid.size());
+    }
+}
@@ -0,0 +1,57 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameArenaTest {
+
+    @Test
+    void releaseToMarkTakenOnEmptyArena() {
+        FrameArena arena = new FrameArena(64);
+        long mark = arena.mark();
+        arena.malloc(32);
+        assertEquals(1, arena.getBlockCount());
+
+        arena.release(mark);
+        assertEquals(0, arena.getBlockCount());
+        assertEquals(0, arena.getUsed());
+
+        arena.malloc(32); // Allocates the main block again
+        assertEquals(1, arena.getBlockCount());
+        arena.free();
+    }
+
+    @Test
+    void releaseWithoutAllocatingOnEmptyArena() {
+        FrameArena arena = new FrameArena(64);
+        arena.release(arena.mark());
+        assertEquals(0, arena.getBlockCount());
+
+        arena.malloc(32);
+        arena.reset();
+        assertEquals(1, arena.getBlockCount());
+        arena.free();
+        assertEquals(0, arena.getBlockCount());
+    }
+
+    @Test
+    void releaseFreesChainedBlocks() {
+        FrameArena arena = new FrameArena(64);
+        arena.malloc(48);
+        long mark = arena.mark();
+        arena.malloc(48);
+        arena.malloc(100);
+        assertEquals(3, arena.getBlockCount());
+
+        arena.release(mark);
+        assertEquals(1, arena.getBlockCount());
+        assertEquals(48, arena.getUsed());
+        assertThrows(IllegalStateException.class, () -> arena.release(mark + 1));
+
+        arena.reset(); // Grows the main block to the peak
+        assertEquals(1, arena.getBlockCount());
+        assertTrue(arena.getCapacity() >= 196);
+        arena.free();
+    }
+}
@@ -0,0 +1,43 @@
+package utils;
+
+import org.joml.Matrix3x2f;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Vect2FBatchTest {
+
+    @Test
+    void rangesOnlyChangeTheirPoints() {
+        float[] xs = {1f, 2f, 3f, 4f, 5f};
+        float[] ys = {5f, 4f, 3f, 2f, 1f};
+        float[] vxs = {1f, 1f, 1f, 1f, 1f};
+        float[] vys = {-2f, -2f, -2f, -2f, -2f};
+
+        Vect2FBatch.addScaled(xs, ys, vxs, vys, 0.5f, 1, 3);
+        assertArrayEquals(new float[] {1f, 2.5f, 3.5f, 4.5f, 5f}, xs);
+        assertArrayEquals(new float[] {5f, 3f, 2f, 1f, 1f}, ys);
+
+        Vect2FBatch.translate(xs, ys, 4, 1, 10f, 20f);
+        assertArrayEquals(new float[] {1f, 2.5f, 3.5f, 4.5f, 15f}, xs);
+        assertArrayEquals(new float[] {5f, 3f, 2f, 1f, 21f}, ys);
+
+        float[] bounds = new float[4];
+        Vect2FBatch.bounds(xs, ys, 1, 3, bounds);
+        assertArrayEquals(new float[] {2.5f, 1f, 4.5f, 3f}, bounds);
+    }
+
+    @Test
+    void transformRangeMatchesWholeArrays() {
+        Matrix3x2f matrix = new Matrix3x2f().translate(3f, -1f).rotate(0.5f).scale(2f);
+        float[] xs = {1f, -2f, 0.5f, 7f};
+        float[] ys = {0f, 3f, -4f, 1f};
+        float[] whole = new float[4], wholeY = new float[4];
+        float[] range = new float[4], rangeY = new float[4];
+
+        Vect2FBatch.transform(matrix, xs, ys, whole, wholeY, 4);
+        Vect2FBatch.transform(matrix, xs, ys, range, rangeY, 2, 2);
+        assertArrayEquals(new float[] {0f, 0f, whole[2], whole[3]}, range);
+        assertArrayEquals(new float[] {0f, 0f, wholeY[2], wholeY[3]}, rangeY);
+    }
+}